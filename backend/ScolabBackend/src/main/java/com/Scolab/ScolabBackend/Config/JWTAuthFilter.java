@@ -2,6 +2,7 @@ package com.Scolab.ScolabBackend.Config;
 
 import com.Scolab.ScolabBackend.Service.JWTUtils;
 import com.Scolab.ScolabBackend.Service.UserDetailsService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -66,14 +67,16 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         String userEmail = null;
 
         try {
-            userEmail = jwtUtils.extractUsername(jwtToken);
+            // Un seul parsing/vérification de signature par token (claims mis en cache jusqu'à expiration)
+            Claims claims = jwtUtils.getVerifiedClaims(jwtToken);
+            userEmail = claims.getSubject();
             log.debug("JWT token present for request {}. Extracted username: {}", requestURI, userEmail);
 
             if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(userEmail);
                 if (userDetails == null) {
                     log.info("UserDetails not found for username '{}' from JWT", userEmail);
-                } else if (jwtUtils.isTokenValid(jwtToken, userDetails)) {
+                } else if (jwtUtils.isTokenValid(claims, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -0,0 +1,160 @@
+package com.Scolab.ScolabBackend.Config;
+
+import com.Scolab.ScolabBackend.Service.BailService;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Migration vers l'expiration par index TTL des verification_tokens. L'arriéré de tokens expirés est
+ * d'abord supprimé par lots espacés, puis l'index TTL sur expiry_date est créé : le créer directement
+ * lancerait la suppression de tout l'arriéré d'un coup par le moniteur TTL. Un seul nœud l'exécute (bail),
+ * et elle ne fait plus rien une fois l'index en place. Tant que l'index manque (Mongo indisponible au
+ * démarrage, bail perdu, erreur), elle est relancée toutes les {@code app.tokens.migration.reessai-ms}.
+ * Après {@code app.tokens.migration.essais-avant-forcer} essais sans bail, ce nœud la fait sans bail : la purge
+ * et la création de l'index sont idempotentes, deux nœuds qui s'y mettent ne font que du travail en double,
+ * alors que sans index rien ne supprime plus les tokens expirés.
+ */
+@Component
+public class MigrationTokensExpires {
+
+    private static final Logger log = LoggerFactory.getLogger(MigrationTokensExpires.class);
+
+    static final String COLLECTION = "verification_tokens";
+    static final String INDEX_TTL = "expiry_date_ttl";
+    private static final String JOB = "migration-tokens-ttl";
+    private static final Duration DUREE_BAIL = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final BailService bailService;
+    private final int tailleLot;
+    private final long pauseMs;
+    private final int essaisAvantForcer;
+    private int essaisSansBail;
+    private final AtomicBoolean enCours = new AtomicBoolean();
+    private volatile boolean terminee;
+
+    public MigrationTokensExpires(MongoTemplate mongoTemplate,
+                                  BailService bailService,
+                                  @Value("${app.tokens.migration.lot:500}") int tailleLot,
+                                  @Value("${app.tokens.migration.pause-ms:200}") long pauseMs,
+                                  @Value("${app.tokens.migration.essais-avant-forcer:6}") int essaisAvantForcer) {
+        this.mongoTemplate = mongoTemplate;
+        this.bailService = bailService;
+        this.tailleLot = tailleLot;
+        this.pauseMs = pauseMs;
+        this.essaisAvantForcer = essaisAvantForcer;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void demarrer() {
+        relancer();
+    }
+
+    // Hors du thread de démarrage et du scheduler : l'application sert les requêtes pendant la purge
+    @Scheduled(fixedDelayString = "${app.tokens.migration.reessai-ms:600000}",
+            initialDelayString = "${app.tokens.migration.reessai-ms:600000}")
+    public void relancer() {
+        if (terminee || !enCours.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("migration-tokens").start(() -> {
+            try {
+                terminee = migrer();
+            } catch (RuntimeException e) {
+                log.error("Migration TTL des tokens interrompue, nouvel essai plus tard : {}", e.getMessage());
+            } finally {
+                enCours.set(false);
+            }
+        });
+    }
+
+    /**
+     * Retourne vrai quand l'index TTL est en place (créé par ce nœud ou un autre), faux s'il faut réessayer.
+     */
+    boolean migrer() {
+        IndexOperations index = mongoTemplate.indexOps(COLLECTION);
+        if (index.getIndexInfo().stream().anyMatch(i -> INDEX_TTL.equals(i.getName()))) {
+            return true;
+        }
+        boolean sousBail = essaisSansBail < essaisAvantForcer;
+        if (sousBail && bailService.acquerir(JOB, DUREE_BAIL).isEmpty()) {
+            essaisSansBail++;
+            return false;
+        }
+        if (!sousBail) {
+            log.warn("Bail {} introuvable après {} essais, migration TTL des tokens faite sans bail", JOB, essaisSansBail);
+        }
+        Date maintenant = new Date();
+        long supprimes = purgerArriere(maintenant, sousBail);
+        if (supprimes < 0) {
+            essaisSansBail++;
+            return false;
+        }
+        index.createIndex(new Index().on("expiry_date", Sort.Direction.ASC).expire(Duration.ZERO).named(INDEX_TTL));
+        if (sousBail) {
+            bailService.liberer(JOB);
+        }
+        log.info("Migration TTL des tokens terminée : {} tokens expirés purgés, index {} créé", supprimes, INDEX_TTL);
+        return true;
+    }
+
+    /**
+     * Supprime les tokens expirés avant {@code limite} par lots de {@code tailleLot}, en parcourant la collection
+     * dans l'ordre de l'_id (index existant) et en marquant une pause entre deux lots. Sous bail, retourne -1
+     * si le bail a été perdu en cours de route : un autre nœud a repris la migration.
+     */
+    long purgerArriere(Date limite, boolean sousBail) {
+        MongoCollection<Document> tokens = mongoTemplate.getCollection(COLLECTION);
+        long supprimes = 0;
+        Object dernierId = null;
+        while (true) {
+            Document filtre = new Document("expiry_date", new Document("$lt", limite));
+            if (dernierId != null) {
+                filtre.append("_id", new Document("$gt", dernierId));
+            }
+            List<Object> ids = new ArrayList<>(tailleLot);
+            for (Document token : tokens.find(filtre)
+                    .projection(new Document("_id", 1))
+                    .sort(new Document("_id", 1))
+                    .limit(tailleLot)) {
+                ids.add(token.get("_id"));
+            }
+            if (ids.isEmpty()) {
+                return supprimes;
+            }
+            supprimes += tokens.deleteMany(new Document("_id", new Document("$in", ids))).getDeletedCount();
+            dernierId = ids.get(ids.size() - 1);
+
+            if (sousBail && bailService.acquerir(JOB, DUREE_BAIL).isEmpty()) {
+                log.warn("Bail {} perdu après {} suppressions, migration abandonnée sur ce nœud", JOB, supprimes);
+                return -1;
+            }
+            if (ids.size() < tailleLot) {
+                return supprimes;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+}
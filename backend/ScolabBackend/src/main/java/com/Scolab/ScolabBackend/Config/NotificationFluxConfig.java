@@ -0,0 +1,23 @@
+package com.Scolab.ScolabBackend.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class NotificationFluxConfig {
+
+    // Écritures SSE hors du thread qui publie l'événement et du scheduler : un client lent n'immobilise qu'un thread du pool
+    @Bean
+    public ThreadPoolTaskExecutor fluxExecutor(@Value("${app.notifications.sse.parallelisme:8}") int parallelisme,
+                                               @Value("${app.notifications.sse.file-max:10000}") int fileMax) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelisme);
+        executor.setMaxPoolSize(parallelisme);
+        executor.setQueueCapacity(fileMax);
+        executor.setThreadNamePrefix("sse-");
+        executor.initialize();
+        return executor;
+    }
+}
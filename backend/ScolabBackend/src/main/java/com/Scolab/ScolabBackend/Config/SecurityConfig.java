@@ -65,7 +65,9 @@ public class SecurityConfig {
                                 "/error",
                                 "/api/public/**",
                                 "/uploads/**",
-                                "/api/fichiers/**"
+                                "/api/fichiers/**",
+                                // handshake WebSocket : le JWT est vérifié sur la trame STOMP CONNECT
+                                "/ws/**"
                         ).permitAll()
                         // endpoints nécessitant un rôle
                         .requestMatchers("/api/etudiants/**").hasAnyAuthority("ROLE_ETUDIANT")
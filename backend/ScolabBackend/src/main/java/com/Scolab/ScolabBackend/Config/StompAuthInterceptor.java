@@ -0,0 +1,129 @@
+package com.Scolab.ScolabBackend.Config;
+
+import com.Scolab.ScolabBackend.Service.JWTUtils;
+import com.Scolab.ScolabBackend.Service.MessagerieService;
+import com.Scolab.ScolabBackend.Service.UserDetailsService;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.regex.Pattern;
+
+/**
+ * Authentifie la session STOMP avec le JWT de l'en-tête Authorization de la trame CONNECT, puis applique
+ * des listes blanches : abonnement uniquement à /topic/conversations/{id} (participants seulement) et à
+ * /user/queue/erreurs, envoi uniquement vers /app/**. Le broker simple interprète les destinations
+ * d'abonnement comme des motifs Ant : tout joker est refusé.
+ */
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(StompAuthInterceptor.class);
+
+    static final String PREFIXE_CONVERSATION = "/topic/conversations/";
+    static final String FILE_ERREURS = "/user/queue/erreurs";
+    private static final Pattern OBJECT_ID = Pattern.compile("[0-9a-f]{24}");
+
+    private final JWTUtils jwtUtils;
+    private final UserDetailsService userDetailsService;
+    // Résolu à l'usage : MessagerieService dépend du template STOMP, lui-même construit à partir de cette config
+    private final ObjectProvider<MessagerieService> messagerieService;
+
+    public StompAuthInterceptor(JWTUtils jwtUtils,
+                                UserDetailsService userDetailsService,
+                                ObjectProvider<MessagerieService> messagerieService) {
+        this.jwtUtils = jwtUtils;
+        this.userDetailsService = userDetailsService;
+        this.messagerieService = messagerieService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT -> accessor.setUser(authentifier(accessor.getFirstNativeHeader("Authorization")));
+            case SUBSCRIBE -> verifierAbonnement(accessor);
+            case SEND -> verifierEnvoi(accessor);
+            default -> { }
+        }
+        return message;
+    }
+
+    private Principal authentifier(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("JWT manquant dans la trame CONNECT");
+        }
+        try {
+            Claims claims = jwtUtils.getVerifiedClaims(authHeader.substring(7));
+            UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+            if (!userDetails.isEnabled() || !jwtUtils.isTokenValid(claims, userDetails)) {
+                throw new MessageDeliveryException("JWT invalide ou expiré");
+            }
+            log.debug("STOMP CONNECT authentifié pour {}", userDetails.getUsername());
+            return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        } catch (MessageDeliveryException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("STOMP CONNECT refusé : {}", e.getMessage());
+            throw new MessageDeliveryException("JWT invalide ou expiré");
+        }
+    }
+
+    private void verifierAbonnement(StompHeaderAccessor accessor) {
+        Principal user = utilisateurConnecte(accessor);
+        String destination = accessor.getDestination();
+        if (destination == null || contientJoker(destination)) {
+            throw new MessageDeliveryException("Destination d'abonnement non autorisée : " + destination);
+        }
+        if (FILE_ERREURS.equals(destination)) {
+            return;
+        }
+        if (destination.startsWith(PREFIXE_CONVERSATION)) {
+            String conversationId = destination.substring(PREFIXE_CONVERSATION.length());
+            if (OBJECT_ID.matcher(conversationId).matches()
+                    && messagerieService.getObject().estParticipant(conversationId, user.getName())) {
+                return;
+            }
+            log.warn("Abonnement refusé à {} pour {}", destination, user.getName());
+            throw new MessageDeliveryException("Accès refusé à la conversation " + conversationId);
+        }
+        throw new MessageDeliveryException("Destination d'abonnement non autorisée : " + destination);
+    }
+
+    // Les clients passent par /app/... : publier sur un topic ou dans la file d'un autre utilisateur est refusé
+    private void verifierEnvoi(StompHeaderAccessor accessor) {
+        utilisateurConnecte(accessor);
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith("/app/") || contientJoker(destination)) {
+            throw new MessageDeliveryException("Destination d'envoi non autorisée : " + destination);
+        }
+    }
+
+    private static boolean contientJoker(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private Principal utilisateurConnecte(StompHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        if (user == null) {
+            throw new MessageDeliveryException("Session STOMP non authentifiée");
+        }
+        return user;
+    }
+}
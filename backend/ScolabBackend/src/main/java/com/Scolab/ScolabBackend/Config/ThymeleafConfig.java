@@ -1,5 +1,6 @@
 package com.Scolab.ScolabBackend.Config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.thymeleaf.spring6.SpringTemplateEngine;
@@ -11,6 +12,10 @@ import java.nio.charset.StandardCharsets;
 @Configuration
 public class ThymeleafConfig {
 
+    // Cache des templates parsés : désactivable en dev (app.email.templates.cache=false) pour éditer à chaud
+    @Value("${app.email.templates.cache:true}")
+    private boolean cacheTemplates;
+
     @Bean
     public SpringTemplateEngine templateEngine() {
         SpringTemplateEngine templateEngine = new SpringTemplateEngine();
@@ -24,7 +29,7 @@ public class ThymeleafConfig {
         emailTemplateResolver.setSuffix(".html");
         emailTemplateResolver.setTemplateMode(TemplateMode.HTML);
         emailTemplateResolver.setCharacterEncoding(StandardCharsets.UTF_8.name());
-        emailTemplateResolver.setCacheable(false);
+        emailTemplateResolver.setCacheable(cacheTemplates);
         return emailTemplateResolver;
     }
 }
@@ -0,0 +1,25 @@
+package com.Scolab.ScolabBackend.Config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class WebPushConfig {
+
+    // Envois Web Push en parallèle, mais bornés : un service push lent n'épuise ni threads ni connexions
+    @Bean
+    public ThreadPoolTaskExecutor pushExecutor(@Value("${app.push.parallelisme:16}") int parallelisme,
+                                               @Value("${app.push.file-max:10000}") int fileMax) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelisme);
+        executor.setMaxPoolSize(parallelisme);
+        executor.setQueueCapacity(fileMax);
+        executor.setThreadNamePrefix("push-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -2,6 +2,8 @@ package com.Scolab.ScolabBackend.Controller;
 
 import com.Scolab.ScolabBackend.Entity.Utilisateur;
 import com.Scolab.ScolabBackend.Entity.Role;
+import com.Scolab.ScolabBackend.Service.BailService;
+import com.Scolab.ScolabBackend.Service.JWTClaimsCache;
 import com.Scolab.ScolabBackend.Service.UtilisateurService;
 import com.Scolab.ScolabBackend.Service.ProjetService;
 import com.Scolab.ScolabBackend.Entity.Projet;
@@ -10,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -17,6 +20,8 @@ import java.util.List;
 public class AdminController {
     private final UtilisateurService utilisateurService;
     private final ProjetService projetService;
+    private final JWTClaimsCache jwtClaimsCache;
+    private final BailService bailService;
 
     // CRUD utilisateurs (tous rôles)
     @GetMapping("/utilisateurs")
@@ -64,6 +69,18 @@ public class AdminController {
         return ResponseEntity.ok(utilisateurService.getDashboardStats());
     }
 
+    // Statistiques du cache des tokens JWT vérifiés (hits/misses)
+    @GetMapping("/securite/cache-jwt")
+    public ResponseEntity<Map<String, Object>> getStatsCacheJwt() {
+        return ResponseEntity.ok(jwtClaimsCache.statistiques());
+    }
+
+    // Baux des jobs planifiés sur ce nœud : détenus ou non, acquisitions, reprises, pertes
+    @GetMapping("/jobs/baux")
+    public ResponseEntity<Map<String, Object>> getBauxJobs() {
+        return ResponseEntity.ok(bailService.statistiques());
+    }
+
     // Logs système (stub, à compléter)
     @GetMapping("/logs")
     public ResponseEntity<List<String>> getSystemLogs() {
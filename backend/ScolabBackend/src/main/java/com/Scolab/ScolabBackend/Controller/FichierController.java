@@ -1,38 +1,213 @@
 package com.Scolab.ScolabBackend.Controller;
 
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.Scolab.ScolabBackend.Service.FichierStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.File;
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 @RestController
 @RequestMapping("/api/fichiers")
+@RequiredArgsConstructor
 public class FichierController {
 
-    // Chemin de stockage des fichiers (adapter si besoin)
-    private final String storagePath = "uploads/";
+    // Attributs du connecteur Tomcat : le noyau envoie le fichier (sendfile) sans passer par la JVM
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
-    @GetMapping("/{filename}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable String filename) {
+    private final FichierStorageService fichierStorageService;
+
+    // Téléchargement avec Range (reprise), GET conditionnel (304) et envoi zero-copy
+    @RequestMapping(value = "/{filename}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void downloadFile(@PathVariable String filename,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        Path file = fichierStorageService.resoudre(filename).orElse(null);
+        if (file == null) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        if (!Files.isRegularFile(file)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long taille = Files.size(file);
+        long derniereModif = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+        String etag = fichierStorageService.empreinteStockee(filename)
+                .map(hash -> "\"" + hash + "\"")
+                .orElse("W/\"" + Long.toHexString(taille) + "-" + Long.toHexString(derniereModif) + "\"");
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, derniereModif);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=86400");
+
+        if (nonModifie(request, etag, derniereModif)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long debut = 0;
+        long fin = taille - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && taille > 0 && rangeApplicable(request, etag, derniereModif)) {
+            long[] plage = parserRange(range, taille);
+            if (plage == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + taille);
+                return;
+            }
+            if (plage.length == 2) {
+                debut = plage[0];
+                fin = plage[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + debut + "-" + fin + "/" + taille);
+            }
+        }
+
+        long longueur = fin - debut + 1;
+        String contentType = Files.probeContentType(file);
+        response.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(longueur);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(file.getFileName().toString(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        if (RequestMethod.HEAD.name().equals(request.getMethod()) || longueur == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, debut);
+            request.setAttribute(SENDFILE_END, fin + 1);
+            return;
+        }
+
+        // Connecteur sans sendfile : transferTo laisse le JDK choisir le chemin de copie le plus direct
+        try (FileChannel canal = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel sortie = Channels.newChannel(response.getOutputStream());
+            long position = debut;
+            long restant = longueur;
+            while (restant > 0) {
+                long envoye = canal.transferTo(position, restant, sortie);
+                if (envoye <= 0) {
+                    break;
+                }
+                position += envoye;
+                restant -= envoye;
+            }
+        }
+    }
+
+    // If-None-Match est prioritaire sur If-Modified-Since (RFC 9110 §13.2.2)
+    private boolean nonModifie(HttpServletRequest request, String etag, long derniereModif) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return correspond(ifNoneMatch, etag, false);
+        }
         try {
-            File file = new File(storagePath + filename);
-            if (!file.exists()) {
-                return ResponseEntity.notFound().build();
+            long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+            return ifModifiedSince != -1 && derniereModif <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // If-Range : la reprise n'est valable que si le fichier n'a pas changé, sinon on renvoie tout
+    private boolean rangeApplicable(HttpServletRequest request, String etag, long derniereModif) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return correspond(ifRange, etag, true);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == derniereModif;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean correspond(String entete, String etag, boolean fort) {
+        if (fort && etag.startsWith("W/")) {
+            return false;
+        }
+        String valeur = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidat : entete.split(",")) {
+            String c = candidat.trim();
+            if (c.equals("*")) {
+                return true;
+            }
+            if (fort && c.startsWith("W/")) {
+                continue;
+            }
+            if ((c.startsWith("W/") ? c.substring(2) : c).equals(valeur)) {
+                return true;
             }
-            Resource resource = new UrlResource(file.toURI());
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
-                    .body(resource);
-        } catch (MalformedURLException e) {
-            return ResponseEntity.badRequest().build();
         }
+        return false;
     }
-}
 
+    /**
+     * Une seule plage "bytes=debut-fin", "bytes=debut-" ou "bytes=-suffixe".
+     * Retourne {debut, fin}, un tableau vide pour ignorer l'en-tête (plages multiples ou syntaxe inconnue),
+     * ou null si la plage est hors du fichier.
+     */
+    static long[] parserRange(String range, long taille) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int tiret = spec.indexOf('-');
+        if (tiret < 0) {
+            return new long[0];
+        }
+        try {
+            String gauche = spec.substring(0, tiret).trim();
+            String droite = spec.substring(tiret + 1).trim();
+            long debut;
+            long fin;
+            if (gauche.isEmpty()) {
+                long suffixe = Long.parseLong(droite);
+                if (suffixe <= 0) {
+                    return null;
+                }
+                debut = Math.max(0, taille - suffixe);
+                fin = taille - 1;
+            } else {
+                debut = Long.parseLong(gauche);
+                if (debut >= taille) {
+                    return null;
+                }
+                fin = droite.isEmpty() ? taille - 1 : Math.min(Long.parseLong(droite), taille - 1);
+                if (fin < debut) {
+                    return new long[0];
+                }
+            }
+            return new long[]{debut, fin};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -1,25 +1,48 @@
 package com.Scolab.ScolabBackend.Controller;
 
+import com.Scolab.ScolabBackend.Dto.SoumissionExport;
 import com.Scolab.ScolabBackend.Entity.Livrable;
+import com.Scolab.ScolabBackend.Entity.UploadSession;
 import com.Scolab.ScolabBackend.Service.LivrableService;
+import com.Scolab.ScolabBackend.Service.UploadRepriseService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/livrables")
 @RequiredArgsConstructor
 public class LivrableController {
 
+    private static final String ENTETE_UPLOAD_OFFSET = "Upload-Offset";
+    private static final String ENTETE_UPLOAD_LENGTH = "Upload-Length";
+
     private final LivrableService livrableService;
+    private final UploadRepriseService uploadRepriseService;
+
+    @Value("${app.livrables.export.timeout-ms:3600000}")
+    private long exportTimeoutMs;
 
     @PostMapping("/{livrableId}/soumettre")
     public ResponseEntity<?> soumettreLivrable(
@@ -37,6 +60,115 @@ public class LivrableController {
         }
     }
 
+    // Upload en flux : le corps brut (application/octet-stream) est écrit au fil de l'eau dans le stockage,
+    // sans limite multipart ni copie en mémoire ; le nom d'origine est passé en paramètre
+    @PostMapping(value = "/{livrableId}/soumettre/flux", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> soumettreLivrableFlux(
+            @PathVariable String livrableId,
+            @RequestParam String groupeId,
+            @RequestParam("nom") String nomFichier,
+            HttpServletRequest request) {
+
+        try (InputStream contenu = request.getInputStream()) {
+            Livrable livrable = livrableService.soumettreLivrableFlux(
+                    livrableId, contenu, nomFichier, request.getContentLengthLong(), groupeId);
+            return ResponseEntity.ok(livrable);
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Erreur lors de l'upload du fichier");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // ==================== UPLOAD REPRENABLE (PAR MORCEAUX) ====================
+
+    // 1. Création : renvoie l'URL de l'upload (Location) à utiliser pour les étapes suivantes
+    @PostMapping("/{livrableId}/soumettre/reprise")
+    public ResponseEntity<?> creerUploadReprise(
+            @PathVariable String livrableId,
+            @RequestParam String groupeId,
+            @RequestParam("nom") String nomFichier,
+            @RequestParam long taille) {
+        try {
+            UploadSession session = uploadRepriseService.creerSession(livrableId, groupeId, nomFichier, taille);
+            return ResponseEntity.created(URI.create("/api/livrables/reprise/" + session.getId()))
+                    .header(ENTETE_UPLOAD_OFFSET, "0")
+                    .header(ENTETE_UPLOAD_LENGTH, String.valueOf(session.getTailleTotale()))
+                    .body(Map.of("uploadId", session.getId(), "offset", 0L, "taille", session.getTailleTotale()));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Erreur lors de la création de l'upload");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 2. Offset courant, pour reprendre après une coupure
+    @RequestMapping(value = "/reprise/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> offsetUploadReprise(@PathVariable String uploadId) {
+        try {
+            UploadSession session = uploadRepriseService.getSession(uploadId);
+            return ResponseEntity.ok()
+                    .header(ENTETE_UPLOAD_OFFSET, String.valueOf(session.getOffset()))
+                    .header(ENTETE_UPLOAD_LENGTH, String.valueOf(session.getTailleTotale()))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // 3. Ajout d'un morceau à l'offset Upload-Offset (409 si ce n'est pas l'offset attendu, 423 si un envoi est en cours)
+    @PatchMapping(value = "/reprise/{uploadId}", consumes = {"application/offset+octet-stream", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> ajouterMorceauUploadReprise(
+            @PathVariable String uploadId,
+            @RequestHeader(ENTETE_UPLOAD_OFFSET) long offset,
+            HttpServletRequest request) {
+        try (InputStream contenu = request.getInputStream()) {
+            long nouvelOffset = uploadRepriseService.ajouterMorceau(uploadId, offset, contenu);
+            return ResponseEntity.noContent()
+                    .header(ENTETE_UPLOAD_OFFSET, String.valueOf(nouvelOffset))
+                    .build();
+        } catch (UploadRepriseService.OffsetIncorrectException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(ENTETE_UPLOAD_OFFSET, String.valueOf(e.getOffsetAttendu()))
+                    .body(e.getMessage());
+        } catch (UploadRepriseService.UploadVerrouilleException e) {
+            return ResponseEntity.status(HttpStatus.LOCKED).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Morceau interrompu, reprendre depuis l'offset courant");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 4. Finalisation : le fichier complet est rattaché au livrable
+    @PostMapping("/reprise/{uploadId}/finaliser")
+    public ResponseEntity<?> finaliserUploadReprise(@PathVariable String uploadId) {
+        try {
+            return ResponseEntity.ok(uploadRepriseService.finaliser(uploadId));
+        } catch (UploadRepriseService.UploadVerrouilleException e) {
+            return ResponseEntity.status(HttpStatus.LOCKED).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Erreur lors de la finalisation de l'upload");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/reprise/{uploadId}")
+    public ResponseEntity<?> annulerUploadReprise(@PathVariable String uploadId) {
+        try {
+            uploadRepriseService.annuler(uploadId);
+            return ResponseEntity.noContent().build();
+        } catch (UploadRepriseService.UploadVerrouilleException e) {
+            return ResponseEntity.status(HttpStatus.LOCKED).body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body("Erreur lors de l'annulation de l'upload");
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PutMapping("/{livrableId}/evaluer")
     public ResponseEntity<?> evaluerLivrable(
             @PathVariable String livrableId,
@@ -84,6 +216,44 @@ public class LivrableController {
         return ResponseEntity.ok(livrables);
     }
 
+    // Archive ZIP de toutes les soumissions du projet, écrite en flux (rien n'est assemblé en mémoire).
+    // Tâche asynchrone avec son propre délai : les autres réponses asynchrones gardent le délai par défaut.
+    @GetMapping("/projet/{projetId}/export")
+    public WebAsyncTask<ResponseEntity<Void>> exporterSoumissionsProjet(@PathVariable String projetId,
+                                                                        HttpServletResponse response) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return reponseImmediate(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        boolean admin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+
+        List<SoumissionExport> soumissions;
+        try {
+            soumissions = livrableService.preparerExportZip(projetId, authentication.getName(), admin);
+        } catch (SecurityException e) {
+            return reponseImmediate(ResponseEntity.status(HttpStatus.FORBIDDEN).build());
+        } catch (RuntimeException e) {
+            return reponseImmediate(ResponseEntity.notFound().build());
+        }
+
+        // L'archive est écrite directement dans la réponse ; null = réponse déjà produite
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename("soumissions-" + projetId + ".zip", StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+            livrableService.ecrireExportZip(soumissions, response.getOutputStream());
+            return null;
+        });
+    }
+
+    private static <T> WebAsyncTask<T> reponseImmediate(T reponse) {
+        return new WebAsyncTask<>(() -> reponse);
+    }
+
     @GetMapping("/groupe/{groupeId}")
     public ResponseEntity<List<Livrable>> getLivrablesByGroupe(@PathVariable String groupeId) {
         List<Livrable> livrables = livrableService.getLivrablesByGroupe(groupeId);
@@ -97,7 +267,9 @@ public class LivrableController {
     }
 
     @GetMapping("/enseignant")
-    public ResponseEntity<List<Livrable>> getLivrablesByEnseignant() {
+    public ResponseEntity<?> getLivrablesByEnseignant(
+            @RequestParam(required = false) String apres,
+            @RequestParam(required = false) Integer limite) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -107,8 +279,15 @@ public class LivrableController {
         // L'email de l'utilisateur connecté est le principal
         String email = authentication.getName();
         System.out.println("Utilisateur connecté: " + email);
-        List<Livrable> livrables = livrableService.getLivrablesByEnseignant(email);
-        return ResponseEntity.ok(livrables);
+        // Avec "limite", pagination par curseur (id du dernier livrable reçu dans "apres")
+        try {
+            List<Livrable> livrables = limite != null
+                    ? livrableService.getLivrablesByEnseignant(email, apres, Math.min(Math.max(limite, 1), 200))
+                    : livrableService.getLivrablesByEnseignant(email);
+            return ResponseEntity.ok(livrables);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
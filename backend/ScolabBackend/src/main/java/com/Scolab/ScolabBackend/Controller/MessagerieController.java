@@ -1,17 +1,27 @@
 package com.Scolab.ScolabBackend.Controller;
 
+import com.Scolab.ScolabBackend.Dto.ConversationResume;
 import com.Scolab.ScolabBackend.Entity.Conversation;
 import com.Scolab.ScolabBackend.Entity.Groupe;
 import com.Scolab.ScolabBackend.Entity.Message;
 import com.Scolab.ScolabBackend.Service.MessagerieService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/messagerie")
@@ -90,8 +100,12 @@ public class MessagerieController {
         }
     }
 
+    // Historique paginé : ?limit=N (défaut 50) et ?before=<id du plus ancien message déjà affiché>.
+    // Sans aucun des deux, tout l'historique est renvoyé, comme avant la pagination.
     @GetMapping("/messages/{conversationId}")
-    public ResponseEntity<?> getMessagesByConversation(@PathVariable String conversationId) {
+    public ResponseEntity<?> getMessagesByConversation(@PathVariable String conversationId,
+                                                       @RequestParam(required = false) String before,
+                                                       @RequestParam(required = false) Integer limit) {
         try {
             // Vérification de l'existence de la conversation
             if (conversationId == null || conversationId.isEmpty()) {
@@ -100,8 +114,14 @@ public class MessagerieController {
             if (!messagerieService.conversationExists(conversationId)) {
                 return ResponseEntity.status(404).body("Conversation non trouvée : " + conversationId);
             }
-            List<Message> list = messagerieService.getMessagesByConversation(conversationId);
+            if (before == null && limit == null) {
+                return ResponseEntity.ok(messagerieService.getMessagesByConversation(conversationId));
+            }
+            int limite = limit != null ? Math.min(Math.max(limit, 1), 200) : 50;
+            List<Message> list = messagerieService.getMessagesByConversation(conversationId, before, limite);
             return ResponseEntity.ok(list);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération des messages de la conversation", e);
             return ResponseEntity.status(500).body("Erreur serveur: " + e.getMessage());
@@ -109,9 +129,11 @@ public class MessagerieController {
     }
 
     @GetMapping("/conversations/user/{userId}")
-    public ResponseEntity<?> getConversationsByUser(@PathVariable String userId) {
+    public ResponseEntity<?> getConversationsByUser(@PathVariable String userId,
+                                                    @RequestParam(required = false) Integer limit) {
         try {
-            List<Conversation> list = messagerieService.getConversationsByUser(userId);
+            int limite = limit != null ? Math.min(Math.max(limit, 1), 200) : 50;
+            List<Conversation> list = messagerieService.getConversationsByUser(userId, limite);
             return ResponseEntity.ok(list);
         } catch (Exception e) {
             logger.error("Erreur lors de la récupération des conversations par utilisateur", e);
@@ -129,4 +151,53 @@ public class MessagerieController {
             return ResponseEntity.status(500).body("Erreur serveur: " + e.getMessage());
         }
     }
+
+    // Boîte de réception : conversations triées par dernière activité, avec les non lus de l'utilisateur connecté
+    @GetMapping("/inbox")
+    public ResponseEntity<?> getBoiteDeReception() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            List<ConversationResume> conversations = messagerieService.getBoiteDeReception(authentication.getName());
+            long totalNonLus = conversations.stream().mapToLong(ConversationResume::nonLus).sum();
+            return ResponseEntity.ok(Map.of("conversations", conversations, "totalNonLus", totalNonLus));
+        } catch (Exception e) {
+            logger.error("Erreur lors de la récupération de la boîte de réception", e);
+            return ResponseEntity.status(500).body("Erreur serveur: " + e.getMessage());
+        }
+    }
+
+    // Marque lus les messages jusqu'au message "jusqua" inclus (tous si absent)
+    @PostMapping("/conversations/{conversationId}/lu")
+    public ResponseEntity<?> marquerCommeLu(@PathVariable String conversationId,
+                                            @RequestParam(required = false) String jusqua) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).build();
+        }
+        try {
+            long modifies = messagerieService.marquerCommeLu(conversationId, authentication.getName(), jusqua);
+            return ResponseEntity.ok(Map.of("messagesMarques", modifies));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // STOMP : SEND /app/conversations/{id}/envoyer {"contenu": "..."} ; le message est diffusé sur /topic/conversations/{id}
+    @MessageMapping("/conversations/{conversationId}/envoyer")
+    public void envoyerMessageStomp(@DestinationVariable String conversationId,
+                                    @Payload Map<String, String> payload,
+                                    Principal principal) {
+        messagerieService.envoyerMessageDepuis(conversationId, principal.getName(), payload.get("contenu"));
+    }
+
+    // Erreur renvoyée au seul expéditeur, sur /user/queue/erreurs
+    @MessageExceptionHandler
+    @SendToUser(value = "/queue/erreurs", broadcast = false)
+    public String erreurStomp(RuntimeException e) {
+        logger.warn("Erreur STOMP messagerie: {}", e.getMessage());
+        return e.getMessage();
+    }
 }
@@ -1,13 +1,19 @@
 package com.Scolab.ScolabBackend.Controller;
 
+import com.Scolab.ScolabBackend.Entity.Notification;
+import com.Scolab.ScolabBackend.Service.NotificationFluxService;
 import com.Scolab.ScolabBackend.Service.NotificationService;
+import com.Scolab.ScolabBackend.Service.WebPushService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -18,6 +24,123 @@ import java.util.Map;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationFluxService notificationFluxService;
+    private final WebPushService webPushService;
+
+    // ==================== FLUX TEMPS RÉEL (SSE) ====================
+    // Remplace le polling : à la reconnexion, Last-Event-ID rejoue les événements manqués
+    @GetMapping(value = "/flux", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> fluxNotifications(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Long dernierIdRecu = null;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                dernierIdRecu = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                // Désactive la mise en tampon des proxies nginx, sinon les événements arrivent par paquets
+                .header("X-Accel-Buffering", "no")
+                .body(notificationFluxService.abonner(auth.getName(), dernierIdRecu));
+    }
+
+    // ==================== WEB PUSH ====================
+    // Clé publique VAPID pour pushManager.subscribe({ applicationServerKey })
+    @GetMapping("/push/cle-publique")
+    public ResponseEntity<Map<String, Object>> getClePubliquePush() {
+        if (!webPushService.estActif()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                    "success", false,
+                    "message", "Web Push non configuré"
+            ));
+        }
+        return ResponseEntity.ok(Map.of("publicKey", webPushService.getClePublique()));
+    }
+
+    // Corps = PushSubscription.toJSON() du navigateur : { endpoint, keys: { p256dh, auth } }
+    @PostMapping("/push/abonnement")
+    public ResponseEntity<Map<String, Object>> abonnerPush(@RequestBody PushAbonnementRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (request.getKeys() == null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Clés d'abonnement manquantes"));
+        }
+        try {
+            webPushService.abonner(auth.getName(), request.getEndpoint(),
+                    request.getKeys().getP256dh(), request.getKeys().getAuth());
+            return ResponseEntity.ok(Map.of("success", true));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/push/abonnement")
+    public ResponseEntity<Map<String, Object>> desabonnerPush(@RequestParam String endpoint) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(Map.of("success", webPushService.desabonner(auth.getName(), endpoint)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    // ==================== BOÎTE DE NOTIFICATIONS ====================
+    // ?avant=<id de la dernière notification affichée>&limite=N&nonLues=true
+    @GetMapping
+    public ResponseEntity<?> getNotifications(@RequestParam(required = false) String avant,
+                                              @RequestParam(required = false) Integer limite,
+                                              @RequestParam(defaultValue = "false") boolean nonLues) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            int taille = limite != null ? Math.min(Math.max(limite, 1), 100) : 20;
+            List<Notification> notifications = notificationService.getNotifications(auth.getName(), avant, taille, nonLues);
+            return ResponseEntity.ok(notifications);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/non-lues/count")
+    public ResponseEntity<Map<String, Object>> compterNonLues() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(Map.of("nonLues", notificationService.compterNonLues(auth.getName())));
+    }
+
+    @PutMapping("/{notificationId}/lue")
+    public ResponseEntity<Map<String, Object>> marquerLue(@PathVariable String notificationId) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(Map.of("success", notificationService.marquerLue(auth.getName(), notificationId)));
+    }
+
+    @PutMapping("/lues")
+    public ResponseEntity<Map<String, Object>> marquerToutesLues() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(Map.of("success", true, "marquees", notificationService.marquerToutesLues(auth.getName())));
+    }
 
     // ==================== PROJET CRÉÉ ====================
     @PostMapping("/projets/creation")
@@ -94,6 +217,18 @@ public class NotificationController {
         private List<String> groupes;
     }
 
+    @Data
+    public static class PushAbonnementRequest {
+        private String endpoint;
+        private PushCles keys;
+    }
+
+    @Data
+    public static class PushCles {
+        private String p256dh;
+        private String auth;
+    }
+
     @Data
     public static class CustomNotificationRequest {
         private List<String> destinataires;
@@ -1,10 +1,14 @@
 package com.Scolab.ScolabBackend.Controller;
 
+import com.Scolab.ScolabBackend.Dto.ProjetResume;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import com.Scolab.ScolabBackend.Service.ProjetService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -49,6 +53,21 @@ public class ProjetController {
         }
     }
 
+    @GetMapping("/enseignant/resume")
+    public ResponseEntity<PagedModel<ProjetResume>> getResumesProjetsEnseignant(
+            @RequestParam(defaultValue = "false") boolean archive,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return ResponseEntity.status(401).build();
+        }
+        String email = authentication.getName();
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100),
+                Sort.by(Sort.Direction.DESC, "dateCreation"));
+        return ResponseEntity.ok(new PagedModel<>(projetService.getResumesProjetsByEnseignant(email, archive, pageRequest)));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Projet> getProjet(@PathVariable String id) {
         return projetService.getProjetById(id)
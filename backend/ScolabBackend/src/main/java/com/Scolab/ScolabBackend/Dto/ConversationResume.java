@@ -0,0 +1,17 @@
+package com.Scolab.ScolabBackend.Dto;
+
+import java.util.Date;
+
+/**
+ * Ligne de la boîte de réception : résumé d'une conversation et nombre de messages non lus
+ * pour l'utilisateur courant (nbMessages - lus[utilisateur], sans compter les messages).
+ */
+public record ConversationResume(
+        String id,
+        String groupeId,
+        String enseignantId,
+        String dernierMessage,
+        Date dateDernierMessage,
+        long nbMessages,
+        long nonLus) {
+}
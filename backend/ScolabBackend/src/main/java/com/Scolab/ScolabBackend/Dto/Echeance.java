@@ -0,0 +1,19 @@
+package com.Scolab.ScolabBackend.Dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Échéance à venir (fin de projet, livrable à rendre ou tâche) indexée par le moteur de rappels.
+ * {@code type} vaut PROJET, LIVRABLE ou TACHE ; pour un projet, {@code id} et {@code projetId} sont égaux.
+ */
+public record Echeance(
+        String type,
+        String id,
+        String projetId,
+        String libelle,
+        LocalDateTime date) {
+
+    public static final String PROJET = "PROJET";
+    public static final String LIVRABLE = "LIVRABLE";
+    public static final String TACHE = "TACHE";
+}
@@ -0,0 +1,21 @@
+package com.Scolab.ScolabBackend.Dto;
+
+import com.Scolab.ScolabBackend.Entity.StatutProjet;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection "résumé" d'un projet pour le tableau de bord enseignant
+ * (sans DBRef ni tâches embarquées).
+ */
+public interface ProjetResume {
+    String getId();
+    String getNom();
+    String getDescription();
+    LocalDateTime getDateDebut();
+    LocalDateTime getDateFin();
+    StatutProjet getStatut();
+    Double getPourcentageAvancement();
+    LocalDateTime getDateCreation();
+    Boolean getArchive();
+}
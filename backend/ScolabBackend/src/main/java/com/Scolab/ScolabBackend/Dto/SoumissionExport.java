@@ -0,0 +1,13 @@
+package com.Scolab.ScolabBackend.Dto;
+
+/**
+ * Ligne de l'export ZIP des soumissions d'un projet : juste ce qu'il faut pour nommer et lire le fichier.
+ */
+public record SoumissionExport(
+        String livrableId,
+        String livrableNom,
+        String groupeId,
+        String groupeNom,
+        String fichierNom,
+        String fichierUrl) {
+}
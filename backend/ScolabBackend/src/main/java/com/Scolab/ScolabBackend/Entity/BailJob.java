@@ -0,0 +1,38 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+
+// Bail d'un job planifié : un seul nœud du cluster le détient jusqu'à son expiration (voir BailService)
+@Document(collection = "baux_jobs")
+@Data
+public class BailJob {
+
+    // Nom du job
+    @Id
+    private String id;
+
+    @Field("proprietaire")
+    private String proprietaire;
+
+    // Jeton de fencing : augmente à chaque changement de propriétaire, jamais au renouvellement
+    @Field("jeton")
+    private long jeton;
+
+    // Heure serveur Mongo ; le document d'un job disparu est purgé 30 jours après la fin du bail
+    @Indexed(expireAfter = "30d")
+    @Field("expiration")
+    private Date expiration;
+
+    @Field("acquis_le")
+    private Date acquisLe;
+
+    // Progression du job (ms epoch) écrite par le détenteur : le suivant reprend à partir de là
+    @Field("filigrane")
+    private Long filigrane;
+}
@@ -0,0 +1,34 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.Date;
+
+// Contenu stocké une seule fois sur disque, partagé par tous les Fichier qui y font référence
+@Document(collection = "blobs")
+@Data
+public class Blob {
+
+    @Id
+    private String id; // nom sur disque : <sha256>.<extension>
+
+    @Field("hash")
+    private String hash;
+
+    @Field("taille")
+    private Long taille;
+
+    @Field("references")
+    private long references;
+
+    @Field("date_creation")
+    private LocalDateTime dateCreation;
+
+    // Pierre tombale : date à laquelle un nœud a commencé à effacer le fichier, plus de nouvelle référence d'ici là
+    @Field("suppression")
+    private Date suppression;
+}
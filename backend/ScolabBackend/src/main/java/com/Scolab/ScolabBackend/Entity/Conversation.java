@@ -2,13 +2,18 @@ package com.Scolab.ScolabBackend.Entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-import java.util.List;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Data
 @Document(collection = "conversations")
+@CompoundIndex(name = "enseignant_date_dernier_message", def = "{'enseignantId': 1, 'dateDernierMessage': -1}")
+@CompoundIndex(name = "groupe_date_dernier_message", def = "{'groupeId': 1, 'dateDernierMessage': -1}")
 public class Conversation {
     @Id
     private String id;
@@ -20,5 +25,9 @@ public class Conversation {
     // Dernier message (pour affichage rapide)
     private String dernierMessage;
     private Date dateDernierMessage;
+    // Compteurs maintenus par une seule mise à jour atomique à chaque envoi :
+    // non lus d'un membre = nbMessages - lus[membreId]
+    private long nbMessages;
+    private Map<String, Long> lus = new HashMap<>();
 }
 
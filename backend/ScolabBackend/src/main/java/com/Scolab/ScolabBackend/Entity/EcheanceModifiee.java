@@ -0,0 +1,36 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Date;
+
+// Entrée du journal des échéances modifiées, relu par le détenteur du bail des rappels (voir EcheanceService)
+@Document(collection = "echeances_journal")
+@Data
+public class EcheanceModifiee {
+
+    // Généré par le nœud qui écrit : l'ordre suit son horloge, le lecteur relit avec une marge
+    @Id
+    private ObjectId id;
+
+    // PROJET, LIVRABLE ou TACHE
+    @Field("type")
+    private String type;
+
+    @Field("echeance_id")
+    private String echeanceId;
+
+    // Nœud auteur de la modification : il a déjà mis sa propre roue à jour
+    @Field("noeud")
+    private String noeud;
+
+    // Le journal ne sert qu'aux nœuds en marche : purgé après un jour
+    @Indexed(expireAfter = "1d")
+    @Field("date")
+    private Date date;
+}
@@ -0,0 +1,62 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+// Email rendu en attente d'envoi : la requête HTTP ne fait qu'insérer, un worker envoie en SMTP
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "statut_prochain_essai", def = "{'statut': 1, 'prochain_essai': 1}")
+@Data
+public class EmailOutbox {
+
+    @Id
+    private String id;
+
+    // Une même clé (type d'email + destinataire + objet métier) n'est mise en file qu'une seule fois
+    @Indexed(unique = true)
+    @Field("cle_idempotence")
+    private String cleIdempotence;
+
+    @Field("destinataire")
+    private String destinataire;
+
+    @Field("sujet")
+    private String sujet;
+
+    @Field("contenu_html")
+    private String contenuHtml;
+
+    @Field("statut")
+    private StatutEmail statut = StatutEmail.EN_ATTENTE;
+
+    @Field("tentatives")
+    private int tentatives;
+
+    @Field("prochain_essai")
+    private LocalDateTime prochainEssai;
+
+    // Date limite de traitement d'un job EN_COURS : au-delà, il est repris (worker arrêté en plein envoi)
+    @Field("verrouille_jusqua")
+    private LocalDateTime verrouilleJusqua;
+
+    @Field("derniere_erreur")
+    private String derniereErreur;
+
+    @Field("date_creation")
+    private LocalDateTime dateCreation;
+
+    @Field("date_envoi")
+    private LocalDateTime dateEnvoi;
+
+    // Passage à ENVOYE ou ECHEC : le job est purgé 30 jours après, bien au-delà des rejeux qu'évite la clé
+    // d'idempotence (reprises et renvois d'un même événement, en minutes ou en heures)
+    @Indexed(expireAfter = "30d")
+    @Field("date_fin")
+    private LocalDateTime dateFin;
+}
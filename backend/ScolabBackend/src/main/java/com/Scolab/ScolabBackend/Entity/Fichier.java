@@ -25,6 +25,9 @@ public class Fichier {
     @Field("date_upload")
     private java.time.LocalDateTime dateUpload;
 
+    @Field("hash")
+    private String hash; // SHA-256 du contenu (hex), sert d'ETag fort au téléchargement
+
     // Méthodes utilitaires
     public String getTailleFormatee() {
         if (taille == null) return "0 B";
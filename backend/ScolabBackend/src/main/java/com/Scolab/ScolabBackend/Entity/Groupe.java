@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -13,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "groupes")
+@CompoundIndex(name = "etudiants_id", def = "{'etudiants.$id': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -70,4 +72,8 @@ public class Groupe {
             this.etudiants.remove(etudiant);
         }
     }
+
+    public boolean retirerEtudiantParId(String etudiantId) {
+        return this.etudiants != null && this.etudiants.removeIf(e -> etudiantId.equals(e.getId()));
+    }
 }
\ No newline at end of file
@@ -3,7 +3,9 @@ package com.Scolab.ScolabBackend.Entity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -13,6 +15,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "livrables")
+@CompoundIndex(name = "projet_id", def = "{'projet.$id': 1, '_id': 1}")
+@CompoundIndex(name = "fichier_url", def = "{'fichier.url': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -65,6 +69,8 @@ public class Livrable {
 
     public void evaluerLivrable(Double note, String commentaires, Enseignant enseignant) {
         Evaluation eval = new Evaluation();
+        // Id propre à chaque évaluation : clé d'idempotence de l'email envoyé à l'étudiant
+        eval.setId(new ObjectId().toHexString());
         eval.setNote(note);
         eval.setCommentaires(commentaires);
         eval.setDateEvaluation(LocalDateTime.now());
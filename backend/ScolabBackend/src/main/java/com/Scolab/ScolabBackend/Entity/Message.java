@@ -2,12 +2,14 @@ package com.Scolab.ScolabBackend.Entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Data
 @Document(collection = "messages")
+@CompoundIndex(name = "conversation_date_id", def = "{'conversationId': 1, 'dateEnvoi': -1, '_id': -1}")
 public class Message {
     @Id
     private String id;
@@ -1,35 +1,39 @@
 package com.Scolab.ScolabBackend.Entity;
 
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.Map;
+
+// Boîte de notifications persistée : une entrée par destinataire, supprimée par Mongo après 90 jours
+@Document(collection = "notifications")
+@CompoundIndex(name = "etudiant_lu_date", def = "{'etudiantId': 1, 'lu': 1, 'date': -1, '_id': -1}")
+@Data
+@NoArgsConstructor
 public class Notification {
+    @Id
     private String id;
+    private String type;
     private String titre;
     private String message;
-    private String date;
+    @Indexed(name = "date_ttl", expireAfter = "90d")
+    private Date date = new Date();
     private boolean lu;
+    // Destinataire (id utilisateur : étudiant, ou enseignant pour les notifications qui le concernent)
     private String etudiantId;
+    private Map<String, Object> donnees;
 
-    public Notification() {}
-
-    public Notification(String id, String titre, String message, String date, boolean lu, String etudiantId) {
-        this.id = id;
+    public Notification(String type, String titre, String message, String etudiantId, Map<String, Object> donnees, Date date) {
+        this.type = type;
         this.titre = titre;
         this.message = message;
-        this.date = date;
-        this.lu = lu;
         this.etudiantId = etudiantId;
+        this.donnees = donnees;
+        this.date = date;
     }
-
-    public String getId() { return id; }
-    public void setId(String id) { this.id = id; }
-    public String getTitre() { return titre; }
-    public void setTitre(String titre) { this.titre = titre; }
-    public String getMessage() { return message; }
-    public void setMessage(String message) { this.message = message; }
-    public String getDate() { return date; }
-    public void setDate(String date) { this.date = date; }
-    public boolean isLu() { return lu; }
-    public void setLu(boolean lu) { this.lu = lu; }
-    public String getEtudiantId() { return etudiantId; }
-    public void setEtudiantId(String etudiantId) { this.etudiantId = etudiantId; }
 }
-
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -15,6 +16,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Document(collection = "projet")
+@CompoundIndex(name = "enseignant_archive_date_creation", def = "{'enseignant.$id': 1, 'archive': 1, 'date_creation': -1}")
+@CompoundIndex(name = "groupes_id", def = "{'groupes.$id': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
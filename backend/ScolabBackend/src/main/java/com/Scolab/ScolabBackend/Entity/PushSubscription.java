@@ -0,0 +1,37 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+// Abonnement Web Push d'un navigateur (PushSubscription.toJSON() côté client) ; un utilisateur peut en avoir plusieurs
+@Document(collection = "push_subscriptions")
+@Data
+public class PushSubscription {
+
+    @Id
+    private String id;
+
+    @Indexed
+    @Field("utilisateur_id")
+    private String utilisateurId;
+
+    @Indexed(unique = true)
+    @Field("endpoint")
+    private String endpoint;
+
+    // Clé publique ECDH P-256 du navigateur (base64url, 65 octets non compressés)
+    @Field("p256dh")
+    private String p256dh;
+
+    // Secret d'authentification du navigateur (base64url, 16 octets)
+    @Field("auth")
+    private String auth;
+
+    @Field("date_creation")
+    private LocalDateTime dateCreation;
+}
@@ -0,0 +1,8 @@
+package com.Scolab.ScolabBackend.Entity;
+
+public enum StatutEmail {
+    EN_ATTENTE,
+    EN_COURS,
+    ENVOYE,
+    ECHEC
+}
@@ -0,0 +1,48 @@
+package com.Scolab.ScolabBackend.Entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+// Upload par morceaux en cours : les octets reçus sont dans {app.upload.staging-dir}/reprise/{id}.part
+@Document(collection = "upload_sessions")
+@Data
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    @Field("livrable_id")
+    private String livrableId;
+
+    @Field("groupe_id")
+    private String groupeId;
+
+    @Field("nom_fichier")
+    private String nomFichier;
+
+    @Field("taille_totale")
+    private long tailleTotale;
+
+    // Nombre d'octets reçus et écrits sur disque : le client reprend à partir de là
+    @Field("offset")
+    private long offset;
+
+    @Field("date_creation")
+    private LocalDateTime dateCreation;
+
+    @Indexed
+    @Field("date_expiration")
+    private LocalDateTime dateExpiration;
+
+    // Réservation exclusive pendant l'écriture d'un morceau ou la finalisation ; expirée, elle est ignorée
+    @Field("verrou")
+    private String verrou;
+
+    @Field("verrou_expiration")
+    private LocalDateTime verrouExpiration;
+}
@@ -2,13 +2,16 @@ package com.Scolab.ScolabBackend.Entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDateTime;
 
+// Index TTL sur expiry_date créé par MigrationTokensExpires : Mongo supprime lui-même les tokens expirés
 @Document(collection = "verification_tokens")
+@CompoundIndex(name = "token_type_unique", def = "{'token': 1, 'token_type': 1}", unique = true)
 @Data
 public class VerificationToken {
 
@@ -26,7 +29,7 @@ public class VerificationToken {
     private LocalDateTime expiryDate;
 
     @Field("token_type")
-    private TokenType tokenType; // Ajoutez ce champ
+    private TokenType tokenType;
 
     @Field("created_at")
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -1,11 +1,19 @@
 package com.Scolab.ScolabBackend.Repository;
 
 import com.Scolab.ScolabBackend.Entity.Conversation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
 import java.util.List;
 
 public interface ConversationRepository extends MongoRepository<Conversation, String> {
     Conversation findByGroupeIdAndEnseignantId(String groupeId, String enseignantId);
     List<Conversation> findByEnseignantId(String enseignantId);
     List<Conversation> findByGroupeId(String groupeId);
+
+    // Conversations d'un membre (enseignant ou groupes de l'étudiant), plus récemment actives d'abord
+    @Query(value = "{ '$or': [ { 'enseignantId': ?0 }, { 'groupeId': { $in: ?1 } } ] }",
+            sort = "{ 'dateDernierMessage': -1, '_id': -1 }")
+    List<Conversation> findByMembre(String utilisateurId, List<String> groupeIds, Pageable pageable);
 }
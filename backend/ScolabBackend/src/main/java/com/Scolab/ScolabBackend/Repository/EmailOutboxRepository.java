@@ -0,0 +1,12 @@
+package com.Scolab.ScolabBackend.Repository;
+
+import com.Scolab.ScolabBackend.Entity.EmailOutbox;
+import com.Scolab.ScolabBackend.Entity.StatutEmail;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailOutboxRepository extends MongoRepository<EmailOutbox, String> {
+
+    long countByStatut(StatutEmail statut);
+}
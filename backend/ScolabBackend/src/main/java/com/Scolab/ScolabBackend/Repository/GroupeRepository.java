@@ -1,9 +1,15 @@
 package com.Scolab.ScolabBackend.Repository;
 
 import com.Scolab.ScolabBackend.Entity.Groupe;
+import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.util.List;
 
 public interface GroupeRepository extends MongoRepository<Groupe, String> {
-    // ...existing code...
-}
 
+    // Groupes (ids seulement) dont l'étudiant est membre, via l'index sur etudiants.$id
+    @Query(value = "{ 'etudiants.$id': ?0 }", fields = "{ '_id': 1 }")
+    List<Groupe> findIdsByEtudiant(ObjectId etudiantId);
+}
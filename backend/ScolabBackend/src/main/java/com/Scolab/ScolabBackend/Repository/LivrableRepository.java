@@ -1,6 +1,8 @@
 package com.Scolab.ScolabBackend.Repository;
 
 import com.Scolab.ScolabBackend.Entity.Livrable;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -20,4 +22,16 @@ public interface LivrableRepository extends MongoRepository<Livrable, String> {
 
     @Query("{ 'projet.enseignant.id': ?0 }")
     List<Livrable> findByEnseignantId(String enseignantId);
-}
\ No newline at end of file
+
+    // Livrables d'un ensemble de projets en une seule requête (index sur projet.$id)
+    @Query(value = "{ 'projet.$id': { $in: ?0 } }", sort = "{ '_id': 1 }")
+    List<Livrable> findByProjetRefs(List<ObjectId> projetIds);
+
+    // Pagination par curseur : livrables dont l'_id est strictement supérieur au curseur
+    @Query(value = "{ 'projet.$id': { $in: ?0 }, '_id': { $gt: ?1 } }", sort = "{ '_id': 1 }")
+    List<Livrable> findByProjetRefsApres(List<ObjectId> projetIds, ObjectId apresId, Pageable pageable);
+
+    // Métadonnées du fichier soumis (sans résoudre projet ni groupe), pour les en-têtes de téléchargement
+    @Query(value = "{ 'fichier.url': ?0 }", fields = "{ 'fichier': 1 }")
+    List<Livrable> findFichiersByUrl(String url, Pageable pageable);
+}
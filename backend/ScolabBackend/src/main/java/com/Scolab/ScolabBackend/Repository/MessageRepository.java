@@ -1,11 +1,39 @@
 package com.Scolab.ScolabBackend.Repository;
 
 import com.Scolab.ScolabBackend.Entity.Message;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+
+import java.util.Date;
 import java.util.List;
 
 public interface MessageRepository extends MongoRepository<Message, String> {
     List<Message> findByConversationIdOrderByDateEnvoiAsc(String conversationId);
     List<Message> findByConversationIdAndLuFalse(String conversationId);
-}
 
+    // Page la plus récente, du plus récent au plus ancien (index conversation_date_id)
+    @Query(value = "{ 'conversationId': ?0 }", sort = "{ 'dateEnvoi': -1, '_id': -1 }")
+    List<Message> findDerniers(String conversationId, Pageable pageable);
+
+    // Page strictement antérieure au curseur (dateEnvoi, _id) : départage les messages de même date
+    @Query(value = "{ 'conversationId': ?0, '$or': [ { 'dateEnvoi': { $lt: ?1 } }, { 'dateEnvoi': ?1, '_id': { $lt: ?2 } } ] }",
+            sort = "{ 'dateEnvoi': -1, '_id': -1 }")
+    List<Message> findAvant(String conversationId, Date dateEnvoi, ObjectId id, Pageable pageable);
+
+    // Messages lus par le lecteur une fois le curseur atteint : ceux jusqu'au curseur inclus, plus tous les siens
+    // (comptés lus dès l'envoi, même postérieurs au curseur)
+    @Query(value = "{ 'conversationId': ?0, '$or': [ { 'expediteurId': ?1 }, { 'dateEnvoi': { $lt: ?2 } }, { 'dateEnvoi': ?2, '_id': { $lte: ?3 } } ] }", count = true)
+    long countLusJusqua(String conversationId, String lecteurId, Date dateEnvoi, ObjectId id);
+
+    // Marquage "lu" en un seul updateMany (les messages du lecteur lui-même ne sont pas concernés)
+    @Query("{ 'conversationId': ?0, 'lu': false, 'expediteurId': { $ne: ?1 } }")
+    @Update("{ '$set': { 'lu': true } }")
+    long marquerTousLus(String conversationId, String lecteurId);
+
+    @Query("{ 'conversationId': ?0, 'lu': false, 'expediteurId': { $ne: ?1 }, '$or': [ { 'dateEnvoi': { $lt: ?2 } }, { 'dateEnvoi': ?2, '_id': { $lte: ?3 } } ] }")
+    @Update("{ '$set': { 'lu': true } }")
+    long marquerLusJusqua(String conversationId, String lecteurId, Date dateEnvoi, ObjectId id);
+}
@@ -0,0 +1,32 @@
+package com.Scolab.ScolabBackend.Repository;
+
+import com.Scolab.ScolabBackend.Entity.Notification;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+
+import java.util.Date;
+import java.util.List;
+
+public interface NotificationRepository extends MongoRepository<Notification, String> {
+
+    // 'lu' $in [false, true] : Mongo fusionne les deux branches de l'index etudiant_lu_date déjà triées par date
+    @Query(value = "{ 'etudiantId': ?0, 'lu': { $in: ?1 } }", sort = "{ 'date': -1, '_id': -1 }")
+    List<Notification> findDernieres(String etudiantId, List<Boolean> lu, Pageable pageable);
+
+    @Query(value = "{ 'etudiantId': ?0, 'lu': { $in: ?1 }, '$or': [ { 'date': { $lt: ?2 } }, { 'date': ?2, '_id': { $lt: ?3 } } ] }",
+            sort = "{ 'date': -1, '_id': -1 }")
+    List<Notification> findAvant(String etudiantId, List<Boolean> lu, Date date, ObjectId id, Pageable pageable);
+
+    long countByEtudiantIdAndLuFalse(String etudiantId);
+
+    @Query("{ '_id': ?0, 'etudiantId': ?1, 'lu': false }")
+    @Update("{ '$set': { 'lu': true } }")
+    long marquerLue(String id, String etudiantId);
+
+    @Query("{ 'etudiantId': ?0, 'lu': false, 'date': { $lte: ?1 } }")
+    @Update("{ '$set': { 'lu': true } }")
+    long marquerLuesJusqua(String etudiantId, Date jusqua);
+}
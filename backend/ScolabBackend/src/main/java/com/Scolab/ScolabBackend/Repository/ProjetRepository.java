@@ -1,8 +1,12 @@
 package com.Scolab.ScolabBackend.Repository;
 
+import com.Scolab.ScolabBackend.Dto.ProjetResume;
 import com.Scolab.ScolabBackend.Entity.Projet;
 import com.Scolab.ScolabBackend.Entity.StatutProjet;
 import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -19,9 +23,34 @@ public interface ProjetRepository extends MongoRepository<Projet, String> {
 
     List<Projet> findByEnseignant(Utilisateur enseignant);
 
+    // Requêtes servies par l'index (enseignant.$id, archive, date_creation) : l'id est passé en ObjectId
+    // pour correspondre à la valeur stockée dans la DBRef.
+    @Query(value = "{ 'enseignant.$id': ?0, 'archive': { $in: [false, null] } }", sort = "{ 'dateCreation': -1 }")
+    List<Projet> findActifsByEnseignant(ObjectId enseignantId);
+
+    @Query(value = "{ 'enseignant.$id': ?0, 'archive': true }", sort = "{ 'dateCreation': -1 }")
+    List<Projet> findArchivesByEnseignant(ObjectId enseignantId);
+
+    @Query(value = "{ 'enseignant.$id': ?0 }", sort = "{ 'dateCreation': -1 }")
+    List<Projet> findAllByEnseignantRef(ObjectId enseignantId);
+
+    @Query(value = "{ 'enseignant.$id': ?0, 'archive': { $in: [false, null] } }", fields = "{ '_id': 1 }")
+    List<Projet> findIdsActifsByEnseignant(ObjectId enseignantId);
+
+    @Query(value = "{ 'enseignant.$id': ?0, 'archive': { $in: [false, null] } }",
+            fields = "{ 'nom': 1, 'description': 1, 'dateDebut': 1, 'dateFin': 1, 'statut': 1, 'pourcentageAvancement': 1, 'dateCreation': 1, 'archive': 1 }")
+    Page<ProjetResume> findResumesActifsByEnseignant(ObjectId enseignantId, Pageable pageable);
+
+    @Query(value = "{ 'enseignant.$id': ?0, 'archive': true }",
+            fields = "{ 'nom': 1, 'description': 1, 'dateDebut': 1, 'dateFin': 1, 'statut': 1, 'pourcentageAvancement': 1, 'dateCreation': 1, 'archive': 1 }")
+    Page<ProjetResume> findResumesArchivesByEnseignant(ObjectId enseignantId, Pageable pageable);
+
     @Query("{ 'groupes.id': ?0 }")
     List<Projet> findByGroupeId(String groupeId);
 
+    @Query("{ 'groupes.$id': { $in: ?0 } }")
+    List<Projet> findByGroupeRefs(List<ObjectId> groupeIds);
+
     @Query("{ 'enseignant.id': ?0, 'statut': ?1 }")
     List<Projet> findByEnseignantAndStatut(String enseignantId, StatutProjet statut);
 
@@ -0,0 +1,21 @@
+package com.Scolab.ScolabBackend.Repository;
+
+import com.Scolab.ScolabBackend.Entity.PushSubscription;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PushSubscriptionRepository extends MongoRepository<PushSubscription, String> {
+
+    List<PushSubscription> findByUtilisateurIdIn(Collection<String> utilisateurIds);
+
+    Optional<PushSubscription> findByEndpoint(String endpoint);
+
+    long deleteByEndpoint(String endpoint);
+
+    long deleteByEndpointAndUtilisateurId(String endpoint, String utilisateurId);
+}
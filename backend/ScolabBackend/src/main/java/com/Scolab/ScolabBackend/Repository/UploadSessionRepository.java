@@ -0,0 +1,14 @@
+package com.Scolab.ScolabBackend.Repository;
+
+import com.Scolab.ScolabBackend.Entity.UploadSession;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends MongoRepository<UploadSession, String> {
+
+    List<UploadSession> findByDateExpirationBefore(LocalDateTime date);
+}
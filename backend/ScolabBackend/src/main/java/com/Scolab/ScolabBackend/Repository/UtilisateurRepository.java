@@ -4,11 +4,13 @@ import com.Scolab.ScolabBackend.Entity.Enseignant;
 import com.Scolab.ScolabBackend.Entity.Etudiant;
 import com.Scolab.ScolabBackend.Entity.Role;
 import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.security.AuthProvider;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,4 +42,8 @@ public interface UtilisateurRepository extends MongoRepository<Utilisateur, Stri
 
     @Query("{ 'nomDep': { $in: [?0] } }")
     List<Utilisateur> findByNomDepContaining(String nomDep);
+
+    // Destinataires d'un envoi groupé : seulement ce qu'il faut pour l'email
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'email': 1, 'nom': 1, 'prenom': 1 }")
+    List<Utilisateur> findContactsByIds(Collection<ObjectId> ids);
 }
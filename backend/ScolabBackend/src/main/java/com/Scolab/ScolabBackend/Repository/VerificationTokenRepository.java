@@ -17,7 +17,6 @@ public interface VerificationTokenRepository extends MongoRepository<Verificatio
     VerificationToken findByToken(String token);
     List<VerificationToken> findByUser(Utilisateur user);
     void deleteByUser(Utilisateur user);
-    void deleteByExpiryDateBefore(LocalDateTime date);
 
     Optional<VerificationToken> findByTokenAndTokenType(String token, TokenType tokenType);
 
@@ -38,6 +37,7 @@ public interface VerificationTokenRepository extends MongoRepository<Verificatio
 
     List<VerificationToken> findByTokenType(TokenType tokenType);
 
+    // Point lookup sur l'index unique (token, token_type) ; le filtre de date écarte les tokens pas encore purgés par le TTL
     @Query("{ 'token': ?0, 'tokenType': ?1, 'expiryDate': { $gt: ?2 } }")
     Optional<VerificationToken> findValidTokenByTokenAndTokenType(String token, TokenType tokenType, LocalDateTime now);
 }
\ No newline at end of file
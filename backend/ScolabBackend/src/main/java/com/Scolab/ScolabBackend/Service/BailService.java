@@ -0,0 +1,250 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Baux de jobs planifiés sur la collection baux_jobs : quand plusieurs nœuds tournent, un job n'a qu'un
+ * propriétaire à la fois. Le nœud détenteur renouvelle son bail à chaque exécution ; s'il s'arrête, le bail
+ * expire et le premier autre nœud qui passe le reprend. Toutes les heures sont celles du serveur Mongo
+ * ($$NOW), les horloges des nœuds n'interviennent pas. Le jeton de fencing augmente à chaque changement de
+ * propriétaire : un nœud figé puis réveillé après la reprise détecte, avec {@link #estValide}, que son
+ * jeton est périmé avant d'écrire.
+ */
+@Service
+public class BailService {
+
+    private static final Logger log = LoggerFactory.getLogger(BailService.class);
+    private static final String COLLECTION = "baux_jobs";
+
+    private final MongoTemplate mongoTemplate;
+    private final String noeud;
+
+    private final Map<String, Long> detenus = new ConcurrentHashMap<>();
+    private final Map<String, Compteurs> compteurs = new ConcurrentHashMap<>();
+
+    public BailService(MongoTemplate mongoTemplate, @Value("${app.baux.noeud:}") String noeud) {
+        this.mongoTemplate = mongoTemplate;
+        this.noeud = noeud.isBlank() ? noeudParDefaut() : noeud;
+    }
+
+    /**
+     * Acquiert ou renouvelle le bail du job pour {@code duree}. Vide si un autre nœud le détient
+     * (ou si Mongo est injoignable : dans le doute, on ne s'exécute pas).
+     */
+    public Optional<Jeton> acquerir(String job, Duration duree) {
+        Compteurs stats = compteurs.computeIfAbsent(job, j -> new Compteurs());
+        Document bail;
+        try {
+            bail = reprendre(job, duree);
+            if (bail == null) {
+                bail = creer(job, duree);
+            }
+        } catch (MongoServerException e) {
+            if (ErrorCategory.fromErrorCode(e.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                return echec(job, stats, e);
+            }
+            // Le document existe sans que ce nœud puisse le prendre : bail détenu par un autre nœud
+            bail = null;
+        } catch (MongoException e) {
+            return echec(job, stats, e);
+        }
+
+        if (bail == null || !noeud.equals(bail.getString("proprietaire"))) {
+            stats.refus.incrementAndGet();
+            if (detenus.remove(job) != null) {
+                stats.pertes.incrementAndGet();
+                log.warn("Bail du job {} perdu par {}", job, noeud);
+            }
+            return Optional.empty();
+        }
+
+        long jeton = ((Number) bail.get("jeton")).longValue();
+        Long precedent = detenus.put(job, jeton);
+        boolean nouveau = precedent == null || precedent != jeton;
+        if (nouveau) {
+            stats.acquisitions.incrementAndGet();
+            log.info("Bail du job {} acquis par {} (jeton {})", job, noeud, jeton);
+        } else {
+            stats.renouvellements.incrementAndGet();
+        }
+        return Optional.of(new Jeton(job, jeton, nouveau));
+    }
+
+    // Renouvelle le bail de ce nœud ou reprend un bail expiré ; null si le document n'existe pas ou n'est pas prenable.
+    // Sans upsert : Mongo refuse $expr dans le filtre d'un upsert
+    private Document reprendre(String job, Duration duree) {
+        Document filtre = new Document("_id", job).append("$or", List.of(
+                new Document("proprietaire", noeud),
+                new Document("$expr", new Document("$lt", List.of("$expiration", "$$NOW")))));
+        Document memeProprietaire = new Document("$eq", List.of("$proprietaire", new Document("$literal", noeud)));
+        Document set = new Document()
+                .append("jeton", new Document("$cond", List.of(memeProprietaire,
+                        "$jeton",
+                        new Document("$add", List.of(new Document("$ifNull", List.of("$jeton", 0L)), 1L)))))
+                .append("acquis_le", new Document("$cond", List.of(memeProprietaire, "$acquis_le", "$$NOW")))
+                .append("proprietaire", new Document("$literal", noeud))
+                .append("expiration", new Document("$add", List.of("$$NOW", duree.toMillis())));
+        return collection().findOneAndUpdate(filtre, List.of(new Document("$set", set)),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    }
+
+    // Premier bail du job : une insertion pure (l'upsert ne matche jamais un document existant, qui porte toujours
+    // un jeton), pour garder l'heure serveur ($$NOW). Si le document existe déjà, clé dupliquée : bail d'un autre nœud
+    private Document creer(String job, Duration duree) {
+        Document set = new Document()
+                .append("jeton", 1L)
+                .append("acquis_le", "$$NOW")
+                .append("proprietaire", new Document("$literal", noeud))
+                .append("expiration", new Document("$add", List.of("$$NOW", duree.toMillis())));
+        return collection().findOneAndUpdate(
+                new Document("_id", job).append("jeton", new Document("$exists", false)),
+                List.of(new Document("$set", set)),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+    }
+
+    /**
+     * Vérification de fencing juste avant un effet de bord : le bail est toujours à ce nœud, avec ce jeton.
+     */
+    public boolean estValide(Jeton jeton) {
+        try {
+            return collection().countDocuments(new Document("_id", jeton.job())
+                    .append("proprietaire", noeud)
+                    .append("jeton", jeton.valeur())
+                    .append("$expr", new Document("$gt", List.of("$expiration", "$$NOW")))) > 0;
+        } catch (MongoException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Dernier filigrane (progression en ms epoch) enregistré pour le job, vide si aucun détenteur n'en a écrit.
+     */
+    public Optional<Long> filigrane(String job) {
+        try {
+            Document bail = collection().find(new Document("_id", job))
+                    .projection(new Document("filigrane", 1)).first();
+            return bail != null && bail.get("filigrane") instanceof Number n ? Optional.of(n.longValue()) : Optional.empty();
+        } catch (MongoException e) {
+            log.warn("Lecture du filigrane du job {} impossible : {}", job, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    // Avance le filigrane (jamais en arrière), seulement si ce jeton détient toujours le bail
+    public boolean avancerFiligrane(Jeton jeton, long filigrane) {
+        try {
+            return collection().updateOne(new Document("_id", jeton.job())
+                            .append("proprietaire", noeud)
+                            .append("jeton", jeton.valeur()),
+                    new Document("$max", new Document("filigrane", filigrane))).getMatchedCount() > 0;
+        } catch (MongoException e) {
+            log.warn("Mise à jour du filigrane du job {} impossible : {}", jeton.job(), e.getMessage());
+            return false;
+        }
+    }
+
+    // Rend le bail tout de suite : un autre nœud peut le prendre sans attendre l'expiration
+    public void liberer(String job) {
+        if (detenus.remove(job) == null) {
+            return;
+        }
+        try {
+            collection().updateOne(new Document("_id", job).append("proprietaire", noeud),
+                    List.of(new Document("$set", new Document("expiration", "$$NOW"))));
+        } catch (MongoException e) {
+            log.warn("Libération du bail {} impossible : {}", job, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void libererTout() {
+        for (String job : List.copyOf(detenus.keySet())) {
+            liberer(job);
+        }
+    }
+
+    public String getNoeud() {
+        return noeud;
+    }
+
+    public Map<String, Object> statistiques() {
+        Map<String, Object> jobs = new LinkedHashMap<>();
+        compteurs.forEach((job, stats) -> {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            Long jeton = detenus.get(job);
+            ligne.put("detenu", jeton != null);
+            ligne.put("jeton", jeton);
+            ligne.put("acquisitions", stats.acquisitions.get());
+            ligne.put("renouvellements", stats.renouvellements.get());
+            ligne.put("refus", stats.refus.get());
+            ligne.put("pertes", stats.pertes.get());
+            ligne.put("erreurs", stats.erreurs.get());
+            jobs.put(job, ligne);
+        });
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("noeud", noeud);
+        resultat.put("jobs", jobs);
+        return resultat;
+    }
+
+    private Optional<Jeton> echec(String job, Compteurs stats, MongoException e) {
+        stats.erreurs.incrementAndGet();
+        if (detenus.remove(job) != null) {
+            stats.pertes.incrementAndGet();
+        }
+        log.warn("Bail du job {} indisponible : {}", job, e.getMessage());
+        return Optional.empty();
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+
+    // Unique par processus : deux instances sur la même machine ne partagent pas leurs baux
+    private static String noeudParDefaut() {
+        String hote;
+        try {
+            hote = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            hote = "noeud";
+        }
+        return hote + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Bail détenu : {@code nouveau} est vrai quand ce nœud vient d'en devenir propriétaire
+     * (premier passage ou reprise), pour que le job recharge son état.
+     */
+    public record Jeton(String job, long valeur, boolean nouveau) {
+    }
+
+    private static final class Compteurs {
+        private final AtomicLong acquisitions = new AtomicLong();
+        private final AtomicLong renouvellements = new AtomicLong();
+        private final AtomicLong refus = new AtomicLong();
+        private final AtomicLong pertes = new AtomicLong();
+        private final AtomicLong erreurs = new AtomicLong();
+    }
+}
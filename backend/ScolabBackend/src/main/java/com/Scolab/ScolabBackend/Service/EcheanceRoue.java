@@ -0,0 +1,184 @@
+package com.Scolab.ScolabBackend.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Roue temporelle hiérarchique (timing wheel) : planifier, annuler et avancer d'un tick coûtent O(1),
+ * quel que soit le nombre d'échéances en attente. Le niveau 0 découpe le temps en ticks ; chaque niveau
+ * supérieur a pour case un tour complet du niveau inférieur. Quand l'heure d'une case supérieure arrive,
+ * ses entrées redescendent d'un niveau ; celles du niveau 0 sont échues. Au-delà du dernier niveau,
+ * les entrées attendent dans un débordement réexaminé à chaque case du dernier niveau.
+ * Précision : une entrée est rendue au plus un tick après son échéance, jamais avant.
+ */
+final class EcheanceRoue<T> {
+
+    private final long[] durees;
+    private final List<Entree<T>>[][] niveaux;
+    private final List<Entree<T>> debordement = new ArrayList<>();
+    private final Map<String, Entree<T>> parCle = new HashMap<>();
+    private long courant;
+
+    @SuppressWarnings("unchecked")
+    EcheanceRoue(long tickMs, long debutMs, int... cases) {
+        if (tickMs <= 0 || cases.length == 0) {
+            throw new IllegalArgumentException("Tick et nombre de cases obligatoires");
+        }
+        this.durees = new long[cases.length];
+        this.niveaux = new List[cases.length][];
+        long duree = tickMs;
+        for (int i = 0; i < cases.length; i++) {
+            durees[i] = duree;
+            niveaux[i] = new List[cases[i]];
+            duree = Math.multiplyExact(duree, cases[i]);
+        }
+        this.courant = Math.floorDiv(debutMs, tickMs) * tickMs;
+    }
+
+    /**
+     * Planifie {@code valeur} à {@code echeanceMs}. Une entrée de même clé est remplacée.
+     */
+    synchronized void planifier(String cle, long echeanceMs, T valeur) {
+        annuler(cle);
+        Entree<T> entree = new Entree<>(cle, echeanceMs, valeur);
+        parCle.put(cle, entree);
+        placer(entree, null);
+    }
+
+    // Annulation paresseuse : l'entrée est marquée et ignorée quand sa case est vidée
+    synchronized boolean annuler(String cle) {
+        Entree<T> entree = parCle.remove(cle);
+        if (entree == null) {
+            return false;
+        }
+        entree.annulee = true;
+        return true;
+    }
+
+    // Vide la roue et recale son horloge sur maintenantMs
+    synchronized void vider(long maintenantMs) {
+        debordement.clear();
+        parCle.clear();
+        for (List<Entree<T>>[] niveau : niveaux) {
+            Arrays.fill(niveau, null);
+        }
+        courant = Math.floorDiv(maintenantMs, durees[0]) * durees[0];
+    }
+
+    synchronized int taille() {
+        return parCle.size();
+    }
+
+    /**
+     * Avance l'horloge jusqu'à {@code maintenantMs} et retourne les valeurs échues, dans l'ordre des ticks.
+     */
+    synchronized List<T> avancer(long maintenantMs) {
+        List<T> echues = new ArrayList<>();
+        long tick = durees[0];
+        if ((maintenantMs - courant) / tick > (long) niveaux[0].length * 2) {
+            // Long saut (démarrage tardif, horloge corrigée) : tout replacer d'un coup plutôt que tick par tick
+            reconstruire(maintenantMs, echues);
+            return echues;
+        }
+        while (courant + tick <= maintenantMs) {
+            courant += tick;
+            int dernier = durees.length - 1;
+            if (!debordement.isEmpty() && courant % durees[dernier] == 0) {
+                List<Entree<T>> attente = new ArrayList<>(debordement);
+                debordement.clear();
+                for (Entree<T> entree : attente) {
+                    placer(entree, echues);
+                }
+            }
+            // Du niveau le plus haut au niveau 0 : une entrée qui descend peut être échue dans ce même tick
+            for (int niveau = dernier; niveau >= 0; niveau--) {
+                if (courant % durees[niveau] != 0) {
+                    continue;
+                }
+                int index = (int) Math.floorMod(courant / durees[niveau], (long) niveaux[niveau].length);
+                List<Entree<T>> contenu = niveaux[niveau][index];
+                if (contenu == null) {
+                    continue;
+                }
+                niveaux[niveau][index] = null;
+                for (Entree<T> entree : contenu) {
+                    placer(entree, echues);
+                }
+            }
+        }
+        return echues;
+    }
+
+    private void reconstruire(long maintenantMs, List<T> echues) {
+        List<Entree<T>> toutes = new ArrayList<>(debordement);
+        debordement.clear();
+        for (List<Entree<T>>[] niveau : niveaux) {
+            for (int i = 0; i < niveau.length; i++) {
+                if (niveau[i] != null) {
+                    toutes.addAll(niveau[i]);
+                    niveau[i] = null;
+                }
+            }
+        }
+        courant = Math.floorDiv(maintenantMs, durees[0]) * durees[0];
+        toutes.sort((a, b) -> Long.compare(a.echeance, b.echeance));
+        for (Entree<T> entree : toutes) {
+            placer(entree, echues);
+        }
+    }
+
+    // Range l'entrée au niveau le plus bas qui la couvre, ou la rend échue si son heure est passée
+    private void placer(Entree<T> entree, List<T> echues) {
+        if (entree.annulee) {
+            return;
+        }
+        if (entree.echeance <= courant) {
+            if (echues != null) {
+                parCle.remove(entree.cle);
+                echues.add(entree.valeur);
+                return;
+            }
+            // Planifiée dans le passé : échue au prochain tick
+            ajouter(0, Math.floorDiv(courant, durees[0]) + 1, entree);
+            return;
+        }
+        // Niveau 0 : case du tick où l'échéance est atteinte (arrondi supérieur)
+        long caseTick = Math.floorDiv(entree.echeance + durees[0] - 1, durees[0]);
+        if (caseTick - courant / durees[0] <= niveaux[0].length) {
+            ajouter(0, caseTick, entree);
+            return;
+        }
+        for (int niveau = 1; niveau < durees.length; niveau++) {
+            long caseNiveau = Math.floorDiv(entree.echeance, durees[niveau]);
+            if (caseNiveau - courant / durees[niveau] < niveaux[niveau].length) {
+                ajouter(niveau, caseNiveau, entree);
+                return;
+            }
+        }
+        debordement.add(entree);
+    }
+
+    private void ajouter(int niveau, long numeroCase, Entree<T> entree) {
+        int index = (int) Math.floorMod(numeroCase, (long) niveaux[niveau].length);
+        if (niveaux[niveau][index] == null) {
+            niveaux[niveau][index] = new ArrayList<>();
+        }
+        niveaux[niveau][index].add(entree);
+    }
+
+    private static final class Entree<T> {
+        private final String cle;
+        private final long echeance;
+        private final T valeur;
+        private boolean annulee;
+
+        private Entree(String cle, long echeance, T valeur) {
+            this.cle = cle;
+            this.echeance = echeance;
+            this.valeur = valeur;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Dto.Echeance;
+import com.Scolab.ScolabBackend.Entity.EcheanceModifiee;
+import com.Scolab.ScolabBackend.Entity.Livrable;
+import com.Scolab.ScolabBackend.Entity.Projet;
+import com.Scolab.ScolabBackend.Entity.StatutLivrable;
+import com.Scolab.ScolabBackend.Entity.StatutProjet;
+import com.Scolab.ScolabBackend.Entity.StatutTache;
+import com.Scolab.ScolabBackend.Entity.Tache;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Moteur de rappels d'échéances : les fins de projets, livrables à rendre et tâches à venir sont indexés
+ * dans une {@link EcheanceRoue}, un rappel par décalage configuré ({@code app.echeances.rappels}, ex. 72h,24h).
+ * Les échéances sont chargées quand le nœud prend le bail du job, puis tenues à jour par les services à
+ * chaque modification, sans rescan. Les rappels échus d'un même projet partent ensemble : destinataires
+ * résolus en un lot, une notification par ensemble d'étudiants concernés par les mêmes échéances.
+ * En cluster, seul le détenteur du bail envoie. Chaque nœud note les échéances qu'il modifie dans un journal
+ * (echeances_journal) ; à chaque tick, le détenteur relit les entrées des autres nœuds et relit ces seules
+ * échéances pour mettre sa roue à jour. Après chaque tick, il enregistre
+ * dans le bail l'heure jusqu'à laquelle les rappels sont partis (filigrane) : un nouveau détenteur rejoue
+ * les rappels échus depuis, perdus pendant la bascule ou l'arrêt du cluster.
+ */
+@Service
+public class EcheanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(EcheanceService.class);
+    static final String JOB = "rappels-echeances";
+    // Relecture du journal avec recouvrement : écart d'horloge entre nœuds, écritures encore en vol
+    private static final long MARGE_JOURNAL_MS = Duration.ofMinutes(5).toMillis();
+    private static final DateTimeFormatter FORMAT_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy 'à' HH:mm");
+
+    private final MongoCustomService mongoCustomService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BailService bailService;
+    private final List<Duration> rappels;
+    private final EcheanceRoue<Rappel> roue;
+    private final Duration dureeBail;
+    // État du journal, manipulé par le seul thread du scheduler
+    private long lectureJournal = System.currentTimeMillis();
+    private final Set<ObjectId> journalApplique = new HashSet<>();
+    private boolean chargee;
+
+    public EcheanceService(MongoCustomService mongoCustomService,
+                           ApplicationEventPublisher eventPublisher,
+                           BailService bailService,
+                           @Value("${app.echeances.rappels:72h,24h}") String rappels,
+                           @Value("${app.echeances.tick-ms:60000}") long tickMs) {
+        this.mongoCustomService = mongoCustomService;
+        this.eventPublisher = eventPublisher;
+        this.bailService = bailService;
+        // Plusieurs ticks manqués avant qu'un autre nœud ne reprenne : pas de bascule sur un simple ralentissement
+        this.dureeBail = Duration.ofMillis(tickMs * 3);
+        this.rappels = new ArrayList<>();
+        for (String rappel : rappels.split(",")) {
+            if (!rappel.isBlank()) {
+                this.rappels.add(DurationStyle.detectAndParse(rappel.trim()));
+            }
+        }
+        // Avec un tick d'une minute : 60 cases d'une minute, 24 d'une heure, 64 d'un jour, puis débordement
+        this.roue = new EcheanceRoue<>(tickMs, System.currentTimeMillis(), 60, 24, 64);
+    }
+
+    /**
+     * Remplace le contenu de la roue par les échéances à venir ; les rappels déclenchés après {@code depuisMs}
+     * mais déjà passés sont rejoués au prochain tick. Ceux d'une échéance elle-même passée ne le sont pas.
+     */
+    void charger(long depuisMs) {
+        try {
+            // Le journal antérieur est couvert par le chargement
+            lectureJournal = System.currentTimeMillis();
+            journalApplique.clear();
+            roue.vider(lectureJournal);
+            List<Echeance> echeances = mongoCustomService.echeancesAVenir(new Date());
+            echeances.forEach(echeance -> planifier(echeance, depuisMs));
+            chargee = true;
+            log.info("Rappels d'échéances : {} échéances indexées, {} rappels planifiés", echeances.size(), roue.taille());
+        } catch (RuntimeException e) {
+            chargee = false;
+            log.error("Chargement des échéances impossible, nouvel essai au prochain tick : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * (Re)planifie les rappels d'une échéance ; les rappels déjà passés ne sont pas rattrapés.
+     */
+    public void planifier(Echeance echeance) {
+        planifier(echeance, System.currentTimeMillis());
+        journaliser(echeance.type(), echeance.id());
+    }
+
+    private void planifier(Echeance echeance, long depuisMs) {
+        retirer(echeance.type(), echeance.id());
+        if (echeance.date() == null) {
+            return;
+        }
+        long echeanceMs = echeance.date().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (Duration avance : rappels) {
+            long declenchement = echeanceMs - avance.toMillis();
+            if (declenchement > depuisMs) {
+                roue.planifier(cle(echeance.type(), echeance.id(), avance), declenchement, new Rappel(echeance, avance));
+            }
+        }
+    }
+
+    public void annuler(String type, String id) {
+        retirer(type, id);
+        journaliser(type, id);
+    }
+
+    private void retirer(String type, String id) {
+        for (Duration avance : rappels) {
+            roue.annuler(cle(type, id, avance));
+        }
+    }
+
+    private void journaliser(String type, String id) {
+        try {
+            mongoCustomService.journaliserEcheance(type, id, bailService.getNoeud());
+        } catch (RuntimeException e) {
+            log.warn("Échéance {} {} non journalisée, le détenteur des rappels ne la verra qu'à sa prochaine reprise : {}",
+                    type, id, e.getMessage());
+        }
+    }
+
+    public void planifierProjet(Projet projet) {
+        if (projet == null || projet.getId() == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(projet.getArchive())
+                || projet.getStatut() == StatutProjet.TERMINE || projet.getStatut() == StatutProjet.ANNULE) {
+            annuler(Echeance.PROJET, projet.getId());
+            return;
+        }
+        planifier(new Echeance(Echeance.PROJET, projet.getId(), projet.getId(), projet.getNom(), projet.getDateFin()));
+    }
+
+    public void planifierTache(Tache tache) {
+        if (tache == null || tache.getId() == null) {
+            return;
+        }
+        if (tache.getStatut() == StatutTache.TERMINEE) {
+            annuler(Echeance.TACHE, tache.getId());
+            return;
+        }
+        planifier(new Echeance(Echeance.TACHE, tache.getId(), tache.getProjetId(), tache.getTitre(), tache.getDateEcheance()));
+    }
+
+    public void planifierLivrable(Livrable livrable) {
+        if (livrable == null || livrable.getId() == null) {
+            return;
+        }
+        if (livrable.getStatut() != StatutLivrable.A_SOUMETTRE) {
+            annuler(Echeance.LIVRABLE, livrable.getId());
+            return;
+        }
+        String projetId = livrable.getProjet() != null ? livrable.getProjet().getId() : null;
+        planifier(new Echeance(Echeance.LIVRABLE, livrable.getId(), projetId, livrable.getNom(), livrable.getDateEcheance()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.echeances.tick-ms:60000}")
+    public void avancer() {
+        long maintenant = System.currentTimeMillis();
+        Optional<BailService.Jeton> bail = bailService.acquerir(JOB, dureeBail);
+        if (bail.isEmpty()) {
+            // La roue avance sur tous les nœuds, mais un non-détenteur jette ses rappels échus
+            roue.avancer(maintenant);
+            return;
+        }
+        if (bail.get().nouveau() || !chargee) {
+            // Reprise (ou chargement précédent en échec) : les rappels échus après le filigrane du détenteur précédent (y compris ceux de ce tick)
+            // sont replanifiés et partent au tick suivant ; le filigrane n'avance qu'une fois envoyés
+            charger(bailService.filigrane(JOB).orElse(maintenant));
+            return;
+        }
+        appliquerJournal(maintenant);
+        List<Rappel> echus = roue.avancer(maintenant);
+        if (!echus.isEmpty()) {
+            if (!bailService.estValide(bail.get())) {
+                return;
+            }
+            declencher(echus);
+        }
+        bailService.avancerFiligrane(bail.get(), maintenant);
+    }
+
+    // Échéances modifiées par les autres nœuds depuis la dernière lecture : chacune est relue dans sa collection,
+    // la relecture d'une entrée déjà vue ou dans le désordre donne donc le même résultat
+    private void appliquerJournal(long maintenant) {
+        List<EcheanceModifiee> modifications;
+        try {
+            modifications = mongoCustomService.echeancesModifiees(new ObjectId(new Date(lectureJournal - MARGE_JOURNAL_MS)));
+        } catch (RuntimeException e) {
+            log.warn("Lecture du journal des échéances impossible, nouvel essai au prochain tick : {}", e.getMessage());
+            return;
+        }
+        lectureJournal = maintenant;
+        Date apres = new Date(maintenant);
+        for (EcheanceModifiee modification : modifications) {
+            if (bailService.getNoeud().equals(modification.getNoeud()) || !journalApplique.add(modification.getId())) {
+                continue;
+            }
+            try {
+                mongoCustomService.echeance(modification.getType(), modification.getEcheanceId(), apres).ifPresentOrElse(
+                        echeance -> planifier(echeance, maintenant),
+                        () -> retirer(modification.getType(), modification.getEcheanceId()));
+            } catch (RuntimeException e) {
+                journalApplique.remove(modification.getId());
+                log.warn("Échéance {} {} non relue, nouvel essai au prochain tick : {}",
+                        modification.getType(), modification.getEcheanceId(), e.getMessage());
+            }
+        }
+        journalApplique.removeIf(id -> id.getDate().getTime() < lectureJournal - 2 * MARGE_JOURNAL_MS);
+    }
+
+    void declencher(List<Rappel> echus) {
+        Map<String, List<Rappel>> parProjet = new LinkedHashMap<>();
+        for (Rappel rappel : echus) {
+            parProjet.computeIfAbsent(Objects.toString(rappel.echeance().projetId(), ""), p -> new ArrayList<>()).add(rappel);
+        }
+        for (Map.Entry<String, List<Rappel>> lot : parProjet.entrySet()) {
+            try {
+                notifierProjet(lot.getKey().isEmpty() ? null : lot.getKey(), lot.getValue());
+            } catch (RuntimeException e) {
+                log.error("Rappels d'échéance du projet {} non envoyés : {}", lot.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    private void notifierProjet(String projetId, List<Rappel> rappelsDuProjet) {
+        boolean finDeProjet = false;
+        Set<String> livrableIds = new LinkedHashSet<>();
+        Set<String> tacheIds = new LinkedHashSet<>();
+        for (Rappel rappel : rappelsDuProjet) {
+            switch (rappel.echeance().type()) {
+                case Echeance.PROJET -> finDeProjet = true;
+                case Echeance.LIVRABLE -> livrableIds.add(rappel.echeance().id());
+                case Echeance.TACHE -> tacheIds.add(rappel.echeance().id());
+                default -> { }
+            }
+        }
+        Map<String, Set<String>> destinataires = mongoCustomService.destinatairesEcheances(projetId, finDeProjet, livrableIds, tacheIds);
+
+        // Chaque étudiant reçoit une seule notification listant toutes ses échéances du projet
+        Map<String, List<String>> lignesParEtudiant = new LinkedHashMap<>();
+        for (Rappel rappel : rappelsDuProjet) {
+            Set<String> etudiants = destinataires.get(rappel.echeance().id());
+            if (etudiants == null || etudiants.isEmpty()) {
+                continue;
+            }
+            String ligne = ligne(rappel);
+            for (String etudiant : etudiants) {
+                List<String> lignes = lignesParEtudiant.computeIfAbsent(etudiant, e -> new ArrayList<>());
+                if (!lignes.contains(ligne)) {
+                    lignes.add(ligne);
+                }
+            }
+        }
+        Map<List<String>, Set<String>> etudiantsParContenu = new LinkedHashMap<>();
+        lignesParEtudiant.forEach((etudiant, lignes) ->
+                etudiantsParContenu.computeIfAbsent(lignes, l -> new LinkedHashSet<>()).add(etudiant));
+
+        etudiantsParContenu.forEach((lignes, etudiants) -> eventPublisher.publishEvent(new EvenementNotification(
+                EvenementNotification.ECHEANCE_PROJET,
+                lignes.size() == 1 ? "Rappel d'échéance" : "Échéances à venir",
+                String.join("\n", lignes),
+                etudiants,
+                Map.of("projetId", Objects.toString(projetId, "")))));
+    }
+
+    private static String ligne(Rappel rappel) {
+        Echeance echeance = rappel.echeance();
+        String quoi = switch (echeance.type()) {
+            case Echeance.PROJET -> "Fin du projet";
+            case Echeance.LIVRABLE -> "Livrable";
+            default -> "Tâche";
+        };
+        return quoi + " \"" + echeance.libelle() + "\" dans " + delai(rappel.avance())
+                + " (le " + echeance.date().format(FORMAT_DATE) + ")";
+    }
+
+    private static String delai(Duration avance) {
+        if (avance.toHours() >= 48 && avance.toHours() % 24 == 0) {
+            return avance.toDays() + " jours";
+        }
+        return avance.toHours() >= 1 ? avance.toHours() + " h" : avance.toMinutes() + " min";
+    }
+
+    private static String cle(String type, String id, Duration avance) {
+        return type + ":" + id + ":" + avance.toMinutes();
+    }
+
+    record Rappel(Echeance echeance, Duration avance) {
+    }
+}
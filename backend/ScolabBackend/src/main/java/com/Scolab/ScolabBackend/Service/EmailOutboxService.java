@@ -0,0 +1,200 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.EmailOutbox;
+import com.Scolab.ScolabBackend.Entity.StatutEmail;
+import com.Scolab.ScolabBackend.Repository.EmailOutboxRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Properties;
+
+// File d'envoi persistante : EmailService y dépose les emails rendus, un pool borné les envoie avec reprise
+@Service
+@RequiredArgsConstructor
+public class EmailOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutboxService.class);
+    private static final List<String> DELAIS_SMTP =
+            List.of("mail.smtp.connectiontimeout", "mail.smtp.timeout", "mail.smtp.writetimeout");
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final MongoTemplate mongoTemplate;
+    private final JavaMailSender mailSender;
+    private final ThreadPoolTaskExecutor emailExecutor;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.email.outbox.max-tentatives:6}")
+    private int maxTentatives;
+
+    @Value("${app.email.outbox.backoff-initial-ms:30000}")
+    private long backoffInitialMs;
+
+    @Value("${app.email.outbox.backoff-max-ms:3600000}")
+    private long backoffMaxMs;
+
+    @Value("${app.email.outbox.verrou-ms:120000}")
+    private long verrouMs;
+
+    /**
+     * Un envoi SMTP bloqué doit échouer bien avant l'expiration de son verrou : sinon le job est repris et l'email
+     * part deux fois, pendant que le worker reste bloqué (JavaMail n'a aucun délai par défaut). Les délais absents
+     * de spring.mail.properties sont fixés au quart du verrou.
+     */
+    @PostConstruct
+    void bornerDelaisSmtp() {
+        if (!(mailSender instanceof JavaMailSenderImpl impl)) {
+            return;
+        }
+        Properties proprietes = impl.getJavaMailProperties();
+        for (String cle : DELAIS_SMTP) {
+            String valeur = proprietes.getProperty(cle);
+            if (valeur == null) {
+                proprietes.setProperty(cle, String.valueOf(Math.max(verrouMs / 4, 1000)));
+            } else if (Long.parseLong(valeur.trim()) * 2 >= verrouMs) {
+                log.warn("{}={} ms trop proche du verrou de l'outbox ({} ms) : un envoi bloqué risque d'être doublé",
+                        cle, valeur, verrouMs);
+            }
+        }
+    }
+
+    // Jobs terminés avant l'index TTL sur date_fin : datés une fois pour être purgés eux aussi
+    @EventListener(ApplicationReadyEvent.class)
+    public void daterJobsTermines() {
+        try {
+            long dates = mongoTemplate.getCollection("email_outbox").updateMany(
+                    new Document("statut", new Document("$in", List.of(StatutEmail.ENVOYE.name(), StatutEmail.ECHEC.name())))
+                            .append("date_fin", new Document("$exists", false)),
+                    List.of(new Document("$set", new Document("date_fin", new Document("$ifNull", List.of(
+                            "$date_envoi", new Document("$ifNull", List.of("$date_creation", "$$NOW")))))))
+            ).getModifiedCount();
+            if (dates > 0) {
+                log.info("{} emails terminés datés pour la purge de l'outbox", dates);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Datation des emails terminés impossible : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Met un email en file. Retourne false si un email avec la même clé a déjà été mis en file.
+     */
+    public boolean enfiler(String cleIdempotence, String destinataire, String sujet, String contenuHtml) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        EmailOutbox job = new EmailOutbox();
+        job.setCleIdempotence(cleIdempotence);
+        job.setDestinataire(destinataire);
+        job.setSujet(sujet);
+        job.setContenuHtml(contenuHtml);
+        job.setStatut(StatutEmail.EN_ATTENTE);
+        job.setProchainEssai(maintenant);
+        job.setDateCreation(maintenant);
+        try {
+            emailOutboxRepository.insert(job);
+            return true;
+        } catch (DuplicateKeyException e) {
+            log.debug("Email déjà en file pour la clé {}", cleIdempotence);
+            return false;
+        }
+    }
+
+    // Réserve autant de jobs que le pool peut en absorber, sans jamais saturer sa file
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-ms:2000}")
+    public void traiterFile() {
+        int places = emailExecutor.getMaxPoolSize() - emailExecutor.getActiveCount() - emailExecutor.getQueueSize();
+        for (int i = 0; i < places; i++) {
+            EmailOutbox job = reserverProchain();
+            if (job == null) {
+                return;
+            }
+            emailExecutor.execute(() -> envoyer(job));
+        }
+    }
+
+    // findAndModify atomique : deux instances ne peuvent pas réserver le même job
+    EmailOutbox reserverProchain() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where("statut").is(StatutEmail.EN_ATTENTE).and("prochainEssai").lte(maintenant),
+                Criteria.where("statut").is(StatutEmail.EN_COURS).and("verrouilleJusqua").lt(maintenant)))
+                .with(Sort.by(Sort.Direction.ASC, "prochainEssai"));
+        Update update = new Update()
+                .set("statut", StatutEmail.EN_COURS)
+                .set("verrouilleJusqua", maintenant.plus(verrouMs, ChronoUnit.MILLIS))
+                .inc("tentatives", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), EmailOutbox.class);
+    }
+
+    void envoyer(EmailOutbox job) {
+        // Le résultat n'est écrit que si le job n'a pas été repris entre-temps (même verrou que la réservation)
+        Query duJob = Query.query(Criteria.where("_id").is(job.getId()).and("statut").is(StatutEmail.EN_COURS)
+                .and("verrouilleJusqua").is(job.getVerrouilleJusqua()));
+        try {
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+            helper.setFrom(fromEmail);
+            helper.setTo(job.getDestinataire());
+            helper.setSubject(job.getSujet());
+            helper.setText(job.getContenuHtml(), true);
+
+            mailSender.send(message);
+
+            mongoTemplate.updateFirst(duJob, new Update()
+                    .set("statut", StatutEmail.ENVOYE)
+                    .set("dateEnvoi", LocalDateTime.now())
+                    .set("dateFin", LocalDateTime.now())
+                    .unset("verrouilleJusqua")
+                    .unset("derniereErreur"), EmailOutbox.class);
+        } catch (Exception e) {
+            // Adresse ou contenu invalide : inutile de réessayer
+            boolean definitif = e instanceof MailParseException || e instanceof MailPreparationException
+                    || job.getTentatives() >= maxTentatives;
+            Update update = new Update()
+                    .set("statut", definitif ? StatutEmail.ECHEC : StatutEmail.EN_ATTENTE)
+                    .set("derniereErreur", String.valueOf(e.getMessage()))
+                    .unset("verrouilleJusqua");
+            if (definitif) {
+                update.set("dateFin", LocalDateTime.now());
+            } else {
+                long delai = delaiAvantNouvelEssai(job.getTentatives(), backoffInitialMs, backoffMaxMs);
+                update.set("prochainEssai", LocalDateTime.now().plus(delai, ChronoUnit.MILLIS));
+            }
+            mongoTemplate.updateFirst(duJob, update, EmailOutbox.class);
+            log.warn("Échec d'envoi de l'email {} à {} (tentative {}{}) : {}", job.getId(), job.getDestinataire(),
+                    job.getTentatives(), definitif ? ", abandon" : "", e.getMessage());
+        }
+    }
+
+    // Backoff exponentiel : initial, 2x, 4x... plafonné
+    static long delaiAvantNouvelEssai(int tentatives, long initialMs, long maxMs) {
+        int exposant = Math.min(Math.max(tentatives - 1, 0), 30);
+        long delai = initialMs * (1L << exposant);
+        return delai <= 0 || delai > maxMs ? maxMs : delai;
+    }
+}
@@ -2,23 +2,33 @@ package com.Scolab.ScolabBackend.Service;
 
 import com.Scolab.ScolabBackend.Entity.Livrable;
 import com.Scolab.ScolabBackend.Entity.Projet;
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import java.util.List;
 import java.util.Locale;
 
 @Service
 public class EmailService {
 
+    private static final List<String> TEMPLATES = List.of(
+            "email-verification", "password-reset", "password-changed", "project-created",
+            "project-deadline", "custom-notification", "livrable-evaluated", "livrable-submitted");
+
+    // Envois groupés : le template est rendu une fois avec ces marqueurs, remplacés ensuite par destinataire
+    private static final String MARQUEUR_NOM = "__SCOLAB_NOM__";
+    private static final String MARQUEUR_PRENOM = "__SCOLAB_PRENOM__";
+
+    // Les emails sont rendus ici puis mis en file : l'envoi SMTP se fait hors de la requête HTTP
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutboxService emailOutboxService;
 
     @Autowired
     private TemplateEngine templateEngine;
@@ -29,216 +39,172 @@ public class EmailService {
     @Value("${app.email.verification-url:${app.frontend.base-url}/verify-email}")
     private String verificationUrl;
 
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    // Parse tous les templates au démarrage pour que le premier envoi ne paie pas la lecture du classpath
+    @EventListener(ApplicationReadyEvent.class)
+    public void prechaufferTemplates() {
+        for (String template : TEMPLATES) {
+            try {
+                templateEngine.process(template, new Context(Locale.FRENCH));
+            } catch (RuntimeException e) {
+                // Variables absentes du contexte vide : le template est déjà parsé et en cache
+            }
+        }
+    }
 
     public void sendVerificationEmail(String toEmail, String token, String nom, String prenom) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Vérification de votre email - EduProject");
-
-            // Préparer le contexte pour le template Thymeleaf
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("verificationUrl", verificationUrl + "?token=" + token);
-            context.setVariable("token", token);
-
-            // Charger le template HTML
-            String htmlContent = templateEngine.process("email-verification", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de vérification", e);
-        }
+        // Préparer le contexte pour le template Thymeleaf
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("verificationUrl", verificationUrl + "?token=" + token);
+        context.setVariable("token", token);
+
+        // Charger le template HTML
+        String htmlContent = templateEngine.process("email-verification", context);
+        emailOutboxService.enfiler("verification:" + token + ":" + toEmail, toEmail, "Vérification de votre email - EduProject", htmlContent);
     }
 
     public void sendPasswordResetEmail(String to, String token, String nom, String prenom) {
-        try {
-            String resetLink = frontendBaseUrl + "/reset-password?token=" + token;
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(to);
-            helper.setSubject("Réinitialisation de votre mot de passe - EduProject");
-
-            // Utiliser Thymeleaf pour le template de réinitialisation
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("resetLink", resetLink);
-            context.setVariable("token", token);
+        String resetLink = frontendBaseUrl + "/reset-password?token=" + token;
 
-            String htmlContent = templateEngine.process("password-reset", context);
-            helper.setText(htmlContent, true);
+        // Utiliser Thymeleaf pour le template de réinitialisation
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("resetLink", resetLink);
+        context.setVariable("token", token);
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de réinitialisation", e);
-        }
+        String htmlContent = templateEngine.process("password-reset", context);
+        emailOutboxService.enfiler("reinitialisation:" + token + ":" + to, to, "Réinitialisation de votre mot de passe - EduProject", htmlContent);
     }
 
     public void sendPasswordChangedConfirmation(String to, String nom, String prenom) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(to);
-            helper.setSubject("Confirmation de changement de mot de passe - EduProject");
-
-            // Utiliser Thymeleaf pour le template de confirmation
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-
-            String htmlContent = templateEngine.process("password-changed", context);
-            helper.setText(htmlContent, true);
+        // Utiliser Thymeleaf pour le template de confirmation
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de confirmation", e);
-        }
+        String htmlContent = templateEngine.process("password-changed", context);
+        emailOutboxService.enfiler("mot-de-passe-change:" + to + ":" + System.currentTimeMillis(), to, "Confirmation de changement de mot de passe - EduProject", htmlContent);
     }
 
     public void sendProjectCreatedEmail(String toEmail, String nom, String prenom, Projet projet) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Nouveau projet créé - " + projet.getNom());
-
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("projet", projet);
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("projet", projet);
 
-            String htmlContent = templateEngine.process("project-created", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de création de projet", e);
-        }
+        String htmlContent = templateEngine.process("project-created", context);
+        emailOutboxService.enfiler("projet-cree:" + projet.getId() + ":" + toEmail, toEmail, "Nouveau projet créé - " + projet.getNom(), htmlContent);
     }
 
-    public void sendProjectDeadlineEmail(String toEmail, String nom, String prenom, Projet projet) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    public void sendProjectDeadlineEmail(String evenementId, String toEmail, String nom, String prenom, Projet projet) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("projet", projet);
 
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Rappel d'échéance de projet - " + projet.getNom());
-
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("projet", projet);
+        String htmlContent = templateEngine.process("project-deadline", context);
+        emailOutboxService.enfiler("projet-echeance:" + evenementId + ":" + toEmail, toEmail, "Rappel d'échéance de projet - " + projet.getNom(), htmlContent);
+    }
 
-            String htmlContent = templateEngine.process("project-deadline", context);
-            helper.setText(htmlContent, true);
+    public void sendCustomNotificationEmail(String evenementId, String toEmail, String nom, String prenom, String titre, String messageContent) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("titre", titre);
+        context.setVariable("message", messageContent);
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de rappel de projet", e);
-        }
+        String htmlContent = templateEngine.process("custom-notification", context);
+        emailOutboxService.enfiler("notification:" + evenementId + ":" + toEmail, toEmail, titre, htmlContent);
     }
 
-    public void sendCustomNotificationEmail(String toEmail, String nom, String prenom, String titre, String messageContent) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    public void sendLivrableEvaluatedEmail(String toEmail, String nom, String prenom, Livrable livrable) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("nom", nom);
+        context.setVariable("prenom", prenom);
+        context.setVariable("livrable", livrable);
+        // URL vers la page de détail du livrable sur le front
+        context.setVariable("livrableUrl", frontendBaseUrl + "/livrables/" + livrable.getId());
+
+        String htmlContent = templateEngine.process("livrable-evaluated", context);
+        emailOutboxService.enfiler("livrable-evalue:" + livrable.getId() + ":" + livrable.getEvaluation().getId() + ":" + toEmail, toEmail, "Votre livrable a été évalué - " + livrable.getNom(), htmlContent);
+    }
 
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject(titre);
+    public void sendLivrableSubmittedEmail(String toEmail, String enseignantNom, String enseignantPrenom, String groupeNom, String projetNom, String livrableNom, String dateSoumission) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("enseignantNom", enseignantNom);
+        context.setVariable("enseignantPrenom", enseignantPrenom);
+        context.setVariable("groupeNom", groupeNom);
+        context.setVariable("projetNom", projetNom);
+        context.setVariable("livrableNom", livrableNom);
+        context.setVariable("dateSoumission", dateSoumission);
+
+        String htmlContent = templateEngine.process("livrable-submitted", context);
+        emailOutboxService.enfiler("livrable-soumis:" + livrableNom + ":" + groupeNom + ":" + toEmail + ":" + dateSoumission, toEmail, "Nouveau dépôt de livrable - " + livrableNom, htmlContent);
+    }
 
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("titre", titre);
-            context.setVariable("message", messageContent);
+    // ==================== ENVOIS GROUPÉS ====================
 
-            String htmlContent = templateEngine.process("custom-notification", context);
-            helper.setText(htmlContent, true);
+    public void sendProjectCreatedEmails(Iterable<? extends Utilisateur> destinataires, Projet projet) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("projet", projet);
+        String gabarit = rendreGabarit("project-created", context);
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de notification personnalisée", e);
+        for (Utilisateur u : destinataires) {
+            try {
+                emailOutboxService.enfiler("projet-cree:" + projet.getId() + ":" + u.getEmail(), u.getEmail(), "Nouveau projet créé - " + projet.getNom(), personnaliser(gabarit, u));
+            } catch (RuntimeException ex) {
+                // On log seulement pour ne pas bloquer toute la boucle
+                System.err.println("Erreur envoi email projet créé à " + u.getEmail() + ": " + ex.getMessage());
+            }
         }
     }
 
-    public void sendLivrableEvaluatedEmail(String toEmail, String nom, String prenom, Livrable livrable) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Votre livrable a été évalué - " + livrable.getNom());
-
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("nom", nom);
-            context.setVariable("prenom", prenom);
-            context.setVariable("livrable", livrable);
-            // URL vers la page de détail du livrable sur le front
-            context.setVariable("livrableUrl", frontendBaseUrl + "/livrables/" + livrable.getId());
-
-            String htmlContent = templateEngine.process("livrable-evaluated", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de livrable évalué", e);
+    public void sendProjectDeadlineEmails(String evenementId, Iterable<? extends Utilisateur> destinataires, Projet projet) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("projet", projet);
+        String gabarit = rendreGabarit("project-deadline", context);
+
+        for (Utilisateur u : destinataires) {
+            try {
+                emailOutboxService.enfiler("projet-echeance:" + evenementId + ":" + u.getEmail(), u.getEmail(), "Rappel d'échéance de projet - " + projet.getNom(), personnaliser(gabarit, u));
+            } catch (RuntimeException ex) {
+                System.err.println("Erreur envoi email échéance projet à " + u.getEmail() + ": " + ex.getMessage());
+            }
         }
     }
 
-    public void sendLivrableSubmittedEmail(String toEmail, String enseignantNom, String enseignantPrenom, String groupeNom, String projetNom, String livrableNom, String dateSoumission) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("Nouveau dépôt de livrable - " + livrableNom);
-
-            Context context = new Context(Locale.FRENCH);
-            context.setVariable("enseignantNom", enseignantNom);
-            context.setVariable("enseignantPrenom", enseignantPrenom);
-            context.setVariable("groupeNom", groupeNom);
-            context.setVariable("projetNom", projetNom);
-            context.setVariable("livrableNom", livrableNom);
-            context.setVariable("dateSoumission", dateSoumission);
-
-            String htmlContent = templateEngine.process("livrable-submitted", context);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            throw new RuntimeException("Erreur lors de l'envoi de l'email de dépôt de livrable à l'enseignant", e);
+    public void sendCustomNotificationEmails(String evenementId, Iterable<? extends Utilisateur> destinataires, String titre, String messageContent) {
+        Context context = new Context(Locale.FRENCH);
+        context.setVariable("titre", titre);
+        context.setVariable("message", messageContent);
+        String gabarit = rendreGabarit("custom-notification", context);
+
+        for (Utilisateur u : destinataires) {
+            try {
+                emailOutboxService.enfiler("notification:" + evenementId + ":" + u.getEmail(), u.getEmail(), titre, personnaliser(gabarit, u));
+            } catch (RuntimeException ex) {
+                System.err.println("Erreur envoi email custom à " + u.getEmail() + ": " + ex.getMessage());
+            }
         }
     }
 
-    // Méthode utilitaire pour envoyer des emails simples (si nécessaire)
-    private void sendEmail(String to, String subject, String content) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    private String rendreGabarit(String template, Context context) {
+        context.setVariable("nom", MARQUEUR_NOM);
+        context.setVariable("prenom", MARQUEUR_PRENOM);
+        return templateEngine.process(template, context);
+    }
 
-        helper.setFrom(fromEmail);
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(content, true);
+    // Même échappement que th:text pour les parties propres à chaque destinataire
+    private static String personnaliser(String gabarit, Utilisateur u) {
+        return gabarit
+                .replace(MARQUEUR_NOM, HtmlUtils.htmlEscape(u.getNom() != null ? u.getNom() : "", "UTF-8"))
+                .replace(MARQUEUR_PRENOM, HtmlUtils.htmlEscape(u.getPrenom() != null ? u.getPrenom() : "", "UTF-8"));
+    }
 
-        mailSender.send(message);
+    // Méthode utilitaire pour envoyer des emails simples (si nécessaire)
+    private void sendEmail(String cleIdempotence, String to, String subject, String content) {
+        emailOutboxService.enfiler(cleIdempotence, to, subject, content);
     }
 }
\ No newline at end of file
@@ -5,10 +5,12 @@ import com.Scolab.ScolabBackend.Entity.Tache;
 import com.Scolab.ScolabBackend.Entity.Notification;
 import com.Scolab.ScolabBackend.Entity.Priorite;
 import com.Scolab.ScolabBackend.Entity.StatutTache;
+import com.Scolab.ScolabBackend.Repository.GroupeRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.TacheRepository;
 import com.Scolab.ScolabBackend.Repository.LivrableRepository;
+import org.bson.types.ObjectId;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,25 +29,22 @@ public class EtudiantService {
     private TacheRepository tacheRepository;
     @Autowired
     private LivrableRepository livrableRepository;
+    @Autowired
+    private GroupeRepository groupeRepository;
+    @Autowired
+    private NotificationService notificationService;
 
     public List<Projet> getProjets(String email) {
         // Récupérer l'étudiant par email
         var etudiantOpt = utilisateurRepository.findByEmail(email);
         if (etudiantOpt.isEmpty()) return List.of();
         var etudiant = etudiantOpt.get();
-        // Récupérer les projets via les groupes auxquels l'étudiant appartient
-        List<Projet> result = new ArrayList<>();
-        for (Projet projet : projetRepository.findAll()) {
-            if (projet.getGroupes() != null) {
-                for (var groupe : projet.getGroupes()) {
-                    if (groupe.getEtudiants() != null && groupe.getEtudiants().stream().anyMatch(e -> email.equals(e.getEmail()))) {
-                        result.add(projet);
-                        break;
-                    }
-                }
-            }
-        }
-        return result;
+        // Groupes de l'étudiant (index etudiants.$id), puis projets de ces groupes (index groupes.$id)
+        List<ObjectId> groupeIds = groupeRepository.findIdsByEtudiant(new ObjectId(etudiant.getId())).stream()
+                .map(groupe -> new ObjectId(groupe.getId()))
+                .toList();
+        if (groupeIds.isEmpty()) return List.of();
+        return projetRepository.findByGroupeRefs(groupeIds);
     }
 
     public Object getProjetsCalendrier(String email) {
@@ -106,10 +105,7 @@ public class EtudiantService {
     }
 
     public List<Notification> getNotifications(String email) {
-        // À compléter si un NotificationRepository existe. Sinon, mock.
-        List<Notification> notifications = new ArrayList<>();
-        notifications.add(new Notification("1", "Rappel échéance", "Votre projet est bientôt dû", "2026-01-09", false, email));
-        notifications.add(new Notification("2", "Tâche terminée", "Bravo pour la tâche rendue", "2026-01-12", true, email));
-        return notifications;
+        // Les 50 plus récentes depuis la collection notifications (pagination complète : /api/notifications)
+        return notificationService.getNotifications(email, null, 50, false);
     }
 }
@@ -0,0 +1,29 @@
+package com.Scolab.ScolabBackend.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Événement publié sur le bus Spring (ApplicationEventPublisher) par les services métier
+ * et diffusé aux utilisateurs concernés (ids dans {@code destinataires}) par le flux SSE.
+ */
+public record EvenementNotification(
+        String type,
+        String titre,
+        String message,
+        Set<String> destinataires,
+        Map<String, Object> donnees,
+        LocalDateTime date) {
+
+    public static final String LIVRABLE_EVALUE = "LIVRABLE_EVALUE";
+    public static final String SOUMISSION_REJETEE = "SOUMISSION_REJETEE";
+    public static final String PROJET_CREE = "PROJET_CREE";
+    public static final String TACHE_ASSIGNEE = "TACHE_ASSIGNEE";
+    public static final String ECHEANCE_PROJET = "ECHEANCE_PROJET";
+    public static final String PERSONNALISEE = "PERSONNALISEE";
+
+    public EvenementNotification(String type, String titre, String message, Set<String> destinataires, Map<String, Object> donnees) {
+        this(type, titre, message, destinataires, donnees, LocalDateTime.now());
+    }
+}
@@ -1,58 +1,123 @@
 package com.Scolab.ScolabBackend.Service;
 
 import com.Scolab.ScolabBackend.Entity.Fichier;
+import com.Scolab.ScolabBackend.Entity.Livrable;
+import com.Scolab.ScolabBackend.Repository.LivrableRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 public class FichierStorageService {
 
-    @Value("${app.upload.dir:uploads}")
-    private String uploadDir;
+    // Nom produit par le stockage adressé par contenu : l'empreinte est lisible directement
+    private static final Pattern NOM_CONTENU = Pattern.compile("([0-9a-f]{64})(\\.[a-z0-9]+)?");
+
+    private final LivrableRepository livrableRepository;
+    private final StockageFichiers stockage;
+
+    // Limite des uploads en flux (le multipart reste limité par spring.servlet.multipart.*)
+    @Value("${app.upload.flux.max-bytes:4294967296}")
+    private long tailleMaxFlux;
 
     public Fichier stockerFichier(MultipartFile file) throws IOException {
-        // Créer le répertoire s'il n'existe pas
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+        StockageFichiers.BlobStocke blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = stockage.ecrire(in, file.getOriginalFilename());
         }
+        return creerFichier(file.getOriginalFilename(), blob, determinerTypeFichier(file.getOriginalFilename()));
+    }
 
-        // Générer un nom de fichier unique
-        String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-        Path filePath = uploadPath.resolve(fileName);
+    /**
+     * Stocke un flux brut (corps de requête) sans jamais le garder en mémoire : l'empreinte est calculée
+     * par le stockage, la taille et la signature du type sont relevées au passage des octets.
+     */
+    public Fichier stockerFlux(InputStream contenu, String nomOriginal) throws IOException {
+        FluxMesure flux = new FluxMesure(contenu, tailleMaxFlux);
+        StockageFichiers.BlobStocke blob = stockage.ecrire(flux, nomOriginal);
 
-        // Sauvegarder le fichier
-        Files.copy(file.getInputStream(), filePath);
+        String type = nomOriginal != null && nomOriginal.lastIndexOf('.') > 0
+                ? determinerTypeFichier(nomOriginal)
+                : typeDepuisSignature(flux.entete());
+        return creerFichier(nomOriginal, blob, type);
+    }
 
-        // Créer l'objet Fichier
+    /**
+     * Rattache un fichier reçu par morceaux : il est déplacé dans le stockage, pas recopié.
+     */
+    public Fichier importerFichier(Path source, String nomOriginal) throws IOException {
+        byte[] entete = new byte[16];
+        int lus;
+        try (InputStream in = Files.newInputStream(source)) {
+            lus = in.readNBytes(entete, 0, entete.length);
+        }
+        StockageFichiers.BlobStocke blob = stockage.importer(source, nomOriginal);
+
+        String type = nomOriginal != null && nomOriginal.lastIndexOf('.') > 0
+                ? determinerTypeFichier(nomOriginal)
+                : typeDepuisSignature(Arrays.copyOf(entete, lus));
+        return creerFichier(nomOriginal, blob, type);
+    }
+
+    public long getTailleMaxFlux() {
+        return tailleMaxFlux;
+    }
+
+    private Fichier creerFichier(String nomOriginal, StockageFichiers.BlobStocke blob, String type) {
         Fichier fichier = new Fichier();
-        fichier.setNom(file.getOriginalFilename());
-        fichier.setUrl("/uploads/" + fileName);
-        fichier.setTaille(file.getSize());
-        fichier.setType(determinerTypeFichier(file.getOriginalFilename()));
+        fichier.setNom(nomOriginal);
+        fichier.setUrl("/uploads/" + blob.nom());
+        fichier.setTaille(blob.taille());
+        fichier.setType(type);
         fichier.setDateUpload(LocalDateTime.now());
-
+        fichier.setHash(blob.hash());
         return fichier;
     }
 
+    // Libère la référence du fichier : le contenu n'est effacé que s'il n'est plus partagé
     public boolean supprimerFichier(String url) {
-        try {
-            String fileName = url.substring(url.lastIndexOf("/") + 1);
-            Path filePath = Paths.get(uploadDir).resolve(fileName);
-            return Files.deleteIfExists(filePath);
-        } catch (IOException e) {
+        if (url == null || !url.startsWith("/uploads/")) {
             return false;
         }
+        return stockage.liberer(url.substring(url.lastIndexOf("/") + 1));
+    }
+
+    /**
+     * Chemin sur disque d'un fichier stocké, ou vide si le nom sort du répertoire d'upload.
+     */
+    public Optional<Path> resoudre(String fileName) {
+        return stockage.resoudre(fileName);
+    }
+
+    /**
+     * Empreinte SHA-256 du fichier : tirée du nom pour le stockage par contenu,
+     * sinon celle enregistrée à l'upload si elle est connue.
+     */
+    public Optional<String> empreinteStockee(String fileName) {
+        var nomContenu = NOM_CONTENU.matcher(fileName);
+        if (nomContenu.matches()) {
+            return Optional.of(nomContenu.group(1));
+        }
+        List<Livrable> livrables = livrableRepository.findFichiersByUrl("/uploads/" + fileName, PageRequest.of(0, 1));
+        return livrables.stream()
+                .map(Livrable::getFichier)
+                .filter(f -> f != null && f.getHash() != null)
+                .map(Fichier::getHash)
+                .findFirst();
     }
 
     private String determinerTypeFichier(String fileName) {
@@ -70,4 +135,70 @@ public class FichierStorageService {
             default: return extension;
         }
     }
-}
\ No newline at end of file
+
+    // Nombres magiques des formats attendus pour un livrable, quand le nom n'a pas d'extension
+    private static String typeDepuisSignature(byte[] entete) {
+        if (commencePar(entete, 0x25, 0x50, 0x44, 0x46)) return "pdf";
+        if (commencePar(entete, 0x50, 0x4B, 0x03, 0x04)) return "archive";
+        if (commencePar(entete, 0x52, 0x61, 0x72, 0x21)) return "archive";
+        if (commencePar(entete, 0x37, 0x7A, 0xBC, 0xAF)) return "archive";
+        if (commencePar(entete, 0x89, 0x50, 0x4E, 0x47)) return "image";
+        if (commencePar(entete, 0xFF, 0xD8, 0xFF)) return "image";
+        if (commencePar(entete, 0x47, 0x49, 0x46, 0x38)) return "image";
+        return "unknown";
+    }
+
+    private static boolean commencePar(byte[] entete, int... signature) {
+        if (entete.length < signature.length) return false;
+        for (int i = 0; i < signature.length; i++) {
+            if ((entete[i] & 0xFF) != signature[i]) return false;
+        }
+        return true;
+    }
+
+    // Compte les octets lus, garde les premiers pour la signature et coupe au-delà de la limite
+    private static class FluxMesure extends FilterInputStream {
+        private static final int TAILLE_ENTETE = 16;
+
+        private final long limite;
+        private final byte[] entete = new byte[TAILLE_ENTETE];
+        private long lus;
+
+        FluxMesure(InputStream in, long limite) {
+            super(in);
+            this.limite = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                compter(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                compter(b, off, n);
+            }
+            return n;
+        }
+
+        private void compter(byte[] b, int off, int n) {
+            if (lus < TAILLE_ENTETE) {
+                System.arraycopy(b, off, entete, (int) lus, (int) Math.min(n, TAILLE_ENTETE - lus));
+            }
+            lus += n;
+            if (lus > limite) {
+                throw new RuntimeException("Fichier trop volumineux (maximum " + limite + " octets)");
+            }
+        }
+
+        byte[] entete() {
+            return Arrays.copyOf(entete, (int) Math.min(lus, TAILLE_ENTETE));
+        }
+    }
+}
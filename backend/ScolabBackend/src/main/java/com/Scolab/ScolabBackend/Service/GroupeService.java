@@ -138,7 +138,8 @@ public class GroupeService {
             Utilisateur etudiant = utilisateurRepository.findById(etudiantId)
                     .orElseThrow(() -> new RuntimeException("Étudiant non trouvé avec l'id: " + etudiantId));
 
-            groupe.retirerEtudiant((Etudiant) etudiant);
+            // Retrait par id : la liste etudiants alimente l'index etudiants.$id utilisé pour "mes projets"
+            groupe.retirerEtudiantParId(etudiantId);
             Groupe groupeMaj = groupeRepository.save(groupe);
             System.out.println("➖ Étudiant " + etudiant.getNom() + " retiré du groupe " + groupe.getNom());
             return groupeMaj;
@@ -0,0 +1,105 @@
+package com.Scolab.ScolabBackend.Service;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache LRU borné des claims déjà vérifiés, indexé par le hash SHA-256 du token
+@Component
+public class JWTClaimsCache {
+
+    private final int capacite;
+    private final Map<String, Entree> entrees;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public JWTClaimsCache(@Value("${app.jwt.cache.max-entries:10000}") int capacite) {
+        this.capacite = capacite;
+        this.entrees = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entree> eldest) {
+                if (size() > JWTClaimsCache.this.capacite) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Claims en cache pour ce token, ou null si absent ou expiré.
+     */
+    public Claims get(String token) {
+        String cle = hash(token);
+        long maintenant = System.currentTimeMillis();
+        synchronized (entrees) {
+            Entree entree = entrees.get(cle);
+            if (entree != null && entree.expireA() > maintenant) {
+                hits.incrementAndGet();
+                return entree.claims();
+            }
+            if (entree != null) {
+                entrees.remove(cle);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String token, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (capacite <= 0 || expiration == null || expiration.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        String cle = hash(token);
+        synchronized (entrees) {
+            entrees.put(cle, new Entree(claims, expiration.getTime()));
+        }
+    }
+
+    public void vider() {
+        synchronized (entrees) {
+            entrees.clear();
+        }
+    }
+
+    public Map<String, Object> statistiques() {
+        int taille;
+        synchronized (entrees) {
+            taille = entrees.size();
+        }
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("taille", taille);
+        stats.put("capacite", capacite);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.get());
+        stats.put("tauxHit", h + m == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private record Entree(Claims claims, long expireA) {}
+}
@@ -18,11 +18,14 @@ public class JWTUtils {
 
     private final SecretKey key;
 
+    private final JWTClaimsCache claimsCache;
+
     @Value("${jwt.expiration:86400000}")
     private long expirationTime;
 
-    public JWTUtils(@Value("${jwt.secret}") String secretString) {
+    public JWTUtils(@Value("${jwt.secret}") String secretString, JWTClaimsCache claimsCache) {
         this.key = Keys.hmacShaKeyFor(secretString.getBytes());
+        this.claimsCache = claimsCache;
     }
 
     public String generateToken(UserDetails userDetails) {
@@ -49,10 +52,22 @@ public class JWTUtils {
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = getVerifiedClaims(token);
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Claims du token, signature vérifiée : un seul parsing par token, puis lecture du cache jusqu'à expiration.
+     */
+    public Claims getVerifiedClaims(String token) {
+        Claims claims = claimsCache.get(token);
+        if (claims == null) {
+            claims = extractAllClaims(token);
+            claimsCache.put(token, claims);
+        }
+        return claims;
+    }
+
     private Claims extractAllClaims(String token) {
         return Jwts.parser()
                 .verifyWith(key)
@@ -70,8 +85,13 @@ public class JWTUtils {
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return isTokenValid(getVerifiedClaims(token), userDetails);
+    }
+
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return username != null && username.equals(userDetails.getUsername())
+                && !claims.getExpiration().before(new Date());
     }
 
     public boolean isTokenExpired(String token) {
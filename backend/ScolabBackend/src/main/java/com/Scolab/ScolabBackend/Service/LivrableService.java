@@ -1,25 +1,49 @@
 package com.Scolab.ScolabBackend.Service;
 
+import com.Scolab.ScolabBackend.Dto.SoumissionExport;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.LivrableRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.GroupeRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 @RequiredArgsConstructor
 public class LivrableService {
 
+    private static final Logger log = LoggerFactory.getLogger(LivrableService.class);
+
     @Autowired
     private ConverUser converUser;
 
@@ -29,8 +53,64 @@ public class LivrableService {
     private final EmailService emailService;
     private final ProjetRepository projetRepository;
     private final GroupeRepository groupeRepository;
+    private final MongoCustomService mongoCustomService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EcheanceService echeanceService;
+
+    // Formats déjà compressés : les recompresser coûte du CPU sans rien gagner
+    private static final Set<String> EXTENSIONS_COMPRESSEES = Set.of(
+            "zip", "rar", "7z", "gz", "tgz", "bz2", "xz",
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "mp4", "mov", "avi", "mkv",
+            "pdf", "docx", "xlsx", "pptx", "odt", "ods", "odp", "jar");
+    private static final int TAILLE_TAMPON_EXPORT = 64 * 1024;
 
     public Livrable soumettreLivrable(String livrableId, MultipartFile fichier, String groupeId) throws IOException {
+        Livrable livrable = chargerLivrableASoumettre(livrableId, groupeId);
+
+        // Stocker le fichier
+        Fichier fichierStocke = fichierStorageService.stockerFichier(fichier);
+        System.out.println("💾 Fichier stocké: " + fichierStocke.getNom());
+
+        return enregistrerSoumission(livrable, fichierStocke);
+    }
+
+    /**
+     * Soumission en flux : le corps de la requête est écrit directement dans le stockage,
+     * après les vérifications, sans passer par un MultipartFile bufferisé.
+     */
+    public Livrable soumettreLivrableFlux(String livrableId, InputStream contenu, String nomFichier,
+                                         long tailleAnnoncee, String groupeId) throws IOException {
+        if (tailleAnnoncee > fichierStorageService.getTailleMaxFlux()) {
+            throw new RuntimeException("Fichier trop volumineux (maximum " + fichierStorageService.getTailleMaxFlux() + " octets)");
+        }
+        Livrable livrable = chargerLivrableASoumettre(livrableId, groupeId);
+
+        Fichier fichierStocke = fichierStorageService.stockerFlux(contenu, nomFichier);
+        log.info("Fichier stocké (flux) : {} - {}", fichierStocke.getNom(), fichierStocke.getTailleFormatee());
+
+        return enregistrerSoumission(livrable, fichierStocke);
+    }
+
+    /**
+     * Dernière étape d'un upload par morceaux : le fichier complet est rattaché au livrable.
+     * Les vérifications sont refaites, l'état du livrable a pu changer pendant l'upload.
+     */
+    public Livrable soumettreLivrableAssemble(String livrableId, Path fichierComplet, String nomFichier,
+                                              String groupeId) throws IOException {
+        Livrable livrable = chargerLivrableASoumettre(livrableId, groupeId);
+
+        Fichier fichierStocke = fichierStorageService.importerFichier(fichierComplet, nomFichier);
+        log.info("Fichier stocké (morceaux) : {} - {}", fichierStocke.getNom(), fichierStocke.getTailleFormatee());
+
+        return enregistrerSoumission(livrable, fichierStocke);
+    }
+
+    // Lève une exception si ce groupe ne peut pas soumettre ce livrable maintenant
+    public void verifierSoumissionPossible(String livrableId, String groupeId) {
+        chargerLivrableASoumettre(livrableId, groupeId);
+    }
+
+    private Livrable chargerLivrableASoumettre(String livrableId, String groupeId) {
         Livrable livrable = livrableRepository.findById(livrableId)
                 .orElseThrow(() -> new RuntimeException("Livrable non trouvé avec ID: " + livrableId));
 
@@ -51,17 +131,22 @@ public class LivrableService {
         if (livrable.estEnRetard()) {
             throw new RuntimeException("La date d'échéance est dépassée. Date limite: " + livrable.getDateEcheance());
         }
+        return livrable;
+    }
 
-        // Stocker le fichier
-        Fichier fichierStocke = fichierStorageService.stockerFichier(fichier);
-        System.out.println("💾 Fichier stocké: " + fichierStocke.getNom());
-
+    private Livrable enregistrerSoumission(Livrable livrable, Fichier fichierStocke) {
         // Mettre à jour le livrable
+        Fichier ancienFichier = livrable.getFichier();
         livrable.soumettreFichier(fichierStocke);
 
         Livrable livrableSoumis = livrableRepository.save(livrable);
         System.out.println("✅ Livrable soumis avec succès: " + livrableSoumis.getNom());
 
+        // Une nouvelle soumission remplace la précédente : on libère l'ancien fichier
+        if (ancienFichier != null && ancienFichier.getUrl() != null) {
+            fichierStorageService.supprimerFichier(ancienFichier.getUrl());
+        }
+
         // Notification à l'enseignant
         if (livrable.getProjet() != null && livrable.getProjet().getEnseignant() != null) {
             Utilisateur enseignant = livrable.getProjet().getEnseignant();
@@ -156,6 +241,12 @@ public class LivrableService {
                 }
             });
         }
+        eventPublisher.publishEvent(new EvenementNotification(
+                EvenementNotification.LIVRABLE_EVALUE,
+                "Livrable évalué",
+                "Le livrable \"" + livrableEvalue.getNom() + "\" a été évalué : " + note + "/20",
+                idsEtudiantsDuGroupe(livrable.getGroupe()),
+                Map.of("livrableId", Objects.toString(livrableEvalue.getId(), ""), "note", note)));
 
         return livrableEvalue;
     }
@@ -187,13 +278,36 @@ public class LivrableService {
                     livrable.getProjet().getEnseignant().getId());
         }
 
+        Fichier fichierRejete = livrable.getFichier();
         livrable.rejeterSoumission();
 
         Livrable livrableRejete = livrableRepository.save(livrable);
         System.out.println("❌ Soumission rejetée pour le livrable: " + livrableRejete.getNom());
+
+        if (fichierRejete != null && fichierRejete.getUrl() != null) {
+            fichierStorageService.supprimerFichier(fichierRejete.getUrl());
+        }
+        eventPublisher.publishEvent(new EvenementNotification(
+                EvenementNotification.SOUMISSION_REJETEE,
+                "Soumission rejetée",
+                "La soumission du livrable \"" + livrableRejete.getNom() + "\" a été rejetée, vous pouvez la soumettre à nouveau",
+                idsEtudiantsDuGroupe(livrable.getGroupe()),
+                Map.of("livrableId", Objects.toString(livrableRejete.getId(), ""))));
         return livrableRejete;
     }
 
+    // Destinataires des notifications : les étudiants du groupe, déjà chargés avec le livrable
+    private static Set<String> idsEtudiantsDuGroupe(Groupe groupe) {
+        if (groupe == null || groupe.getEtudiants() == null) {
+            return Set.of();
+        }
+        return groupe.getEtudiants().stream()
+                .filter(Objects::nonNull)
+                .map(Etudiant::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
     public List<Livrable> getLivrablesByProjet(String projetId) {
         List<Livrable> livrables = livrableRepository.findByProjetId(projetId);
         System.out.println("📁 Livrables du projet " + projetId + ": " + livrables.size());
@@ -214,34 +328,136 @@ public class LivrableService {
 
     /**
      * Retourne la liste des livrables pour un enseignant à partir de son email.
-     * Recherche tous les projets de l'enseignant, puis tous les livrables de ces projets.
-     * Affiche aussi les IDs des projets dans la console.
+     * Deux requêtes indexées : les ids des projets actifs de l'enseignant, puis leurs livrables via $in.
      */
     public List<Livrable> getLivrablesByEnseignant(String email) {
+        List<ObjectId> projetIds = getProjetIdsActifsEnseignant(email);
+        if (projetIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Livrable> livrables = livrableRepository.findByProjetRefs(projetIds);
+        log.debug("Livrables de l'enseignant {} ({} projets) : {}", email, projetIds.size(), livrables.size());
+        return livrables;
+    }
+
+    /**
+     * Variante paginée par curseur : renvoie au plus {@code limite} livrables dont l'id suit {@code apres}.
+     * Sans curseur, la première page ; un curseur qui n'est pas un id de livrable est refusé.
+     */
+    public List<Livrable> getLivrablesByEnseignant(String email, String apres, int limite) {
+        if (apres != null && !ObjectId.isValid(apres)) {
+            throw new IllegalArgumentException("Curseur de pagination invalide: " + apres);
+        }
+        List<ObjectId> projetIds = getProjetIdsActifsEnseignant(email);
+        if (projetIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        ObjectId curseur = apres != null ? new ObjectId(apres) : new ObjectId(new Date(0));
+        return livrableRepository.findByProjetRefsApres(projetIds, curseur, PageRequest.of(0, limite));
+    }
+
+    private List<ObjectId> getProjetIdsActifsEnseignant(String email) {
         Utilisateur enseignant = utilisateurRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Enseignant non trouvé avec l'email: " + email));
-        String enseignantId = enseignant.getId();
-        // Récupérer tous les projets de l'enseignant
-        List<Projet> allProjets = projetRepository.findAll();
-
-        // On renvoie uniquement les projets non archivés de cet enseignant
-        List<Projet> projets = allProjets.stream()
-                .filter(projet -> projet.getEnseignant() != null
-                        && enseignantId.equals(projet.getEnseignant().getId())
-                        && (projet.getArchive() == null || !projet.getArchive()))
+        return projetRepository.findIdsActifsByEnseignant(new ObjectId(enseignant.getId())).stream()
+                .map(projet -> new ObjectId(projet.getId()))
                 .collect(Collectors.toList());
-        System.out.println("--- Liste des projets de l'enseignant " + email + " ---");
-        for (Projet projet : projets) {
-            System.out.println("Projet: " + projet.getNom() + " | ID: " + projet.getId());
+    }
+
+    /**
+     * Vérifie que l'appelant est l'enseignant du projet (ou un admin) et retourne les soumissions à exporter.
+     * Appelé avant d'ouvrir la réponse, pour que les erreurs remontent encore en 403/404.
+     */
+    public List<SoumissionExport> preparerExportZip(String projetId, String email, boolean admin) {
+        Projet projet = projetRepository.findById(projetId)
+                .orElseThrow(() -> new RuntimeException("Projet non trouvé avec ID: " + projetId));
+        if (!admin && (projet.getEnseignant() == null || !email.equals(projet.getEnseignant().getEmail()))) {
+            throw new SecurityException("Seul l'enseignant du projet peut exporter ses soumissions");
+        }
+        List<SoumissionExport> soumissions = mongoCustomService.soumissionsDuProjet(new ObjectId(projetId));
+        log.info("Export ZIP du projet {} : {} soumissions", projetId, soumissions.size());
+        return soumissions;
+    }
+
+    /**
+     * Écrit l'archive au fil de l'eau : un dossier par groupe, chaque fichier copié depuis le disque
+     * sans être chargé en mémoire. Les fichiers introuvables sont listés dans MANQUANTS.txt.
+     */
+    public void ecrireExportZip(List<SoumissionExport> soumissions, OutputStream sortie) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(sortie, TAILLE_TAMPON_EXPORT), StandardCharsets.UTF_8);
+        Set<String> entrees = new HashSet<>();
+        List<String> manquants = new ArrayList<>();
+
+        for (SoumissionExport soumission : soumissions) {
+            Path fichier = fichierStorageService.resoudre(nomStocke(soumission.fichierUrl()))
+                    .filter(Files::isRegularFile)
+                    .orElse(null);
+            String dossier = nettoyerNomEntree(soumission.groupeNom() != null ? soumission.groupeNom() : soumission.groupeId());
+            String nom = nettoyerNomEntree(soumission.livrableNom()) + " - " + nettoyerNomEntree(soumission.fichierNom());
+            if (fichier == null) {
+                manquants.add(dossier + "/" + nom);
+                continue;
+            }
+
+            ZipEntry entree = new ZipEntry(nomUnique(dossier + "/" + nom, entrees));
+            entree.setTime(Files.getLastModifiedTime(fichier).toMillis());
+            zip.setLevel(EXTENSIONS_COMPRESSEES.contains(extension(soumission.fichierNom()))
+                    ? Deflater.NO_COMPRESSION
+                    : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(entree);
+            Files.copy(fichier, zip);
+            zip.closeEntry();
+        }
+
+        if (!manquants.isEmpty()) {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(nomUnique("MANQUANTS.txt", entrees)));
+            zip.write(String.join("\n", manquants).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            log.warn("Export ZIP : {} fichiers introuvables sur le disque", manquants.size());
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    // L'url stockée est de la forme /uploads/<nom>
+    private static String nomStocke(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    static String nettoyerNomEntree(String nom) {
+        if (nom == null || nom.isBlank()) {
+            return "sans_nom";
+        }
+        String nettoye = nom.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        while (nettoye.startsWith(".")) {
+            nettoye = nettoye.substring(1);
         }
-        // Récupérer tous les livrables de ces projets
-        List<Livrable> allLivrables = new java.util.ArrayList<>();
-        for (Projet projet : projets) {
-            List<Livrable> livrablesProjet = livrableRepository.findByProjetId(projet.getId());
-            allLivrables.addAll(livrablesProjet);
+        return nettoye.isEmpty() ? "sans_nom" : nettoye;
+    }
+
+    private static String nomUnique(String chemin, Set<String> dejaPris) {
+        if (dejaPris.add(chemin)) {
+            return chemin;
+        }
+        int point = chemin.lastIndexOf('.');
+        boolean avecExtension = point > chemin.lastIndexOf('/');
+        String base = avecExtension ? chemin.substring(0, point) : chemin;
+        String ext = avecExtension ? chemin.substring(point) : "";
+        for (int i = 2; ; i++) {
+            String candidat = base + " (" + i + ")" + ext;
+            if (dejaPris.add(candidat)) {
+                return candidat;
+            }
+        }
+    }
+
+    private static String extension(String nom) {
+        if (nom == null) {
+            return "";
         }
-        System.out.println("👨‍🏫 Livrables de l'enseignant " + enseignantId + " (" + email + "): " + allLivrables.size());
-        return allLivrables;
+        int point = nom.lastIndexOf('.');
+        return point >= 0 ? nom.substring(point + 1).toLowerCase(Locale.ROOT) : "";
     }
 
     public Optional<Livrable> getLivrableById(String id) {
@@ -271,6 +487,7 @@ public class LivrableService {
         // Optionnel: définir une date d'échéance fictive pour le test
         livrable.setDateEcheance(java.time.LocalDateTime.now().plusDays(7));
         Livrable saved = livrableRepository.save(livrable);
+        echeanceService.planifierLivrable(saved);
         return saved.getId();
     }
 
@@ -1,17 +1,26 @@
 package com.Scolab.ScolabBackend.Service;
 
+import com.Scolab.ScolabBackend.Dto.ConversationResume;
 import com.Scolab.ScolabBackend.Entity.Conversation;
 import com.Scolab.ScolabBackend.Entity.Message;
 import com.Scolab.ScolabBackend.Entity.Groupe;
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
 import com.Scolab.ScolabBackend.Repository.ConversationRepository;
 import com.Scolab.ScolabBackend.Repository.MessageRepository;
 import com.Scolab.ScolabBackend.Repository.GroupeRepository;
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -19,6 +28,11 @@ public class MessagerieService {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final GroupeRepository groupeRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final MongoCustomService mongoCustomService;
+    private final SimpMessageSendingOperations messagingTemplate;
+
+    public static final String TOPIC_CONVERSATION = "/topic/conversations/";
 
     public Conversation creerConversation(String groupeId, String enseignantId) {
         Conversation existing = conversationRepository.findByGroupeIdAndEnseignantId(groupeId, enseignantId);
@@ -38,13 +52,13 @@ public class MessagerieService {
         return conversationRepository.findByEnseignantId(enseignantId);
     }
 
-    public List<Conversation> getConversationsByUser(String userId) {
-        // À compléter selon la logique métier (enseignant/étudiant)
-        // Ici, retourne toutes les conversations où l'utilisateur est enseignant ou membre d'un groupe
-        List<Conversation> enseignantConvs = conversationRepository.findByEnseignantId(userId);
-        List<Conversation> groupeConvs = conversationRepository.findByGroupeId(userId);
-        enseignantConvs.addAll(groupeConvs);
-        return enseignantConvs;
+    /**
+     * Conversations d'un utilisateur : enseignant de la conversation ou étudiant d'un de ses groupes.
+     * Les groupes de l'étudiant viennent de l'index etudiants_id (vide pour un enseignant), puis une seule
+     * requête $or/$in triée par dernière activité et bornée à {@code limite}.
+     */
+    public List<Conversation> getConversationsByUser(String userId, int limite) {
+        return conversationRepository.findByMembre(userId, groupeIdsDe(userId), PageRequest.of(0, limite));
     }
 
     public Message envoyerMessage(String conversationId, String expediteurId, String expediteurNom, String contenu) {
@@ -56,20 +70,130 @@ public class MessagerieService {
         msg.setDateEnvoi(new Date());
         msg.setLu(false);
         Message saved = messageRepository.save(msg);
-        // Mettre à jour la conversation
-        Optional<Conversation> convOpt = conversationRepository.findById(conversationId);
-        convOpt.ifPresent(conv -> {
-            conv.setDernierMessage(contenu);
-            conv.setDateDernierMessage(msg.getDateEnvoi());
-            conversationRepository.save(conv);
-        });
+        // Résumé et compteurs de la conversation : une seule mise à jour atomique, sans relire le document
+        mongoCustomService.enregistrerMessageDansConversation(conversationId, expediteurId, contenu, msg.getDateEnvoi());
+        // Diffusion immédiate aux abonnés de la conversation (plus besoin de recharger l'historique)
+        messagingTemplate.convertAndSend(TOPIC_CONVERSATION + conversationId, saved);
         return saved;
     }
 
+    /**
+     * Envoi depuis la session STOMP : l'expéditeur est l'utilisateur authentifié, pas un paramètre du client.
+     */
+    public Message envoyerMessageDepuis(String conversationId, String email, String contenu) {
+        if (contenu == null || contenu.trim().isEmpty()) {
+            throw new RuntimeException("Le contenu du message est vide");
+        }
+        Utilisateur expediteur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        if (!estParticipant(conversationId, expediteur)) {
+            throw new RuntimeException("Accès refusé à la conversation " + conversationId);
+        }
+        String nom = (expediteur.getPrenom() != null ? expediteur.getPrenom() + " " : "") + expediteur.getNom();
+        return envoyerMessage(conversationId, expediteur.getId(), nom, contenu);
+    }
+
+    /**
+     * Un participant est l'enseignant de la conversation ou un étudiant du groupe.
+     */
+    public boolean estParticipant(String conversationId, String email) {
+        return utilisateurRepository.findByEmail(email)
+                .map(utilisateur -> estParticipant(conversationId, utilisateur))
+                .orElse(false);
+    }
+
+    private boolean estParticipant(String conversationId, Utilisateur utilisateur) {
+        Optional<Conversation> conv = conversationRepository.findById(conversationId);
+        if (conv.isEmpty()) {
+            return false;
+        }
+        if (utilisateur.getId().equals(conv.get().getEnseignantId())) {
+            return true;
+        }
+        String groupeId = conv.get().getGroupeId();
+        if (groupeId == null || !ObjectId.isValid(utilisateur.getId())) {
+            return false;
+        }
+        try {
+            return mongoCustomService.idsEtudiantsDesGroupes(List.of(groupeId)).contains(new ObjectId(utilisateur.getId()));
+        } catch (RuntimeException e) {
+            // Groupe supprimé depuis la création de la conversation
+            return false;
+        }
+    }
+
     public List<Message> getMessagesByConversation(String conversationId) {
         return messageRepository.findByConversationIdOrderByDateEnvoiAsc(conversationId);
     }
 
+    /**
+     * Page de l'historique par curseur : les {@code limite} derniers messages, ou ceux qui précèdent
+     * le message {@code avant}. Toujours renvoyés du plus ancien au plus récent ; le premier de la liste
+     * sert de curseur pour la page suivante. Le coût ne dépend pas de la taille de la conversation.
+     */
+    public List<Message> getMessagesByConversation(String conversationId, String avant, int limite) {
+        PageRequest page = PageRequest.of(0, limite);
+        List<Message> messages;
+        if (avant == null || avant.isEmpty()) {
+            messages = messageRepository.findDerniers(conversationId, page);
+        } else {
+            // Curseur mal formé ou étranger à la conversation : erreur du client
+            Message curseur = (ObjectId.isValid(avant) ? messageRepository.findById(avant) : Optional.<Message>empty())
+                    .filter(m -> conversationId.equals(m.getConversationId()))
+                    .orElseThrow(() -> new IllegalArgumentException("Curseur de pagination invalide: " + avant));
+            messages = messageRepository.findAvant(conversationId, curseur.getDateEnvoi(), new ObjectId(curseur.getId()), page);
+        }
+        messages = new ArrayList<>(messages);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Boîte de réception de l'utilisateur : toutes ses conversations, de la plus récemment active
+     * à la plus ancienne, avec le nombre de non lus issu des compteurs (une requête, aucun message compté).
+     */
+    public List<ConversationResume> getBoiteDeReception(String email) {
+        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        return mongoCustomService.boiteDeReception(utilisateur.getId(), groupeIdsDe(utilisateur.getId()));
+    }
+
+    /**
+     * Marque comme lus les messages de la conversation jusqu'au message {@code jusquaMessageId} inclus
+     * (tous si null) : un updateMany sur les messages, puis le compteur de lus de l'utilisateur.
+     * Retourne le nombre de messages passés à lu.
+     */
+    public long marquerCommeLu(String conversationId, String email, String jusquaMessageId) {
+        Utilisateur lecteur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        if (!estParticipant(conversationId, lecteur)) {
+            throw new RuntimeException("Accès refusé à la conversation " + conversationId);
+        }
+        if (jusquaMessageId == null || jusquaMessageId.isEmpty()) {
+            long modifies = messageRepository.marquerTousLus(conversationId, lecteur.getId());
+            mongoCustomService.avancerLus(conversationId, lecteur.getId(), null);
+            return modifies;
+        }
+        Message curseur = messageRepository.findById(jusquaMessageId)
+                .filter(m -> conversationId.equals(m.getConversationId()))
+                .orElseThrow(() -> new RuntimeException("Message non trouvé dans la conversation: " + jusquaMessageId));
+        ObjectId curseurId = new ObjectId(curseur.getId());
+        long modifies = messageRepository.marquerLusJusqua(conversationId, lecteur.getId(), curseur.getDateEnvoi(), curseurId);
+        long lus = messageRepository.countLusJusqua(conversationId, lecteur.getId(), curseur.getDateEnvoi(), curseurId);
+        mongoCustomService.avancerLus(conversationId, lecteur.getId(), lus);
+        return modifies;
+    }
+
+    // Groupes dont l'utilisateur est étudiant membre (liste vide pour un enseignant)
+    private List<String> groupeIdsDe(String utilisateurId) {
+        if (!ObjectId.isValid(utilisateurId)) {
+            return List.of();
+        }
+        return mongoCustomService.idsGroupesDeLEtudiant(new ObjectId(utilisateurId)).stream()
+                .map(ObjectId::toHexString)
+                .collect(Collectors.toList());
+    }
+
     public Groupe getGroupeWithMembers(String groupeId) {
         return groupeRepository.findById(groupeId)
                 .orElseThrow(() -> new RuntimeException("Groupe non trouvé: " + groupeId));
@@ -0,0 +1,465 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Dto.ConversationResume;
+import com.Scolab.ScolabBackend.Dto.Echeance;
+import com.Scolab.ScolabBackend.Dto.SoumissionExport;
+import com.Scolab.ScolabBackend.Entity.EcheanceModifiee;
+import com.mongodb.DBRef;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Requêtes MongoDB spécifiques (agrégations) qui ne s'expriment pas simplement via les repositories.
+ */
+@Service
+@RequiredArgsConstructor
+public class MongoCustomService {
+
+    private static final int LIMITE_VENTILATION = 50;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Compte les utilisateurs par rôle, par activité, par faculté et par département
+     * en une seule agrégation $facet : seuls les compteurs remontent du serveur.
+     */
+    public Map<String, Object> statistiquesUtilisateurs() {
+        Document facet = new Document("$facet", new Document()
+                .append("total", List.of(new Document("$count", "total")))
+                .append("actifs", List.of(
+                        new Document("$match", new Document("est_actif", true)),
+                        new Document("$count", "total")))
+                .append("parRole", List.of(
+                        new Document("$group", new Document("_id", "$role").append("total", new Document("$sum", 1)))))
+                .append("parFaculte", List.of(
+                        new Document("$match", new Document("nom_faculte", new Document("$ne", null))),
+                        new Document("$group", new Document("_id", "$nom_faculte").append("total", new Document("$sum", 1))),
+                        new Document("$sort", new Document("total", -1)),
+                        new Document("$limit", LIMITE_VENTILATION)))
+                .append("parDepartement", List.of(
+                        new Document("$unwind", "$nom_departements"),
+                        new Document("$group", new Document("_id", "$nom_departements").append("total", new Document("$sum", 1))),
+                        new Document("$sort", new Document("total", -1)),
+                        new Document("$limit", LIMITE_VENTILATION))));
+
+        Document resultat = mongoTemplate.getCollection("utilisateur")
+                .aggregate(List.of(facet))
+                .first();
+
+        Map<String, Long> parRole = ventilation(resultat, "parRole");
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalUtilisateurs", compteur(resultat, "total"));
+        stats.put("totalEtudiants", parRole.getOrDefault("ETUDIANT", 0L));
+        stats.put("totalEnseignants", parRole.getOrDefault("ENSEIGNANT", 0L));
+        stats.put("totalActifs", compteur(resultat, "actifs"));
+        stats.put("parRole", parRole);
+        stats.put("parFaculte", ventilation(resultat, "parFaculte"));
+        stats.put("parDepartement", ventilation(resultat, "parDepartement"));
+        return stats;
+    }
+
+    /**
+     * Ids des étudiants membres des groupes donnés, lus directement dans les DBRef du document groupe
+     * (une seule requête, aucun étudiant résolu). Lève une exception si un des groupes n'existe pas.
+     */
+    public Set<ObjectId> idsEtudiantsDesGroupes(List<String> groupeIds) {
+        List<Object> ids = new ArrayList<>();
+        for (String groupeId : groupeIds) {
+            ids.add(ObjectId.isValid(groupeId) ? new ObjectId(groupeId) : groupeId);
+        }
+
+        Set<String> trouves = new HashSet<>();
+        Set<ObjectId> etudiants = new LinkedHashSet<>();
+        for (Document groupe : mongoTemplate.getCollection("groupes")
+                .find(new Document("_id", new Document("$in", ids)))
+                .projection(new Document("etudiants", 1))) {
+            trouves.add(groupe.get("_id").toString());
+            List<DBRef> refs = groupe.getList("etudiants", DBRef.class);
+            if (refs != null) {
+                for (DBRef ref : refs) {
+                    if (ref != null && ref.getId() instanceof ObjectId id) {
+                        etudiants.add(id);
+                    }
+                }
+            }
+        }
+
+        for (String groupeId : groupeIds) {
+            if (!trouves.contains(groupeId)) {
+                throw new RuntimeException("Groupe non trouvé avec l'id: " + groupeId);
+            }
+        }
+        return etudiants;
+    }
+
+    /**
+     * Livrables soumis (avec fichier) d'un projet et nom de leur groupe, en deux requêtes projetées :
+     * aucun DBRef projet/groupe n'est résolu livrable par livrable.
+     */
+    public List<SoumissionExport> soumissionsDuProjet(ObjectId projetId) {
+        List<Document> livrables = new ArrayList<>();
+        Set<Object> groupeIds = new LinkedHashSet<>();
+        for (Document livrable : mongoTemplate.getCollection("livrables")
+                .find(new Document("projet.$id", projetId).append("fichier.url", new Document("$ne", null)))
+                .projection(new Document("nom", 1).append("fichier.nom", 1).append("fichier.url", 1).append("groupe", 1))
+                .sort(new Document("_id", 1))) {
+            livrables.add(livrable);
+            if (livrable.get("groupe") instanceof DBRef ref) {
+                groupeIds.add(ref.getId());
+            }
+        }
+
+        Map<String, String> nomsGroupes = new HashMap<>();
+        if (!groupeIds.isEmpty()) {
+            for (Document groupe : mongoTemplate.getCollection("groupes")
+                    .find(new Document("_id", new Document("$in", new ArrayList<>(groupeIds))))
+                    .projection(new Document("nom", 1))) {
+                nomsGroupes.put(groupe.get("_id").toString(), groupe.getString("nom"));
+            }
+        }
+
+        List<SoumissionExport> soumissions = new ArrayList<>(livrables.size());
+        for (Document livrable : livrables) {
+            Document fichier = livrable.get("fichier", Document.class);
+            String groupeId = livrable.get("groupe") instanceof DBRef ref ? ref.getId().toString() : null;
+            soumissions.add(new SoumissionExport(
+                    livrable.get("_id").toString(),
+                    livrable.getString("nom"),
+                    groupeId,
+                    groupeId != null ? nomsGroupes.get(groupeId) : null,
+                    fichier.getString("nom"),
+                    fichier.getString("url")));
+        }
+        return soumissions;
+    }
+
+    /**
+     * Résumé de conversation mis à jour en une seule opération atomique côté serveur (pipeline d'update) :
+     * dernier message et date via un $max (un envoi concurrent plus ancien n'écrase pas le plus récent),
+     * compteur de messages incrémenté, et compteur de lus de l'expéditeur avancé d'autant pour que
+     * son propre message ne compte pas comme non lu. Retourne false si la conversation n'existe pas.
+     */
+    public boolean enregistrerMessageDansConversation(String conversationId, String expediteurId, String contenu, Date dateEnvoi) {
+        Document plusRecent = new Document("$gte", List.of(dateEnvoi, "$dateDernierMessage"));
+        Document set = new Document()
+                .append("dernierMessage", new Document("$cond", List.of(plusRecent, new Document("$literal", contenu), "$dernierMessage")))
+                .append("dateDernierMessage", new Document("$max", List.of("$dateDernierMessage", dateEnvoi)))
+                .append("nbMessages", incremente("$nbMessages"));
+        if (cleLusValide(expediteurId)) {
+            set.append("lus." + expediteurId, incremente("$lus." + expediteurId));
+        }
+        Object id = ObjectId.isValid(conversationId) ? new ObjectId(conversationId) : conversationId;
+        return mongoTemplate.getCollection("conversations")
+                .updateOne(new Document("_id", id), List.of(new Document("$set", set)))
+                .getMatchedCount() > 0;
+    }
+
+    /**
+     * Ids des groupes dont l'étudiant est membre (index etudiants_id, seul l'_id est lu).
+     */
+    public List<ObjectId> idsGroupesDeLEtudiant(ObjectId etudiantId) {
+        List<ObjectId> ids = new ArrayList<>();
+        for (Document groupe : mongoTemplate.getCollection("groupes")
+                .find(new Document("etudiants.$id", etudiantId))
+                .projection(new Document("_id", 1))) {
+            ids.add(groupe.getObjectId("_id"));
+        }
+        return ids;
+    }
+
+    /**
+     * Boîte de réception en une requête : conversations où l'utilisateur est l'enseignant ou dont le groupe
+     * est dans {@code groupeIds}, triées par dernière activité. Seule l'entrée lus.&lt;utilisateurId&gt; est lue,
+     * le nombre de non lus est calculé depuis les compteurs maintenus à l'envoi.
+     */
+    public List<ConversationResume> boiteDeReception(String utilisateurId, List<String> groupeIds) {
+        List<Document> membres = new ArrayList<>();
+        membres.add(new Document("enseignantId", utilisateurId));
+        if (!groupeIds.isEmpty()) {
+            membres.add(new Document("groupeId", new Document("$in", groupeIds)));
+        }
+        Document projection = new Document("groupeId", 1)
+                .append("enseignantId", 1)
+                .append("dernierMessage", 1)
+                .append("dateDernierMessage", 1)
+                .append("nbMessages", 1);
+        boolean avecLus = cleLusValide(utilisateurId);
+        if (avecLus) {
+            projection.append("lus." + utilisateurId, 1);
+        }
+
+        List<ConversationResume> resumes = new ArrayList<>();
+        for (Document conv : mongoTemplate.getCollection("conversations")
+                .find(new Document("$or", membres))
+                .projection(projection)
+                .sort(new Document("dateDernierMessage", -1).append("_id", -1))) {
+            long nbMessages = nombre(conv.get("nbMessages"));
+            Document lus = avecLus ? conv.get("lus", Document.class) : null;
+            long lu = lus != null ? nombre(lus.get(utilisateurId)) : 0;
+            resumes.add(new ConversationResume(
+                    conv.get("_id").toString(),
+                    conv.getString("groupeId"),
+                    conv.getString("enseignantId"),
+                    conv.getString("dernierMessage"),
+                    conv.getDate("dateDernierMessage"),
+                    nbMessages,
+                    Math.max(0, nbMessages - lu)));
+        }
+        return resumes;
+    }
+
+    /**
+     * Avance le compteur de lus de l'utilisateur. Sans {@code lusJusqua}, tout est lu (lus = nbMessages,
+     * évalué côté serveur) ; sinon le compteur ne fait que monter ($max), une lecture ancienne ne fait pas reculer.
+     */
+    public void avancerLus(String conversationId, String utilisateurId, Long lusJusqua) {
+        if (!cleLusValide(utilisateurId)) {
+            return;
+        }
+        Object id = ObjectId.isValid(conversationId) ? new ObjectId(conversationId) : conversationId;
+        String champ = "lus." + utilisateurId;
+        Object valeur = lusJusqua == null
+                ? new Document("$ifNull", List.of("$nbMessages", 0L))
+                : new Document("$min", List.of(
+                        new Document("$max", List.of(new Document("$ifNull", List.of("$" + champ, 0L)), lusJusqua)),
+                        new Document("$ifNull", List.of("$nbMessages", 0L))));
+        mongoTemplate.getCollection("conversations")
+                .updateOne(new Document("_id", id), List.of(new Document("$set", new Document(champ, valeur))));
+    }
+
+    /**
+     * Échéances postérieures à {@code apres} encore susceptibles d'un rappel : fins de projets actifs,
+     * livrables non soumis, tâches non terminées. Trois requêtes projetées, aucune DBRef résolue.
+     */
+    public List<Echeance> echeancesAVenir(Date apres) {
+        return echeances(apres, null, null);
+    }
+
+    /**
+     * L'échéance {@code type}/{@code id} si elle attend encore un rappel après {@code apres} ; vide si elle est
+     * passée, soumise, terminée ou supprimée. Une requête sur _id.
+     */
+    public Optional<Echeance> echeance(String type, String id, Date apres) {
+        return echeances(apres, type, identifiant(id)).stream().findFirst();
+    }
+
+    private List<Echeance> echeances(Date apres, String type, Object id) {
+        List<Echeance> echeances = new ArrayList<>();
+        if (type == null || Echeance.PROJET.equals(type)) {
+            for (Document projet : mongoTemplate.getCollection("projet")
+                    .find(parId(new Document("date_fin", new Document("$gt", apres))
+                            .append("archive", new Document("$ne", true))
+                            .append("statut", new Document("$nin", List.of("TERMINE", "ANNULE"))), id))
+                    .projection(new Document("nom", 1).append("date_fin", 1))) {
+                String projetId = projet.get("_id").toString();
+                echeances.add(new Echeance(Echeance.PROJET, projetId, projetId, projet.getString("nom"), dateLocale(projet.getDate("date_fin"))));
+            }
+        }
+        if (type == null || Echeance.LIVRABLE.equals(type)) {
+            for (Document livrable : mongoTemplate.getCollection("livrables")
+                    .find(parId(new Document("date_echeance", new Document("$gt", apres)).append("statut", "A_SOUMETTRE"), id))
+                    .projection(new Document("nom", 1).append("date_echeance", 1).append("projet", 1))) {
+                String projetId = livrable.get("projet") instanceof DBRef ref ? ref.getId().toString() : null;
+                echeances.add(new Echeance(Echeance.LIVRABLE, livrable.get("_id").toString(), projetId,
+                        livrable.getString("nom"), dateLocale(livrable.getDate("date_echeance"))));
+            }
+        }
+        if (type == null || Echeance.TACHE.equals(type)) {
+            for (Document tache : mongoTemplate.getCollection("taches")
+                    .find(parId(new Document("date_echeance", new Document("$gt", apres)).append("statut", new Document("$ne", "TERMINEE")), id))
+                    .projection(new Document("titre", 1).append("date_echeance", 1).append("projet_id", 1))) {
+                echeances.add(new Echeance(Echeance.TACHE, tache.get("_id").toString(), tache.getString("projet_id"),
+                        tache.getString("titre"), dateLocale(tache.getDate("date_echeance"))));
+            }
+        }
+        return echeances;
+    }
+
+    private static Document parId(Document filtre, Object id) {
+        return id != null ? filtre.append("_id", id) : filtre;
+    }
+
+    /**
+     * Journal des modifications d'échéances : chaque nœud y note les échéances qu'il modifie, le détenteur
+     * du bail des rappels le relit pour tenir sa roue à jour sans rescan.
+     */
+    public void journaliserEcheance(String type, String id, String noeud) {
+        EcheanceModifiee modification = new EcheanceModifiee();
+        modification.setType(type);
+        modification.setEcheanceId(id);
+        modification.setNoeud(noeud);
+        modification.setDate(new Date());
+        mongoTemplate.insert(modification);
+    }
+
+    // Modifications dont l'id suit depuis, dans l'ordre des ids
+    public List<EcheanceModifiee> echeancesModifiees(ObjectId depuis) {
+        return mongoTemplate.find(new Query(Criteria.where("_id").gt(depuis)).with(Sort.by("_id")),
+                EcheanceModifiee.class);
+    }
+
+    /**
+     * Destinataires des rappels d'un projet, par id d'échéance : étudiants des groupes du projet pour sa fin,
+     * du groupe du livrable (ou du projet à défaut), assignés de la tâche. Les échéances qui ne justifient
+     * plus de rappel (projet archivé ou terminé, livrable soumis, tâche terminée) sont absentes du résultat.
+     * Au plus quatre requêtes pour tout le lot.
+     */
+    public Map<String, Set<String>> destinatairesEcheances(String projetId, boolean finDeProjet,
+                                                          Collection<String> livrableIds, Collection<String> tacheIds) {
+        Map<String, Set<String>> destinataires = new HashMap<>();
+
+        Map<String, Object> groupeDuLivrable = new HashMap<>();
+        if (!livrableIds.isEmpty()) {
+            for (Document livrable : mongoTemplate.getCollection("livrables")
+                    .find(new Document("_id", new Document("$in", identifiants(livrableIds))).append("statut", "A_SOUMETTRE"))
+                    .projection(new Document("groupe", 1))) {
+                groupeDuLivrable.put(livrable.get("_id").toString(),
+                        livrable.get("groupe") instanceof DBRef ref ? ref.getId() : null);
+            }
+        }
+
+        List<Object> groupesDuProjet = null;
+        if (projetId != null && (finDeProjet || groupeDuLivrable.containsValue(null))) {
+            Document projet = mongoTemplate.getCollection("projet")
+                    .find(new Document("_id", identifiant(projetId))
+                            .append("archive", new Document("$ne", true))
+                            .append("statut", new Document("$nin", List.of("TERMINE", "ANNULE"))))
+                    .projection(new Document("groupes", 1))
+                    .first();
+            if (projet != null) {
+                groupesDuProjet = new ArrayList<>();
+                List<DBRef> refs = projet.getList("groupes", DBRef.class);
+                if (refs != null) {
+                    for (DBRef ref : refs) {
+                        if (ref != null) {
+                            groupesDuProjet.add(ref.getId());
+                        }
+                    }
+                }
+            }
+        }
+
+        Set<Object> groupeIds = new LinkedHashSet<>();
+        if (groupesDuProjet != null) {
+            groupeIds.addAll(groupesDuProjet);
+        }
+        for (Object groupeId : groupeDuLivrable.values()) {
+            if (groupeId != null) {
+                groupeIds.add(groupeId);
+            }
+        }
+        Map<String, Set<String>> etudiantsParGroupe = new HashMap<>();
+        if (!groupeIds.isEmpty()) {
+            for (Document groupe : mongoTemplate.getCollection("groupes")
+                    .find(new Document("_id", new Document("$in", new ArrayList<>(groupeIds))))
+                    .projection(new Document("etudiants", 1))) {
+                etudiantsParGroupe.put(groupe.get("_id").toString(), idsDesRefs(groupe.getList("etudiants", DBRef.class)));
+            }
+        }
+
+        if (finDeProjet && groupesDuProjet != null) {
+            destinataires.put(projetId, etudiantsDes(groupesDuProjet, etudiantsParGroupe));
+        }
+        for (Map.Entry<String, Object> livrable : groupeDuLivrable.entrySet()) {
+            if (livrable.getValue() != null) {
+                destinataires.put(livrable.getKey(), etudiantsParGroupe.getOrDefault(livrable.getValue().toString(), Set.of()));
+            } else if (groupesDuProjet != null) {
+                destinataires.put(livrable.getKey(), etudiantsDes(groupesDuProjet, etudiantsParGroupe));
+            }
+        }
+        if (!tacheIds.isEmpty()) {
+            for (Document tache : mongoTemplate.getCollection("taches")
+                    .find(new Document("_id", new Document("$in", identifiants(tacheIds))).append("statut", new Document("$ne", "TERMINEE")))
+                    .projection(new Document("assignes_a", 1))) {
+                destinataires.put(tache.get("_id").toString(), idsDesRefs(tache.getList("assignes_a", DBRef.class)));
+            }
+        }
+        return destinataires;
+    }
+
+    private static Set<String> etudiantsDes(List<Object> groupeIds, Map<String, Set<String>> etudiantsParGroupe) {
+        Set<String> etudiants = new LinkedHashSet<>();
+        for (Object groupeId : groupeIds) {
+            etudiants.addAll(etudiantsParGroupe.getOrDefault(groupeId.toString(), Set.of()));
+        }
+        return etudiants;
+    }
+
+    private static Set<String> idsDesRefs(List<DBRef> refs) {
+        Set<String> ids = new LinkedHashSet<>();
+        if (refs != null) {
+            for (DBRef ref : refs) {
+                if (ref != null && ref.getId() != null) {
+                    ids.add(ref.getId().toString());
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Object identifiant(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    private static List<Object> identifiants(Collection<String> ids) {
+        List<Object> resultat = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            resultat.add(identifiant(id));
+        }
+        return resultat;
+    }
+
+    // Les LocalDateTime sont stockées en Date UTC par Spring Data, relues dans le fuseau du serveur
+    private static LocalDateTime dateLocale(Date date) {
+        return date != null ? LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault()) : null;
+    }
+
+    // Les ids servent de clé dans la map "lus" : pas de '.' ni de '$' possible dans un nom de champ
+    private static boolean cleLusValide(String id) {
+        return id != null && !id.isEmpty() && !id.contains(".") && !id.startsWith("$");
+    }
+
+    private static long nombre(Object valeur) {
+        return valeur instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static Document incremente(String champ) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of(champ, 0L)), 1L));
+    }
+
+    private long compteur(Document resultat, String facette) {
+        if (resultat == null) return 0L;
+        List<Document> lignes = resultat.getList(facette, Document.class);
+        return lignes == null || lignes.isEmpty() ? 0L : ((Number) lignes.get(0).get("total")).longValue();
+    }
+
+    private Map<String, Long> ventilation(Document resultat, String facette) {
+        Map<String, Long> valeurs = new LinkedHashMap<>();
+        if (resultat == null) return valeurs;
+        for (Document ligne : resultat.getList(facette, Document.class)) {
+            Object cle = ligne.get("_id");
+            valeurs.put(cle != null ? cle.toString() : "INCONNU", ((Number) ligne.get("total")).longValue());
+        }
+        return valeurs;
+    }
+}
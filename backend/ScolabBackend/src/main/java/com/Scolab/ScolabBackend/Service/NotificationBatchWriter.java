@@ -0,0 +1,150 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Notification;
+import com.mongodb.ErrorCategory;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Regroupe les insertions de notifications : les appelants ne font qu'empiler, et un insertMany part
+ * toutes les {@code app.notifications.batch.fenetre-ms}, ou dès qu'un lot complet est prêt.
+ * Une notification à 300 étudiants coûte ainsi un aller-retour au lieu de 300.
+ * L'insertion est non ordonnée et les ids sont attribués à l'empilement : en cas d'échec, seuls les documents
+ * refusés sont rejoués, avec un délai croissant et au plus {@code app.notifications.batch.tentatives} fois.
+ */
+@Component
+public class NotificationBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationBatchWriter.class);
+
+    private static final long DELAI_REESSAI_MS = 250;
+    private static final long DELAI_REESSAI_MAX_MS = 30_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final LinkedBlockingQueue<Notification> file;
+    private final int tailleLot;
+    private final ReentrantLock ecriture = new ReentrantLock();
+    private final int tentativesMax;
+    private final int lotsEnReessaiMax;
+    // Lots en échec ; seul le détenteur du verrou ecriture les consomme
+    private final ConcurrentLinkedDeque<Lot> reessais = new ConcurrentLinkedDeque<>();
+
+    public NotificationBatchWriter(MongoTemplate mongoTemplate,
+                                   @Value("${app.notifications.batch.taille:500}") int tailleLot,
+                                   @Value("${app.notifications.batch.capacite:50000}") int capacite,
+                                   @Value("${app.notifications.batch.tentatives:8}") int tentativesMax) {
+        this.mongoTemplate = mongoTemplate;
+        this.tailleLot = tailleLot;
+        this.file = new LinkedBlockingQueue<>(capacite);
+        this.tentativesMax = tentativesMax;
+        this.lotsEnReessaiMax = Math.max(1, capacite / tailleLot);
+    }
+
+    public void ajouter(Collection<Notification> notifications) {
+        for (Notification notification : notifications) {
+            // Id fixé avant la première tentative : un document déjà inséré ne sera pas dupliqué au rejeu
+            if (notification.getId() == null) {
+                notification.setId(new ObjectId().toString());
+            }
+            if (!file.offer(notification)) {
+                // File pleine (Mongo indisponible ou très lent) : on vide sur le thread appelant plutôt que de perdre
+                vider();
+                if (!file.offer(notification)) {
+                    log.warn("File de notifications saturée, notification pour {} ignorée", notification.getEtudiantId());
+                }
+            }
+        }
+        if (file.size() >= tailleLot) {
+            vider();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.batch.fenetre-ms:200}")
+    public void vider() {
+        if (file.isEmpty() && reessais.isEmpty() || !ecriture.tryLock()) {
+            return;
+        }
+        try {
+            long maintenant = System.currentTimeMillis();
+            for (int i = reessais.size(); i > 0; i--) {
+                Lot lot = reessais.poll();
+                if (lot.prochainEssai() > maintenant) {
+                    reessais.add(lot);
+                } else {
+                    inserer(lot);
+                }
+            }
+            while (!file.isEmpty()) {
+                List<Notification> lot = new ArrayList<>(tailleLot);
+                file.drainTo(lot, tailleLot);
+                inserer(new Lot(lot, 0, 0));
+            }
+        } finally {
+            ecriture.unlock();
+        }
+    }
+
+    private void inserer(Lot lot) {
+        List<Notification> refusees;
+        String erreur;
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class)
+                    .insert(lot.notifications())
+                    .execute();
+            return;
+        } catch (BulkOperationException e) {
+            // Les autres documents du lot sont insérés ; un doublon d'id vient d'une tentative précédente réussie
+            refusees = e.getErrors().stream()
+                    .filter(err -> ErrorCategory.fromErrorCode(err.getCode()) != ErrorCategory.DUPLICATE_KEY)
+                    .map(err -> lot.notifications().get(err.getIndex()))
+                    .toList();
+            erreur = e.getMessage();
+        } catch (RuntimeException e) {
+            refusees = lot.notifications();
+            erreur = e.getMessage();
+        }
+        if (refusees.isEmpty()) {
+            return;
+        }
+        int tentatives = lot.tentatives() + 1;
+        if (tentatives >= tentativesMax || reessais.size() >= lotsEnReessaiMax) {
+            log.error("Insertion de {} notifications abandonnée après {} tentative(s) : {}", refusees.size(), tentatives, erreur);
+            return;
+        }
+        long delai = Math.min(DELAI_REESSAI_MS << (tentatives - 1), DELAI_REESSAI_MAX_MS);
+        log.warn("Insertion de {} notifications échouée (tentative {}), nouvel essai dans {} ms : {}",
+                refusees.size(), tentatives, delai, erreur);
+        reessais.add(new Lot(refusees, tentatives, System.currentTimeMillis() + delai));
+    }
+
+    int enAttente() {
+        return file.size();
+    }
+
+    int enReessai() {
+        return reessais.stream().mapToInt(lot -> lot.notifications().size()).sum();
+    }
+
+    @PreDestroy
+    public void arreter() {
+        vider();
+    }
+
+    private record Lot(List<Notification> notifications, int tentatives, long prochainEssai) {
+    }
+}
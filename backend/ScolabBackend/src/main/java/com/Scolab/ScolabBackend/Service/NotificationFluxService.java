@@ -0,0 +1,292 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flux de notifications Server-Sent Events par utilisateur, alimenté par les {@link EvenementNotification}.
+ * Chaque utilisateur a un canal : ses connexions ouvertes et un tampon circulaire borné des derniers
+ * événements, rejoués à la reconnexion à partir de l'en-tête Last-Event-ID. Les connexions inactives
+ * ne retiennent aucun thread (requête asynchrone Servlet), seuls les heartbeats les réveillent.
+ * Les écritures passent par la file d'envois du canal, vidée dans l'ordre sur le pool borné {@code fluxExecutor} :
+ * ni le thread qui publie l'événement ni le scheduler n'attendent un client lent, et aucun envoi n'a lieu
+ * sous le verrou du canal. Un client qui laisse s'accumuler plus d'un tampon d'envois est déconnecté ;
+ * il se reconnecte et rattrape son retard par Last-Event-ID.
+ */
+@Service
+public class NotificationFluxService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationFluxService.class);
+
+    static final String EVENEMENT_RESYNC = "RESYNC";
+
+    private final UtilisateurRepository utilisateurRepository;
+    private final TaskExecutor fluxExecutor;
+    private final Map<String, Canal> canaux = new ConcurrentHashMap<>();
+    // Ids croissants d'un démarrage à l'autre : un Last-Event-ID antérieur au démarrage déclenche un RESYNC
+    private final long premierId = System.currentTimeMillis() * 1000;
+    private final AtomicLong sequence = new AtomicLong(premierId);
+
+    private final int tailleTampon;
+    private final long timeoutMs;
+    private final long retentionMs;
+
+    public NotificationFluxService(UtilisateurRepository utilisateurRepository,
+                                   @Qualifier("fluxExecutor") TaskExecutor fluxExecutor,
+                                   @Value("${app.notifications.sse.buffer:100}") int tailleTampon,
+                                   @Value("${app.notifications.sse.timeout-ms:1800000}") long timeoutMs,
+                                   @Value("${app.notifications.sse.retention-ms:3600000}") long retentionMs) {
+        this.utilisateurRepository = utilisateurRepository;
+        this.fluxExecutor = fluxExecutor;
+        this.tailleTampon = tailleTampon;
+        this.timeoutMs = timeoutMs;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Ouvre un flux pour l'utilisateur et rejoue les événements manqués depuis {@code dernierIdRecu}.
+     */
+    public SseEmitter abonner(String email, Long dernierIdRecu) {
+        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        return abonnerUtilisateur(utilisateur.getId(), dernierIdRecu, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter abonnerUtilisateur(String utilisateurId, Long dernierIdRecu, SseEmitter emetteur) {
+        Canal canal = canaux.computeIfAbsent(utilisateurId, id -> new Canal(tailleTampon));
+        emetteur.onCompletion(() -> canal.emetteurs.remove(emetteur));
+        emetteur.onTimeout(() -> canal.emetteurs.remove(emetteur));
+        emetteur.onError(e -> canal.emetteurs.remove(emetteur));
+
+        // Rejeu calculé, connexion enregistrée et rejeu mis en file sous le verrou du canal, avant tout nouvel
+        // événement : aucun événement perdu ni reçu deux fois, dans l'ordre des ids. Les envois se font hors verrou.
+        boolean demarrer;
+        synchronized (canal) {
+            List<SseEmitter.SseEventBuilder> rejeu = new ArrayList<>();
+            if (dernierIdRecu != null) {
+                if (dernierIdRecu <= premierId || dernierIdRecu < canal.dernierEvince) {
+                    // Trop ancien pour le tampon : le client doit recharger ses notifications
+                    rejeu.add(SseEmitter.event().name(EVENEMENT_RESYNC).data(Map.of("raison", "historique expiré")));
+                }
+                for (Envoi envoi : canal.tampon) {
+                    if (envoi.id() > dernierIdRecu) {
+                        rejeu.add(envoi.vers());
+                    }
+                }
+            }
+            rejeu.add(SseEmitter.event().comment("connecté"));
+            canal.emetteurs.add(emetteur);
+            canal.derniereActivite = System.currentTimeMillis();
+            demarrer = canal.mettreEnFile(() -> {
+                for (SseEmitter.SseEventBuilder evenement : rejeu) {
+                    envoyer(canal, emetteur, evenement);
+                }
+            });
+        }
+        demarrer(canal, demarrer);
+        return emetteur;
+    }
+
+    @EventListener
+    public void diffuser(EvenementNotification evenement) {
+        if (evenement.destinataires() == null || evenement.destinataires().isEmpty()) {
+            return;
+        }
+        for (String destinataire : evenement.destinataires()) {
+            long id = sequence.incrementAndGet();
+            Envoi envoi = new Envoi(id, evenement.type(), donnees(id, evenement));
+            Canal canal = canaux.computeIfAbsent(destinataire, cle -> new Canal(tailleTampon));
+            boolean demarrer;
+            synchronized (canal) {
+                canal.ajouter(envoi);
+                if (canal.emetteurs.isEmpty()) {
+                    continue;
+                }
+                List<SseEmitter> emetteurs = List.copyOf(canal.emetteurs);
+                demarrer = canal.mettreEnFile(() -> {
+                    for (SseEmitter emetteur : emetteurs) {
+                        envoyer(canal, emetteur, envoi.vers());
+                    }
+                });
+            }
+            demarrer(canal, demarrer);
+        }
+    }
+
+    // Commentaire SSE périodique : garde la connexion ouverte derrière les proxies et détecte les clients partis
+    @Scheduled(fixedDelayString = "${app.notifications.sse.heartbeat-ms:25000}")
+    public void heartbeat() {
+        long limite = System.currentTimeMillis() - retentionMs;
+        canaux.forEach((utilisateurId, canal) -> {
+            boolean demarrer = false;
+            synchronized (canal) {
+                if (!canal.emetteurs.isEmpty()) {
+                    List<SseEmitter> emetteurs = List.copyOf(canal.emetteurs);
+                    demarrer = canal.mettreEnFile(() -> {
+                        for (SseEmitter emetteur : emetteurs) {
+                            envoyer(canal, emetteur, SseEmitter.event().comment("ping"));
+                        }
+                    });
+                } else if (canal.derniereActivite < limite) {
+                    canaux.remove(utilisateurId, canal);
+                }
+            }
+            demarrer(canal, demarrer);
+        });
+    }
+
+    public Map<String, Object> statistiques() {
+        int connexions = canaux.values().stream().mapToInt(c -> c.emetteurs.size()).sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("canaux", canaux.size());
+        stats.put("connexions", connexions);
+        return stats;
+    }
+
+    // Vide la file d'envois du canal sur le pool, une tâche à la fois par canal pour garder l'ordre
+    private void demarrer(Canal canal, boolean demarrer) {
+        if (!demarrer) {
+            return;
+        }
+        try {
+            fluxExecutor.execute(() -> vider(canal));
+        } catch (TaskRejectedException e) {
+            log.warn("Pool SSE saturé, connexions de l'utilisateur déconnectées");
+            deconnecter(canal);
+        }
+    }
+
+    private void vider(Canal canal) {
+        while (true) {
+            Runnable envoi;
+            synchronized (canal) {
+                envoi = canal.envois.poll();
+                if (envoi == null) {
+                    canal.enCours = false;
+                    return;
+                }
+            }
+            envoi.run();
+        }
+    }
+
+    // Le client se reconnecte avec Last-Event-ID et rattrape par le tampon ce qui n'a pas été envoyé
+    private void deconnecter(Canal canal) {
+        List<SseEmitter> emetteurs;
+        synchronized (canal) {
+            emetteurs = List.copyOf(canal.emetteurs);
+            canal.emetteurs.clear();
+            canal.envois.clear();
+            canal.enCours = false;
+        }
+        emetteurs.forEach(SseEmitter::complete);
+    }
+
+    private void envoyer(Canal canal, SseEmitter emetteur, SseEmitter.SseEventBuilder evenement) {
+        try {
+            emetteur.send(evenement);
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Connexion SSE fermée : {}", e.getMessage());
+            canal.emetteurs.remove(emetteur);
+            emetteur.completeWithError(e);
+        }
+    }
+
+    private static Map<String, Object> donnees(long id, EvenementNotification evenement) {
+        Map<String, Object> donnees = new LinkedHashMap<>();
+        donnees.put("id", id);
+        donnees.put("type", evenement.type());
+        donnees.put("titre", evenement.titre());
+        donnees.put("message", evenement.message());
+        donnees.put("date", evenement.date().toString());
+        if (evenement.donnees() != null) {
+            donnees.put("donnees", evenement.donnees());
+        }
+        return donnees;
+    }
+
+    private record Envoi(long id, String type, Map<String, Object> donnees) {
+        SseEmitter.SseEventBuilder vers() {
+            return SseEmitter.event()
+                    .id(String.valueOf(id))
+                    .name(type)
+                    .data(donnees, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private static final class Canal {
+        private final List<SseEmitter> emetteurs = new CopyOnWriteArrayList<>();
+        private final ArrayDeque<Envoi> tampon;
+        // Envois en attente, exécutés dans l'ordre par une seule tâche du pool à la fois
+        private final ArrayDeque<Runnable> envois = new ArrayDeque<>();
+        private boolean enCours;
+        private final int capacite;
+        private long dernierEvince = Long.MIN_VALUE;
+        private volatile long derniereActivite = System.currentTimeMillis();
+
+        private Canal(int capacite) {
+            this.capacite = capacite;
+            this.tampon = new ArrayDeque<>(capacite);
+        }
+
+        private void ajouter(Envoi envoi) {
+            if (tampon.size() >= capacite) {
+                dernierEvince = tampon.removeFirst().id();
+            }
+            tampon.addLast(envoi);
+            derniereActivite = System.currentTimeMillis();
+        }
+
+        // Sous le verrou du canal ; vrai si une tâche de vidage doit être lancée. Au-delà d'un tampon
+        // d'envois en retard, le client est trop lent : on abandonne la file et on le déconnecte.
+        private boolean mettreEnFile(Runnable envoi) {
+            if (envois.size() >= capacite) {
+                List<SseEmitter> lents = List.copyOf(emetteurs);
+                emetteurs.clear();
+                envois.clear();
+                lents.forEach(SseEmitter::complete);
+                return false;
+            }
+            envois.add(envoi);
+            if (enCours) {
+                return false;
+            }
+            enCours = true;
+            return true;
+        }
+    }
+
+    // Pour les tests : événements encore rejouables pour un utilisateur
+    List<Long> idsEnTampon(String utilisateurId) {
+        Canal canal = canaux.get(utilisateurId);
+        if (canal == null) {
+            return List.of();
+        }
+        synchronized (canal) {
+            List<Long> ids = new ArrayList<>();
+            canal.tampon.forEach(e -> ids.add(e.id()));
+            return ids;
+        }
+    }
+}
@@ -1,27 +1,41 @@
 package com.Scolab.ScolabBackend.Service;
 
-import com.Scolab.ScolabBackend.Entity.Etudiant;
-import com.Scolab.ScolabBackend.Entity.Groupe;
+import com.Scolab.ScolabBackend.Entity.Notification;
 import com.Scolab.ScolabBackend.Entity.Projet;
-import com.Scolab.ScolabBackend.Repository.GroupeRepository;
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import com.Scolab.ScolabBackend.Repository.NotificationRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationService {
 
     private final ProjetRepository projetRepository;
-    private final GroupeRepository groupeRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final EmailService emailService;
+    private final MongoCustomService mongoCustomService;
+    private final NotificationRepository notificationRepository;
+    private final NotificationBatchWriter notificationBatchWriter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private static final List<Boolean> TOUTES = List.of(false, true);
+    private static final List<Boolean> NON_LUES = List.of(false);
 
     /**
      * Notification lors de la création d'un projet.
@@ -33,16 +47,11 @@ public class NotificationService {
         }
         Projet projet = optProjet.get();
 
-        Set<Etudiant> destinataires = collectEtudiantsFromGroupes(groupeIds);
+        List<Utilisateur> destinataires = collectEtudiantsFromGroupes(groupeIds);
 
-        for (Etudiant etu : destinataires) {
-            try {
-                emailService.sendProjectCreatedEmail(etu.getEmail(), etu.getNom(), etu.getPrenom(), projet);
-            } catch (RuntimeException ex) {
-                // On log seulement pour ne pas bloquer toute la boucle
-                System.err.println("Erreur envoi email projet créé à " + etu.getEmail() + ": " + ex.getMessage());
-            }
-        }
+        // Template rendu une seule fois pour tous les étudiants ; la notification PROJET_CREE (boîte, SSE,
+        // push) est publiée par ProjetService.creerProjet, pour tout projet créé
+        emailService.sendProjectCreatedEmails(destinataires, projet);
     }
 
     /**
@@ -55,39 +64,98 @@ public class NotificationService {
         }
         Projet projet = optProjet.get();
 
-        Set<Etudiant> destinataires = collectEtudiantsFromGroupes(groupeIds);
+        List<Utilisateur> destinataires = collectEtudiantsFromGroupes(groupeIds);
 
-        for (Etudiant etu : destinataires) {
-            try {
-                emailService.sendProjectDeadlineEmail(etu.getEmail(), etu.getNom(), etu.getPrenom(), projet);
-            } catch (RuntimeException ex) {
-                System.err.println("Erreur envoi email échéance projet à " + etu.getEmail() + ": " + ex.getMessage());
-            }
-        }
+        // Un id par rappel déclenché : clé d'idempotence des emails, deux rappels le même jour partent tous les deux
+        String evenementId = new ObjectId().toHexString();
+        emailService.sendProjectDeadlineEmails(evenementId, destinataires, projet);
+        publier(EvenementNotification.ECHEANCE_PROJET, "Rappel d'échéance",
+                "L'échéance du projet \"" + projet.getNom() + "\" approche",
+                ids(destinataires), Map.of("projetId", projetId));
     }
 
     /**
      * Notification personnalisée vers une liste d'étudiants.
      */
     public void sendCustomNotification(List<String> utilisateurIds, String titre, String message) {
-        utilisateurRepository.findAllById(utilisateurIds).forEach(user -> {
-            try {
-                emailService.sendCustomNotificationEmail(user.getEmail(), user.getNom(), user.getPrenom(), titre, message);
-            } catch (RuntimeException ex) {
-                System.err.println("Erreur envoi email custom à " + user.getEmail() + ": " + ex.getMessage());
-            }
-        });
+        List<Utilisateur> destinataires = utilisateurRepository.findAllById(utilisateurIds);
+        emailService.sendCustomNotificationEmails(new ObjectId().toHexString(), destinataires, titre, message);
+        publier(EvenementNotification.PERSONNALISEE, titre, message, ids(destinataires), Map.of());
+    }
+
+    /**
+     * Persiste chaque événement dans la boîte de notifications de ses destinataires.
+     * Les insertions passent par le writer, qui les regroupe en insertMany.
+     */
+    @EventListener
+    public void enregistrer(EvenementNotification evenement) {
+        if (evenement.destinataires() == null || evenement.destinataires().isEmpty()) {
+            return;
+        }
+        Date date = Date.from(evenement.date().atZone(ZoneId.systemDefault()).toInstant());
+        List<Notification> notifications = new ArrayList<>(evenement.destinataires().size());
+        for (String destinataire : evenement.destinataires()) {
+            notifications.add(new Notification(evenement.type(), evenement.titre(), evenement.message(),
+                    destinataire, evenement.donnees(), date));
+        }
+        notificationBatchWriter.ajouter(notifications);
+    }
+
+    /**
+     * Page de notifications, de la plus récente à la plus ancienne. {@code avant} est l'id de la dernière
+     * notification déjà affichée (pagination par curseur sur l'index etudiant_lu_date).
+     */
+    public List<Notification> getNotifications(String email, String avant, int limite, boolean nonLuesSeulement) {
+        String utilisateurId = idUtilisateur(email);
+        List<Boolean> lu = nonLuesSeulement ? NON_LUES : TOUTES;
+        PageRequest page = PageRequest.of(0, limite);
+        if (avant == null || avant.isEmpty()) {
+            return notificationRepository.findDernieres(utilisateurId, lu, page);
+        }
+        Notification curseur = notificationRepository.findById(avant)
+                .filter(n -> utilisateurId.equals(n.getEtudiantId()))
+                .orElseThrow(() -> new RuntimeException("Notification non trouvée: " + avant));
+        return notificationRepository.findAvant(utilisateurId, lu, curseur.getDate(), new ObjectId(curseur.getId()), page);
+    }
+
+    public long compterNonLues(String email) {
+        return notificationRepository.countByEtudiantIdAndLuFalse(idUtilisateur(email));
+    }
+
+    public boolean marquerLue(String email, String notificationId) {
+        return notificationRepository.marquerLue(notificationId, idUtilisateur(email)) > 0;
+    }
+
+    // Un seul updateMany pour toute la boîte (les notifications arrivées après l'appel restent non lues)
+    public long marquerToutesLues(String email) {
+        return notificationRepository.marquerLuesJusqua(idUtilisateur(email), new Date());
+    }
+
+    private String idUtilisateur(String email) {
+        return utilisateurRepository.findByEmail(email)
+                .map(Utilisateur::getId)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+    }
+
+    private void publier(String type, String titre, String message, Set<String> destinataires, Map<String, Object> donnees) {
+        if (!destinataires.isEmpty()) {
+            eventPublisher.publishEvent(new EvenementNotification(type, titre, message, destinataires, donnees));
+        }
+    }
+
+    private static Set<String> ids(List<Utilisateur> utilisateurs) {
+        return utilisateurs.stream()
+                .map(Utilisateur::getId)
+                .filter(id -> id != null)
+                .collect(Collectors.toSet());
     }
 
-    private Set<Etudiant> collectEtudiantsFromGroupes(List<String> groupeIds) {
-        Set<Etudiant> result = new HashSet<>();
-        for (String groupeId : groupeIds) {
-            Groupe groupe = groupeRepository.findById(groupeId)
-                    .orElseThrow(() -> new RuntimeException("Groupe non trouvé avec l'id: " + groupeId));
-            if (groupe.getEtudiants() != null) {
-                result.addAll(groupe.getEtudiants());
-            }
+    // Deux requêtes quel que soit le nombre de groupes : les ids des membres, puis leurs coordonnées
+    private List<Utilisateur> collectEtudiantsFromGroupes(List<String> groupeIds) {
+        Set<ObjectId> etudiantIds = mongoCustomService.idsEtudiantsDesGroupes(groupeIds);
+        if (etudiantIds.isEmpty()) {
+            return List.of();
         }
-        return result;
+        return utilisateurRepository.findContactsByIds(etudiantIds);
     }
 }
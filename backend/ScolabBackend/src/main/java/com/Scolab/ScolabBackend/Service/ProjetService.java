@@ -1,17 +1,25 @@
 package com.Scolab.ScolabBackend.Service;
 
+import com.Scolab.ScolabBackend.Dto.ProjetResume;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.GroupeRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,19 +38,19 @@ public class ProjetService {
     @Autowired
     private GroupeRepository groupeRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private EcheanceService echeanceService;
+
     public List<Projet> getProjetsByEnseignant(String email) {
         try {
             Utilisateur enseignant = utilisateurRepository.findByEmail(email)
                     .orElseThrow(() -> new RuntimeException("Enseignant non trouvé avec email: " + email));
 
-            List<Projet> allProjets = projetRepository.findAll();
-
-            // On renvoie uniquement les projets non archivés de cet enseignant
-            return allProjets.stream()
-                    .filter(projet -> projet.getEnseignant() != null
-                            && enseignant.getId().equals(projet.getEnseignant().getId())
-                            && (projet.getArchive() == null || !projet.getArchive()))
-                    .collect(Collectors.toList());
+            // On renvoie uniquement les projets non archivés de cet enseignant (requête indexée)
+            return projetRepository.findActifsByEnseignant(new ObjectId(enseignant.getId()));
         } catch (Exception e) {
             e.printStackTrace();
             return Collections.emptyList();
@@ -53,13 +61,20 @@ public class ProjetService {
         Utilisateur enseignant = utilisateurRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Enseignant non trouvé avec email: " + email));
 
-        List<Projet> allProjets = projetRepository.findAll();
+        return projetRepository.findArchivesByEnseignant(new ObjectId(enseignant.getId()));
+    }
 
-        return allProjets.stream()
-                .filter(projet -> projet.getEnseignant() != null
-                        && enseignant.getId().equals(projet.getEnseignant().getId())
-                        && Boolean.TRUE.equals(projet.getArchive()))
-                .collect(Collectors.toList());
+    /**
+     * Page de résumés de projets (champs de synthèse uniquement) pour le tableau de bord enseignant.
+     */
+    public Page<ProjetResume> getResumesProjetsByEnseignant(String email, boolean archive, Pageable pageable) {
+        Utilisateur enseignant = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Enseignant non trouvé avec email: " + email));
+
+        ObjectId enseignantId = new ObjectId(enseignant.getId());
+        return archive
+                ? projetRepository.findResumesArchivesByEnseignant(enseignantId, pageable)
+                : projetRepository.findResumesActifsByEnseignant(enseignantId, pageable);
     }
 
     public Optional<Projet> getProjetById(String id) {
@@ -78,7 +93,31 @@ public class ProjetService {
         projet.setPourcentageAvancement(0.0);
         projet.setStatut(StatutProjet.PLANIFIE);
 
-        return projetRepository.save(projet);
+        Projet projetCree = projetRepository.save(projet);
+        echeanceService.planifierProjet(projetCree);
+        Set<String> etudiants = idsEtudiantsDesGroupes(projetCree.getGroupes());
+        if (!etudiants.isEmpty()) {
+            eventPublisher.publishEvent(new EvenementNotification(
+                    EvenementNotification.PROJET_CREE,
+                    "Nouveau projet",
+                    "Le projet \"" + projetCree.getNom() + "\" vient d'être créé pour votre groupe",
+                    etudiants,
+                    Map.of("projetId", Objects.toString(projetCree.getId(), ""))));
+        }
+        return projetCree;
+    }
+
+    private static Set<String> idsEtudiantsDesGroupes(List<Groupe> groupes) {
+        if (groupes == null) {
+            return Set.of();
+        }
+        return groupes.stream()
+                .filter(g -> g != null && g.getEtudiants() != null)
+                .flatMap(g -> g.getEtudiants().stream())
+                .filter(Objects::nonNull)
+                .map(Etudiant::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
     }
 
     public Projet modifierProjet(String id, Projet projetModifie) {
@@ -102,7 +141,9 @@ public class ProjetService {
                     }
 
                     System.out.println("✏️  Modification du projet: " + projet.getNom()+projet);
-                    return projetRepository.save(projet);
+                    Projet projetSauvegarde = projetRepository.save(projet);
+                    echeanceService.planifierProjet(projetSauvegarde);
+                    return projetSauvegarde;
                 })
                 .orElseThrow(() -> new RuntimeException("Projet non trouvé avec ID: " + id));
     }
@@ -112,6 +153,7 @@ public class ProjetService {
                 .orElseThrow(() -> new RuntimeException("Projet non trouvé avec ID: " + id));
         projet.setArchive(!projet.getArchive());
         projetRepository.save(projet);
+        echeanceService.planifierProjet(projet);
         System.out.println("🗑️  Projet archive/resto avec ID: " + id);
     }
 
@@ -146,7 +188,9 @@ public class ProjetService {
                 .orElseThrow(() -> new RuntimeException("Projet non trouvé"));
 
         projet.setStatut(nouveauStatut);
-        return projetRepository.save(projet);
+        Projet projetSauvegarde = projetRepository.save(projet);
+        echeanceService.planifierProjet(projetSauvegarde);
+        return projetSauvegarde;
     }
 
     public Projet assignerGroupeAuProjet(String projetId, String groupeId) {
@@ -180,7 +224,9 @@ public class ProjetService {
                 .orElseThrow(() -> new RuntimeException("Projet non trouvé avec ID: " + id));
         projet.setArchive(true);
         projet.setDateArchivage(LocalDateTime.now());
-        return projetRepository.save(projet);
+        Projet projetSauvegarde = projetRepository.save(projet);
+        echeanceService.planifierProjet(projetSauvegarde);
+        return projetSauvegarde;
     }
 
     public Projet restaurerProjet(String id) {
@@ -188,7 +234,9 @@ public class ProjetService {
                 .orElseThrow(() -> new RuntimeException("Projet non trouvé avec ID: " + id));
         projet.setArchive(false);
         projet.setDateArchivage(null);
-        return projetRepository.save(projet);
+        Projet projetSauvegarde = projetRepository.save(projet);
+        echeanceService.planifierProjet(projetSauvegarde);
+        return projetSauvegarde;
     }
 
     public List<Projet.ProjetStats> getStatistiquesTousProjets() {
@@ -201,9 +249,7 @@ public class ProjetService {
     public List<Projet.ProjetStats> getStatistiquesProjetsParEnseignant(String enseignantId) {
         Utilisateur enseignant = utilisateurRepository.findById(enseignantId)
                 .orElseThrow(() -> new RuntimeException("Enseignant non trouvé avec ID: " + enseignantId));
-        List<Projet> projets = projetRepository.findAll().stream()
-                .filter(p -> p.getEnseignant() != null && enseignantId.equals(p.getEnseignant().getId()))
-                .collect(Collectors.toList());
+        List<Projet> projets = projetRepository.findAllByEnseignantRef(new ObjectId(enseignant.getId()));
         return projets.stream()
                 .map(Projet::getStatistiquesProjet)
                 .collect(Collectors.toList());
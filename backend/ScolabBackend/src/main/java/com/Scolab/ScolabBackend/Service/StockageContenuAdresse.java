@@ -0,0 +1,238 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Blob;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage adressé par contenu : le fichier est nommé d'après son SHA-256 (plus l'extension d'origine),
+ * un contenu identique n'est écrit qu'une fois et un compteur de références dans la collection blobs
+ * décide quand l'effacer. Les écritures en cours sont hors du répertoire servi publiquement
+ * ({@code app.upload.staging-dir}, sur le même volume pour que l'intégration soit un renommage).
+ * Plusieurs nœuds peuvent partager le répertoire : le blob passe par un état « en suppression » (pierre
+ * tombale) pendant que son fichier est effacé, et aucune référence ne lui est ajoutée dans cet état.
+ */
+@Component
+@ConditionalOnProperty(name = "app.storage.mode", havingValue = "contenu", matchIfMissing = true)
+@RequiredArgsConstructor
+public class StockageContenuAdresse implements StockageFichiers {
+
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+    // Attente d'une suppression en cours sur un autre nœud, et âge au-delà duquel elle est tenue pour abandonnée
+    private static final long ATTENTE_SUPPRESSION_MS = 100;
+    private static final int ESSAIS_SUPPRESSION = 50;
+    private static final Duration SUPPRESSION_ABANDONNEE = Duration.ofMinutes(10);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Value("${app.upload.staging-dir:uploads-staging}")
+    private String stagingDir;
+
+    @Override
+    public BlobStocke ecrire(InputStream contenu, String nomOriginal) throws IOException {
+        Path temporaires = Paths.get(stagingDir);
+        Files.createDirectories(temporaires);
+
+        // Le hash est calculé pendant l'écriture : une seule lecture du flux
+        Path temporaire = Files.createTempFile(temporaires, "upload-", ".part");
+        MessageDigest digest = sha256();
+        long taille;
+        try (InputStream in = new DigestInputStream(contenu, digest)) {
+            taille = Files.copy(in, temporaire, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+
+        try {
+            return integrer(temporaire, HexFormat.of().formatHex(digest.digest()), taille, nomOriginal);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporaire);
+            throw e;
+        }
+    }
+
+    @Override
+    public BlobStocke importer(Path source, String nomOriginal) throws IOException {
+        return integrer(source, empreinte(source), Files.size(source), nomOriginal);
+    }
+
+    // Déplace le fichier complet à son adresse de contenu, ou l'écarte si ce contenu est déjà stocké.
+    // La référence est comptée avant le déplacement (le fichier ne peut plus être effacé entre les deux)
+    // et retirée si le déplacement échoue.
+    private BlobStocke integrer(Path temporaire, String hash, long taille, String nomOriginal) throws IOException {
+        String nom = hash + extension(nomOriginal);
+        Path racine = Paths.get(uploadDir);
+        Files.createDirectories(racine);
+        Path cible = racine.resolve(nom);
+
+        boolean fichierIncertain = referencer(nom, hash, taille);
+        try {
+            if (fichierIncertain || !Files.exists(cible)) {
+                // Blob nouveau ou suppression reprise : un fichier présent peut être en train d'être effacé
+                // (ou orphelin), le nôtre, de même contenu, le remplace
+                Files.move(temporaire, cible, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(temporaire);
+            }
+        } catch (IOException | RuntimeException e) {
+            annulerReference(nom);
+            throw e;
+        }
+        return new BlobStocke(nom, hash, taille);
+    }
+
+    // Ajoute une référence au blob, en le créant au besoin. Retourne vrai si le fichier sur disque n'est pas garanti :
+    // blob créé à l'instant, ou suppression abandonnée par un autre nœud reprise
+    private boolean referencer(String nom, String hash, long taille) throws IOException {
+        for (int essai = 0; ; essai++) {
+            try {
+                UpdateResult resultat = mongoTemplate.upsert(
+                        Query.query(Criteria.where("_id").is(nom).and("suppression").exists(false)),
+                        new Update()
+                                .inc("references", 1)
+                                .setOnInsert("hash", hash)
+                                .setOnInsert("taille", taille)
+                                .setOnInsert("dateCreation", LocalDateTime.now()),
+                        Blob.class);
+                return resultat.getUpsertedId() != null;
+            } catch (DuplicateKeyException e) {
+                // Le blob existe et est en suppression : attendre qu'elle se termine
+                if (reprendreSuppressionAbandonnee(nom)) {
+                    return true;
+                }
+                if (essai >= ESSAIS_SUPPRESSION) {
+                    throw new IOException("Contenu en cours de suppression: " + nom);
+                }
+                try {
+                    Thread.sleep(ATTENTE_SUPPRESSION_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Intégration interrompue: " + nom, ie);
+                }
+            }
+        }
+    }
+
+    private boolean reprendreSuppressionAbandonnee(String nom) {
+        Date limite = new Date(System.currentTimeMillis() - SUPPRESSION_ABANDONNEE.toMillis());
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(nom).and("suppression").lt(limite)),
+                new Update().unset("suppression").inc("references", 1),
+                Blob.class).getModifiedCount() > 0;
+    }
+
+    private void annulerReference(String nom) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(nom)), new Update().inc("references", -1), Blob.class);
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(nom).and("references").lte(0)
+                .and("suppression").exists(false)), Blob.class);
+    }
+
+    @Override
+    public boolean liberer(String nom) {
+        Optional<Path> chemin = resoudre(nom);
+        if (chemin.isEmpty()) {
+            return false;
+        }
+        Blob blob = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(nom)),
+                new Update().inc("references", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                Blob.class);
+        try {
+            if (blob == null) {
+                // Fichier antérieur au stockage dédupliqué (nom UUID) : il n'appartient qu'à son livrable
+                return Files.deleteIfExists(chemin.get());
+            }
+            if (blob.getReferences() > 0) {
+                return false;
+            }
+            // Pierre tombale posée seulement si personne n'a repris de référence entre-temps ; tant qu'elle est là,
+            // integrer attend au lieu de compter sur le fichier qu'on efface
+            Date marque = new Date();
+            boolean tombale = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(nom).and("references").lte(0).and("suppression").exists(false)),
+                    new Update().set("suppression", marque),
+                    Blob.class).getModifiedCount() > 0;
+            if (!tombale) {
+                return false;
+            }
+            try {
+                return Files.deleteIfExists(chemin.get());
+            } finally {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").is(nom).and("suppression").is(marque)), Blob.class);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<Path> resoudre(String nom) {
+        return resoudreDans(Paths.get(uploadDir), nom);
+    }
+
+    static Optional<Path> resoudreDans(Path racine, String nom) {
+        Path base = racine.toAbsolutePath().normalize();
+        Path chemin = base.resolve(nom).normalize();
+        return chemin.startsWith(base) && !chemin.equals(base) ? Optional.of(chemin) : Optional.empty();
+    }
+
+    static String empreinte(Path fichier) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = Files.newInputStream(fichier)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    // Extension conservée pour que le type MIME reste déductible du nom
+    private static String extension(String nomOriginal) {
+        if (nomOriginal == null || nomOriginal.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String ext = nomOriginal.substring(nomOriginal.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(ext).matches() ? "." + ext : "";
+    }
+}
@@ -0,0 +1,35 @@
+package com.Scolab.ScolabBackend.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Backend de stockage des fichiers uploadés. Les fichiers restent servis sous /uploads/{nom}.
+ * Implémentation choisie par app.storage.mode : "contenu" (défaut, dédupliqué) ou "uuid".
+ */
+public interface StockageFichiers {
+
+    /**
+     * Écrit le flux et retourne le nom sous lequel il est stocké, avec son empreinte SHA-256.
+     */
+    BlobStocke ecrire(InputStream contenu, String nomOriginal) throws IOException;
+
+    /**
+     * Intègre un fichier déjà complet sur le même disque (upload par morceaux) : il est déplacé, pas recopié.
+     */
+    BlobStocke importer(Path source, String nomOriginal) throws IOException;
+
+    /**
+     * Libère une référence au fichier ; le contenu n'est effacé que lorsqu'il n'est plus référencé.
+     */
+    boolean liberer(String nom);
+
+    /**
+     * Chemin sur disque du fichier, ou vide si le nom sort du répertoire de stockage.
+     */
+    Optional<Path> resoudre(String nom);
+
+    record BlobStocke(String nom, String hash, long taille) {}
+}
@@ -0,0 +1,67 @@
+package com.Scolab.ScolabBackend.Service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+// Stockage historique : un fichier par upload, nommé UUID_nomOriginal
+@Component
+@ConditionalOnProperty(name = "app.storage.mode", havingValue = "uuid")
+public class StockageUuid implements StockageFichiers {
+
+    @Value("${app.upload.dir:uploads}")
+    private String uploadDir;
+
+    @Override
+    public BlobStocke ecrire(InputStream contenu, String nomOriginal) throws IOException {
+        Path racine = Paths.get(uploadDir);
+        Files.createDirectories(racine);
+
+        String nom = UUID.randomUUID() + "_" + nomOriginal;
+        MessageDigest digest = StockageContenuAdresse.sha256();
+        long taille;
+        try (InputStream in = new DigestInputStream(contenu, digest)) {
+            taille = Files.copy(in, racine.resolve(nom));
+        }
+        return new BlobStocke(nom, HexFormat.of().formatHex(digest.digest()), taille);
+    }
+
+    @Override
+    public BlobStocke importer(Path source, String nomOriginal) throws IOException {
+        Path racine = Paths.get(uploadDir);
+        Files.createDirectories(racine);
+
+        String hash = StockageContenuAdresse.empreinte(source);
+        long taille = Files.size(source);
+        String nom = UUID.randomUUID() + "_" + nomOriginal;
+        Files.move(source, racine.resolve(nom), StandardCopyOption.ATOMIC_MOVE);
+        return new BlobStocke(nom, hash, taille);
+    }
+
+    @Override
+    public boolean liberer(String nom) {
+        try {
+            Optional<Path> chemin = resoudre(nom);
+            return chemin.isPresent() && Files.deleteIfExists(chemin.get());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Optional<Path> resoudre(String nom) {
+        return StockageContenuAdresse.resoudreDans(Paths.get(uploadDir), nom);
+    }
+}
@@ -1,15 +1,21 @@
 package com.Scolab.ScolabBackend.Service;
 
+import com.Scolab.ScolabBackend.Dto.Echeance;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.TacheRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,6 +26,8 @@ public class TacheService {
 
     private final TacheRepository tacheRepository;
     private final UtilisateurRepository utilisateurRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EcheanceService echeanceService;
 
     public List<Tache> getTachesByEtudiant(String etudiantId) {
         List<Tache> taches = tacheRepository.findByEtudiantId(etudiantId);
@@ -60,7 +68,9 @@ public class TacheService {
         if (!dejaAssigne) {
             tache.getAssignesA().add(etudiant);
             System.out.println("✅ Étudiant " + etudiant.getNom() + " assigné à la tâche " + tache.getTitre());
-            return tacheRepository.save(tache);
+            Tache tacheAssignee = tacheRepository.save(tache);
+            publierAssignation(tacheAssignee, Set.of(etudiantId));
+            return tacheAssignee;
         } else {
             System.out.println("ℹ️  Étudiant déjà assigné à cette tâche");
             return tache;
@@ -97,13 +107,16 @@ public class TacheService {
                     }
 
                     System.out.println("✏️  Tâche mise à jour: " + tache.getTitre());
-                    return tacheRepository.save(tache);
+                    Tache tacheSauvegardee = tacheRepository.save(tache);
+                    echeanceService.planifierTache(tacheSauvegardee);
+                    return tacheSauvegardee;
                 })
                 .orElseThrow(() -> new RuntimeException("Tâche non trouvée avec ID: " + id));
     }
 
     public void deleteTache(String id) {
         tacheRepository.deleteById(id);
+        echeanceService.annuler(Echeance.TACHE, id);
         System.out.println("🗑️  Tâche supprimée avec ID: " + id);
     }
 
@@ -141,7 +154,9 @@ public class TacheService {
         }
 
         System.out.println("🔄 Statut de la tâche " + tache.getTitre() + " changé à: " + nouveauStatut);
-        return tacheRepository.save(tache);
+        Tache tacheSauvegardee = tacheRepository.save(tache);
+        echeanceService.planifierTache(tacheSauvegardee);
+        return tacheSauvegardee;
     }
 
     public Tache creerTache(Tache tache) {
@@ -165,10 +180,30 @@ public class TacheService {
         }
 
         Tache tacheSauvegardee = tacheRepository.save(tache);
+        echeanceService.planifierTache(tacheSauvegardee);
         System.out.println("✅ Tâche créée: " + tacheSauvegardee.getTitre() + " (ID: " + tacheSauvegardee.getId() + ")");
+        if (tacheSauvegardee.getAssignesA() != null) {
+            publierAssignation(tacheSauvegardee, tacheSauvegardee.getAssignesA().stream()
+                    .filter(Objects::nonNull)
+                    .map(Etudiant::getId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet()));
+        }
         return tacheSauvegardee;
     }
 
+    private void publierAssignation(Tache tache, Set<String> etudiantIds) {
+        if (etudiantIds.isEmpty()) {
+            return;
+        }
+        eventPublisher.publishEvent(new EvenementNotification(
+                EvenementNotification.TACHE_ASSIGNEE,
+                "Nouvelle tâche",
+                "La tâche \"" + tache.getTitre() + "\" vous a été assignée",
+                etudiantIds,
+                Map.of("tacheId", Objects.toString(tache.getId(), ""), "projetId", Objects.toString(tache.getProjetId(), ""))));
+    }
+
     public Tache retirerEtudiantDeTache(String tacheId, String etudiantId) {
         Tache tache = tacheRepository.findById(tacheId)
                 .orElseThrow(() -> new RuntimeException("Tâche non trouvée avec ID: " + tacheId));
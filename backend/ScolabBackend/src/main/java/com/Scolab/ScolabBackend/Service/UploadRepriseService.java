@@ -0,0 +1,302 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Livrable;
+import com.Scolab.ScolabBackend.Entity.UploadSession;
+import com.Scolab.ScolabBackend.Repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Upload de livrable reprenable, sur le modèle de tus : création, ajout d'un morceau à un offset donné,
+ * consultation de l'offset, finalisation. Les morceaux sont écrits en place dans un fichier de staging
+ * unique, qui est ensuite déplacé (pas recopié) dans le stockage.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadRepriseService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadRepriseService.class);
+    private static final int TAILLE_BUFFER = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final LivrableService livrableService;
+    private final FichierStorageService fichierStorageService;
+
+    // Staging hors du répertoire servi publiquement, sur le même volume : la finalisation reste un simple renommage
+    @Value("${app.upload.staging-dir:uploads-staging}")
+    private String stagingDir;
+
+    @Value("${app.upload.reprise.expiration-heures:24}")
+    private long expirationHeures;
+
+    @Value("${app.upload.reprise.verrou-minutes:15}")
+    private long verrouMinutes;
+
+    public UploadSession creerSession(String livrableId, String groupeId, String nomFichier, long tailleTotale) throws IOException {
+        if (nomFichier == null || nomFichier.isBlank()) {
+            throw new RuntimeException("Le nom du fichier est obligatoire");
+        }
+        if (tailleTotale <= 0 || tailleTotale > fichierStorageService.getTailleMaxFlux()) {
+            throw new RuntimeException("Taille de fichier invalide (maximum " + fichierStorageService.getTailleMaxFlux() + " octets)");
+        }
+        livrableService.verifierSoumissionPossible(livrableId, groupeId);
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setLivrableId(livrableId);
+        session.setGroupeId(groupeId);
+        session.setNomFichier(nomFichier);
+        session.setTailleTotale(tailleTotale);
+        session.setOffset(0);
+        session.setDateCreation(maintenant);
+        session.setDateExpiration(maintenant.plusHours(expirationHeures));
+
+        Files.createDirectories(repertoireStaging());
+        Files.createFile(fichierStaging(session.getId()));
+        return uploadSessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload non trouvé ou expiré: " + uploadId));
+    }
+
+    /**
+     * Écrit le morceau à l'offset annoncé et retourne le nouvel offset. Si la connexion tombe en cours
+     * de morceau, les octets déjà reçus sont conservés et le client reprend à partir du nouvel offset.
+     * La session est réservée avant de toucher au fichier : deux envois au même offset ne s'entrelacent pas.
+     */
+    public long ajouterMorceau(String uploadId, long offsetAnnonce, InputStream contenu) throws IOException {
+        UploadSession session = reserver(uploadId, Criteria.where("offset").is(offsetAnnonce));
+        if (session == null) {
+            long offsetCourant = getSession(uploadId).getOffset();
+            if (offsetCourant != offsetAnnonce) {
+                throw new OffsetIncorrectException(offsetCourant);
+            }
+            throw new UploadVerrouilleException(uploadId);
+        }
+
+        Ecriture ecriture;
+        try {
+            ecriture = ecrire(uploadId, offsetAnnonce, session.getTailleTotale() - offsetAnnonce, contenu);
+        } catch (IOException | RuntimeException e) {
+            // Morceau refusé : rien n'est validé, le prochain envoi tronquera ces octets
+            liberer(uploadId, session.getVerrou(), new Update());
+            throw e;
+        }
+
+        long nouvelOffset = offsetAnnonce + ecriture.ecrits();
+        Update update = new Update().set("dateExpiration", LocalDateTime.now().plusHours(expirationHeures));
+        if (ecriture.ecrits() > 0) {
+            update.set("offset", nouvelOffset);
+        }
+        if (!liberer(uploadId, session.getVerrou(), update)) {
+            // Réservation expirée et reprise par un autre envoi : ce morceau n'est pas validé
+            throw new OffsetIncorrectException(getSession(uploadId).getOffset());
+        }
+        if (ecriture.interruption() != null) {
+            throw ecriture.interruption();
+        }
+        return nouvelOffset;
+    }
+
+    private Ecriture ecrire(String uploadId, long offset, long restant, InputStream contenu) throws IOException {
+        long ecrits = 0;
+        IOException interruption = null;
+        try (FileChannel canal = FileChannel.open(fichierStaging(uploadId), StandardOpenOption.WRITE);
+             FileLock verrouFichier = verrouiller(canal, uploadId)) {
+            // Écarte d'éventuels octets d'un morceau précédent non validé
+            canal.truncate(offset);
+            canal.position(offset);
+
+            byte[] buffer = new byte[TAILLE_BUFFER];
+            try {
+                int n;
+                // On lit un octet de plus que le restant pour détecter un dépassement de la taille annoncée
+                while ((n = contenu.read(buffer, 0, (int) Math.min(buffer.length, restant - ecrits + 1))) > 0) {
+                    if (ecrits + n > restant) {
+                        throw new RuntimeException("Le morceau dépasse la taille annoncée du fichier");
+                    }
+                    ByteBuffer morceau = ByteBuffer.wrap(buffer, 0, n);
+                    while (morceau.hasRemaining()) {
+                        canal.write(morceau);
+                    }
+                    ecrits += n;
+                }
+            } catch (IOException e) {
+                interruption = e;
+            }
+            canal.force(false);
+        }
+        return new Ecriture(ecrits, interruption);
+    }
+
+    // Second rempart si la réservation a expiré pendant un envoi très lent : jamais deux écritures sur le fichier
+    private static FileLock verrouiller(FileChannel canal, String uploadId) throws IOException {
+        try {
+            FileLock verrou = canal.tryLock();
+            if (verrou == null) {
+                throw new UploadVerrouilleException(uploadId);
+            }
+            return verrou;
+        } catch (OverlappingFileLockException e) {
+            throw new UploadVerrouilleException(uploadId);
+        }
+    }
+
+    public Livrable finaliser(String uploadId) throws IOException {
+        UploadSession session = getSession(uploadId);
+        if (session.getOffset() != session.getTailleTotale()) {
+            throw new RuntimeException("Upload incomplet: " + session.getOffset() + "/" + session.getTailleTotale() + " octets reçus");
+        }
+        // Un morceau en cours, une autre finalisation ou le nettoyage ne peuvent plus toucher au staging
+        UploadSession reservee = reserver(uploadId, Criteria.where("offset").is(session.getTailleTotale()));
+        if (reservee == null) {
+            throw new UploadVerrouilleException(uploadId);
+        }
+
+        Livrable livrable;
+        try {
+            livrable = livrableService.soumettreLivrableAssemble(
+                    session.getLivrableId(), fichierStaging(uploadId), session.getNomFichier(), session.getGroupeId());
+        } catch (IOException | RuntimeException e) {
+            liberer(uploadId, reservee.getVerrou(), new Update());
+            throw e;
+        }
+        uploadSessionRepository.deleteById(uploadId);
+        return livrable;
+    }
+
+    public void annuler(String uploadId) throws IOException {
+        long supprimees = mongoTemplate.remove(
+                Query.query(Criteria.where("_id").is(uploadId).andOperator(libre())), UploadSession.class).getDeletedCount();
+        if (supprimees == 0 && uploadSessionRepository.existsById(uploadId)) {
+            throw new UploadVerrouilleException(uploadId);
+        }
+        Files.deleteIfExists(fichierStaging(uploadId));
+    }
+
+    // Supprime les uploads abandonnés : sessions expirées et fichiers de staging orphelins
+    @Scheduled(fixedDelayString = "${app.upload.reprise.gc-ms:3600000}")
+    public void nettoyerUploadsExpires() {
+        int supprimes = 0;
+        for (UploadSession session : uploadSessionRepository.findByDateExpirationBefore(LocalDateTime.now())) {
+            // La session n'est supprimée que si elle est toujours expirée et libre : un envoi a pu la reprendre
+            long supprimee = mongoTemplate.remove(Query.query(Criteria.where("_id").is(session.getId())
+                    .and("dateExpiration").lt(LocalDateTime.now())
+                    .andOperator(libre())), UploadSession.class).getDeletedCount();
+            if (supprimee == 0) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(fichierStaging(session.getId()));
+                supprimes++;
+            } catch (IOException e) {
+                log.warn("Impossible de supprimer le staging de l'upload {} : {}", session.getId(), e.getMessage());
+            }
+        }
+
+        Path staging = repertoireStaging();
+        if (Files.isDirectory(staging)) {
+            Instant limite = Instant.now().minus(expirationHeures, ChronoUnit.HOURS);
+            try (DirectoryStream<Path> fichiers = Files.newDirectoryStream(staging, "*.part")) {
+                for (Path fichier : fichiers) {
+                    String id = fichier.getFileName().toString().replace(".part", "");
+                    if (Files.getLastModifiedTime(fichier).toInstant().isBefore(limite)
+                            && !uploadSessionRepository.existsById(id)) {
+                        Files.deleteIfExists(fichier);
+                        supprimes++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Parcours du staging impossible : {}", e.getMessage());
+            }
+        }
+        if (supprimes > 0) {
+            log.info("{} upload(s) expiré(s) supprimé(s)", supprimes);
+        }
+    }
+
+    // Réserve atomiquement la session si elle est libre et vérifie la condition ; null sinon
+    private UploadSession reserver(String uploadId, Criteria condition) {
+        Query query = Query.query(Criteria.where("_id").is(uploadId).andOperator(condition, libre()));
+        Update update = new Update()
+                .set("verrou", UUID.randomUUID().toString())
+                .set("verrouExpiration", LocalDateTime.now().plusMinutes(verrouMinutes));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), UploadSession.class);
+    }
+
+    // Libère la réservation en appliquant update ; false si elle a expiré et a été reprise entre-temps
+    private boolean liberer(String uploadId, String verrou, Update update) {
+        update.unset("verrou").unset("verrouExpiration");
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(uploadId).and("verrou").is(verrou)),
+                update, UploadSession.class).getModifiedCount() > 0;
+    }
+
+    private static Criteria libre() {
+        return new Criteria().orOperator(
+                Criteria.where("verrouExpiration").is(null),
+                Criteria.where("verrouExpiration").lt(LocalDateTime.now()));
+    }
+
+    private Path repertoireStaging() {
+        return Paths.get(stagingDir).resolve("reprise");
+    }
+
+    private Path fichierStaging(String uploadId) {
+        // uploadId vient de l'URL : on refuse tout ce qui n'est pas un UUID
+        return repertoireStaging().resolve(UUID.fromString(uploadId) + ".part");
+    }
+
+    // Offset annoncé par le client différent de l'offset enregistré (HTTP 409)
+    public static class OffsetIncorrectException extends RuntimeException {
+        private final long offsetAttendu;
+
+        public OffsetIncorrectException(long offsetAttendu) {
+            super("Offset incorrect, reprise attendue à l'octet " + offsetAttendu);
+            this.offsetAttendu = offsetAttendu;
+        }
+
+        public long getOffsetAttendu() {
+            return offsetAttendu;
+        }
+    }
+
+    // Upload réservé par un autre envoi ou une finalisation en cours (HTTP 423)
+    public static class UploadVerrouilleException extends RuntimeException {
+        public UploadVerrouilleException(String uploadId) {
+            super("Upload " + uploadId + " en cours de traitement, réessayer plus tard");
+        }
+    }
+
+    private record Ecriture(long ecrits, IOException interruption) {
+    }
+}
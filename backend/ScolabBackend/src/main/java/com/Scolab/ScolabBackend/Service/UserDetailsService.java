@@ -3,25 +3,83 @@ package com.Scolab.ScolabBackend.Service;
 import com.Scolab.ScolabBackend.Entity.Utilisateur;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 @Service
 public class UserDetailsService implements org.springframework.security.core.userdetails.UserDetailsService {
     @Autowired
     private UtilisateurRepository userRepository;
 
+    @Value("${app.security.user-cache.max-entries:5000}")
+    private int capaciteCache;
+
+    @Value("${app.security.user-cache.ttl-ms:300000}")
+    private long ttlCacheMs;
+
+    // Cache LRU des comptes déjà chargés : évite un findByEmail à chaque requête authentifiée.
+    // On garde un instantané immuable et on reconstruit un User à chaque appel, car Spring Security
+    // efface le mot de passe des UserDetails après authentification.
+    private final Map<String, CompteEnCache> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompteEnCache> eldest) {
+            return size() > capaciteCache;
+        }
+    };
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        Utilisateur user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("Utilisateur non trouvé: " + email));
+        long maintenant = System.currentTimeMillis();
+        CompteEnCache compte;
+        synchronized (cache) {
+            compte = cache.get(email);
+        }
+        if (compte == null || maintenant - compte.chargeA() >= ttlCacheMs) {
+            Utilisateur user = userRepository.findByEmail(email)
+                    .orElseThrow(() -> new UsernameNotFoundException("Utilisateur non trouvé: " + email));
+            compte = new CompteEnCache(
+                    user.getEmail(),
+                    user.getPassword() != null ? user.getPassword() : "",
+                    "ROLE_" + user.getRole().name(),
+                    user.isEstActif(),
+                    maintenant);
+            if (capaciteCache > 0) {
+                synchronized (cache) {
+                    cache.put(email, compte);
+                }
+            }
+        }
 
         return org.springframework.security.core.userdetails.User
-                .withUsername(user.getEmail())
-                .password(user.getPassword() != null ? user.getPassword() : "")
-                .authorities("ROLE_" + user.getRole().name())
-                .disabled(!user.isEstActif())
+                .withUsername(compte.email())
+                .password(compte.password())
+                .authorities(compte.authorite())
+                .disabled(!compte.actif())
                 .build();
     }
+
+    /**
+     * À appeler après toute modification du rôle, du statut ou du mot de passe d'un compte.
+     */
+    public void evict(String email) {
+        if (email == null) {
+            return;
+        }
+        synchronized (cache) {
+            cache.remove(email);
+        }
+    }
+
+    public void vider() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private record CompteEnCache(String email, String password, String authorite, boolean actif, long chargeA) {}
 }
@@ -263,6 +263,7 @@ public class UserManagementService {
                 }
 
                 userRepository.delete(user);
+                userDetailsService.evict(user.getEmail());
                 return ReqRes.success("Utilisateur supprimé avec succès");
             } else {
                 return ReqRes.notFound();
@@ -375,6 +376,7 @@ public class UserManagementService {
                 Role newRole = Role.valueOf(roleRequest.getNewRole());
                 user.setRole(newRole);
                 Utilisateur updatedUser = userRepository.save(user);
+                userDetailsService.evict(updatedUser.getEmail());
 
                 response.setStatus("success");
                 response.setStatusCode(200);
@@ -414,6 +416,7 @@ public class UserManagementService {
 
                 user.setEstActif(isActive);
                 Utilisateur updatedUser = userRepository.save(user);
+                userDetailsService.evict(updatedUser.getEmail());
 
                 response.setStatus("success");
                 response.setStatusCode(200);
@@ -500,6 +503,7 @@ public class UserManagementService {
             // Mettre à jour le mot de passe
             user.setPassword(passwordEncoder.encode(newPassword));
             userRepository.save(user);
+            userDetailsService.evict(user.getEmail());
             System.out.println("🔐 Mot de passe mis à jour");
 
             // Invalider le token après utilisation
@@ -549,6 +553,7 @@ public class UserManagementService {
             // Mettre à jour le mot de passe
             user.setPassword(passwordEncoder.encode(newPassword));
             userRepository.save(user);
+            userDetailsService.evict(user.getEmail());
 
             // Envoyer un email de confirmation
             emailService.sendPasswordChangedConfirmation(user.getEmail(), user.getNom(), user.getPrenom());
@@ -583,9 +588,13 @@ public class UserManagementService {
             Fichier fichierPhoto = fichierStorageService.stockerFichier(photo);
 
             // Mettre à jour l'URL de la photo de profil
+            String anciennePhoto = user.getUrlPhotoProfil();
             user.setUrlPhotoProfil(fichierPhoto.getUrl());
             user.setDateModification(LocalDateTime.now());
             Utilisateur updatedUser = userRepository.save(user);
+            if (anciennePhoto != null) {
+                fichierStorageService.supprimerFichier(anciennePhoto);
+            }
 
             response.setStatus("success");
             response.setStatusCode(200);
@@ -6,10 +6,12 @@ import com.Scolab.ScolabBackend.Entity.Role;
 import com.Scolab.ScolabBackend.Entity.Utilisateur;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,6 +19,13 @@ import java.util.Optional;
 public class UtilisateurService {
 
     private final UtilisateurRepository utilisateurRepository;
+    private final MongoCustomService mongoCustomService;
+    private final UserDetailsService userDetailsService;
+
+    @Value("${app.stats.cache-ttl-ms:30000}")
+    private long statsCacheTtlMs;
+
+    private volatile StatsEnCache statsEnCache;
 
     public List<Etudiant> getAllEtudiants() {
         return utilisateurRepository.findAllEtudiants();
@@ -106,7 +115,9 @@ public class UtilisateurService {
                     utilisateur.modifierProfil(utilisateurModifie);
                     utilisateur.setRole(utilisateurModifie.getRole());
                     utilisateur.setDateModification(LocalDateTime.now());
-                    return utilisateurRepository.save(utilisateur);
+                    Utilisateur sauvegarde = utilisateurRepository.save(utilisateur);
+                    userDetailsService.evict(sauvegarde.getEmail());
+                    return sauvegarde;
                 })
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
     }
@@ -116,24 +127,28 @@ public class UtilisateurService {
                 .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
         utilisateur.setRole(role);
         utilisateur.setDateModification(LocalDateTime.now());
-        return utilisateurRepository.save(utilisateur);
+        Utilisateur sauvegarde = utilisateurRepository.save(utilisateur);
+        userDetailsService.evict(sauvegarde.getEmail());
+        return sauvegarde;
     }
 
     // Dashboard admin (statistiques)
     public Object getDashboardStats() {
-        long totalUtilisateurs = utilisateurRepository.count();
-        long totalEtudiants = utilisateurRepository.findAllEtudiants().size();
-        long totalEnseignants = utilisateurRepository.findAllEnseignants().size();
-        long totalActifs = utilisateurRepository.findByEstActif(true).size();
-        return java.util.Map.of(
-                "totalUtilisateurs", totalUtilisateurs,
-                "totalEtudiants", totalEtudiants,
-                "totalEnseignants", totalEnseignants,
-                "totalActifs", totalActifs
-        );
+        // Cache court : le tableau de bord admin est rafraîchi souvent, les compteurs bougent peu
+        StatsEnCache cache = statsEnCache;
+        long maintenant = System.currentTimeMillis();
+        if (cache != null && maintenant - cache.calculeA() < statsCacheTtlMs) {
+            return cache.stats();
+        }
+        Map<String, Object> stats = mongoCustomService.statistiquesUtilisateurs();
+        statsEnCache = new StatsEnCache(stats, maintenant);
+        return stats;
     }
 
+    private record StatsEnCache(Map<String, Object> stats, long calculeA) {}
+
     public void deleteUtilisateur(String id) {
+        utilisateurRepository.findById(id).ifPresent(u -> userDetailsService.evict(u.getEmail()));
         utilisateurRepository.deleteById(id);
     }
 
@@ -143,6 +158,7 @@ public class UtilisateurService {
         utilisateur.activerCompte();
         utilisateur.setDateModification(LocalDateTime.now());
         utilisateurRepository.save(utilisateur);
+        userDetailsService.evict(utilisateur.getEmail());
     }
 
     public void deactivateUser(String id) {
@@ -151,5 +167,6 @@ public class UtilisateurService {
         utilisateur.desactiverCompte();
         utilisateur.setDateModification(LocalDateTime.now());
         utilisateurRepository.save(utilisateur);
+        userDetailsService.evict(utilisateur.getEmail());
     }
 }
\ No newline at end of file
@@ -10,7 +10,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -30,6 +29,7 @@ public class VerificationTokenService {
         VerificationToken verificationToken = new VerificationToken();
         verificationToken.setToken(token);
         verificationToken.setUser(user);
+        verificationToken.setTokenType(TokenType.EMAIL_VERIFICATION);
         verificationToken.setExpiryDate(LocalDateTime.now().plusHours(EXPIRATION_HOURS));
         verificationTokenRepository.save(verificationToken);
         return token;
@@ -45,8 +45,8 @@ public class VerificationTokenService {
                 return ReqRes.error("Token de vérification invalide");
             }
 
+            // Expiré mais pas encore supprimé par l'index TTL (passage toutes les 60 s)
             if (verificationToken.getExpiryDate().isBefore(LocalDateTime.now())) {
-                verificationTokenRepository.delete(verificationToken);
                 return ReqRes.error("Le token de vérification a expiré");
             }
 
@@ -107,20 +107,10 @@ public class VerificationTokenService {
     }
 
     public String validatePasswordResetToken(String token) {
-        Optional<VerificationToken> verificationToken = verificationTokenRepository.findByTokenAndTokenType(token, TokenType.PASSWORD_RESET);
-
-        if (verificationToken.isEmpty()) {
-            return null;
-        }
-
-        VerificationToken resetToken = verificationToken.get();
-
-        if (resetToken.getExpiryDate().isBefore(LocalDateTime.now())) {
-            verificationTokenRepository.delete(resetToken);
-            return null;
-        }
-
-        return resetToken.getUser().getEmail();
+        return verificationTokenRepository
+                .findValidTokenByTokenAndTokenType(token, TokenType.PASSWORD_RESET, LocalDateTime.now())
+                .map(resetToken -> resetToken.getUser().getEmail())
+                .orElse(null);
     }
 
     public void invalidatePasswordResetToken(String token) {
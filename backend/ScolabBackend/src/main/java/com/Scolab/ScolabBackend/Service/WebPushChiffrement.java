@@ -0,0 +1,150 @@
+package com.Scolab.ScolabBackend.Service;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+import java.security.spec.ECPublicKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Chiffrement du contenu Web Push (RFC 8291, encodage aes128gcm de la RFC 8188) et manipulation
+ * des clés P-256 au format des navigateurs, avec le seul JDK.
+ */
+final class WebPushChiffrement {
+
+    // Un seul enregistrement : le contenu chiffré (+ délimiteur et tag GCM) doit tenir dans rs octets
+    static final int TAILLE_ENREGISTREMENT = 4096;
+    static final int TAILLE_MAX_CONTENU = TAILLE_ENREGISTREMENT - 16 - 1 - 86;
+
+    private static final SecureRandom ALEATOIRE = new SecureRandom();
+    private static final ECParameterSpec P256 = parametresP256();
+
+    private WebPushChiffrement() {
+    }
+
+    /**
+     * Chiffre {@code contenu} pour l'abonnement (clé publique {@code p256dh} et secret {@code auth} du navigateur).
+     * Retourne le corps complet : en-tête (sel, rs, clé publique éphémère) puis l'enregistrement chiffré.
+     */
+    static byte[] chiffrer(byte[] contenu, byte[] p256dh, byte[] auth) throws GeneralSecurityException {
+        if (contenu.length > TAILLE_MAX_CONTENU) {
+            throw new IllegalArgumentException("Contenu Web Push trop volumineux: " + contenu.length + " octets");
+        }
+        KeyPairGenerator generateur = KeyPairGenerator.getInstance("EC");
+        generateur.initialize(P256, ALEATOIRE);
+        KeyPair ephemere = generateur.generateKeyPair();
+        byte[] sel = new byte[16];
+        ALEATOIRE.nextBytes(sel);
+        return chiffrer(contenu, p256dh, auth, ephemere, sel);
+    }
+
+    static byte[] chiffrer(byte[] contenu, byte[] p256dh, byte[] auth, KeyPair ephemere, byte[] sel)
+            throws GeneralSecurityException {
+        byte[] clePubliqueServeur = encoderClePublique((ECPublicKey) ephemere.getPublic());
+
+        KeyAgreement ecdh = KeyAgreement.getInstance("ECDH");
+        ecdh.init(ephemere.getPrivate());
+        ecdh.doPhase(decoderClePublique(p256dh), true);
+        byte[] secretEcdh = ecdh.generateSecret();
+
+        // IKM = HKDF(auth, secret ECDH, "WebPush: info" || 0 || clé navigateur || clé serveur)
+        byte[] infoCle = concat("WebPush: info\0".getBytes(StandardCharsets.US_ASCII), p256dh, clePubliqueServeur);
+        byte[] ikm = hkdf(auth, secretEcdh, infoCle, 32);
+        byte[] cek = hkdf(sel, ikm, "Content-Encoding: aes128gcm\0".getBytes(StandardCharsets.US_ASCII), 16);
+        byte[] nonce = hkdf(sel, ikm, "Content-Encoding: nonce\0".getBytes(StandardCharsets.US_ASCII), 12);
+
+        Cipher aes = Cipher.getInstance("AES/GCM/NoPadding");
+        aes.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(cek, "AES"), new GCMParameterSpec(128, nonce));
+        // 0x02 : délimiteur du dernier (et unique) enregistrement
+        byte[] chiffre = aes.doFinal(concat(contenu, new byte[]{2}));
+
+        ByteBuffer corps = ByteBuffer.allocate(16 + 4 + 1 + clePubliqueServeur.length + chiffre.length);
+        corps.put(sel).putInt(TAILLE_ENREGISTREMENT).put((byte) clePubliqueServeur.length).put(clePubliqueServeur).put(chiffre);
+        return corps.array();
+    }
+
+    // HKDF-SHA256 (RFC 5869) pour une sortie d'au plus 32 octets : un seul bloc d'expansion
+    static byte[] hkdf(byte[] sel, byte[] ikm, byte[] info, int longueur) throws GeneralSecurityException {
+        byte[] prk = hmac(sel, ikm);
+        return Arrays.copyOf(hmac(prk, concat(info, new byte[]{1})), longueur);
+    }
+
+    static byte[] hmac(byte[] cle, byte[] donnees) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(cle, "HmacSHA256"));
+        return mac.doFinal(donnees);
+    }
+
+    static ECPublicKey decoderClePublique(byte[] nonCompressee) throws GeneralSecurityException {
+        if (nonCompressee.length != 65 || nonCompressee[0] != 4) {
+            throw new GeneralSecurityException("Clé publique P-256 non compressée attendue (65 octets)");
+        }
+        ECPoint point = new ECPoint(new BigInteger(1, Arrays.copyOfRange(nonCompressee, 1, 33)),
+                new BigInteger(1, Arrays.copyOfRange(nonCompressee, 33, 65)));
+        return (ECPublicKey) KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, P256));
+    }
+
+    static ECPrivateKey decoderClePrivee(byte[] brute) throws GeneralSecurityException {
+        return (ECPrivateKey) KeyFactory.getInstance("EC")
+                .generatePrivate(new ECPrivateKeySpec(new BigInteger(1, brute), P256));
+    }
+
+    static byte[] encoderClePublique(ECPublicKey cle) {
+        byte[] encodee = new byte[65];
+        encodee[0] = 4;
+        copierCoordonnee(cle.getW().getAffineX(), encodee, 1);
+        copierCoordonnee(cle.getW().getAffineY(), encodee, 33);
+        return encodee;
+    }
+
+    static byte[] base64Url(String valeur) {
+        return Base64.getUrlDecoder().decode(valeur.trim().replace('+', '-').replace('/', '_').replace("=", ""));
+    }
+
+    static String base64Url(byte[] valeur) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valeur);
+    }
+
+    private static void copierCoordonnee(BigInteger valeur, byte[] cible, int position) {
+        byte[] octets = valeur.toByteArray();
+        int longueur = Math.min(octets.length, 32);
+        System.arraycopy(octets, octets.length - longueur, cible, position + 32 - longueur, longueur);
+    }
+
+    private static byte[] concat(byte[]... parties) {
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        for (byte[] partie : parties) {
+            sortie.writeBytes(partie);
+        }
+        return sortie.toByteArray();
+    }
+
+    private static ECParameterSpec parametresP256() {
+        try {
+            AlgorithmParameters parametres = AlgorithmParameters.getInstance("EC");
+            parametres.init(new ECGenParameterSpec("secp256r1"));
+            return parametres.getParameterSpec(ECParameterSpec.class);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Courbe P-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.Scolab.ScolabBackend.Service;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * POST HTTP/1.1 minimal vers un service push, connecté à une adresse déjà vérifiée : aucune nouvelle
+ * résolution DNS entre la vérification et l'envoi (pas de DNS rebinding). Le nom d'hôte d'origine est
+ * conservé pour le SNI, la vérification du certificat et l'en-tête Host. Une connexion par envoi,
+ * sans redirection : seul le code de statut est lu.
+ */
+final class WebPushConnexion {
+
+    private static final int LIGNE_STATUT_MAX = 8192;
+
+    private WebPushConnexion() {
+    }
+
+    static int post(URI endpoint, InetAddress adresse, Map<String, String> entetes, byte[] corps,
+                    int connexionTimeoutMs, int lectureTimeoutMs) throws IOException {
+        boolean https = "https".equals(endpoint.getScheme());
+        int port = endpoint.getPort() != -1 ? endpoint.getPort() : (https ? 443 : 80);
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(adresse, port), connexionTimeoutMs);
+            socket.setSoTimeout(lectureTimeoutMs);
+            if (https) {
+                // Couche TLS sur la socket déjà connectée : SNI et certificat portent sur l'hôte de l'URL
+                SSLSocket tls = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, endpoint.getHost(), port, true);
+                SSLParameters parametres = tls.getSSLParameters();
+                parametres.setEndpointIdentificationAlgorithm("HTTPS");
+                tls.setSSLParameters(parametres);
+                tls.startHandshake();
+                socket = tls;
+            }
+
+            String chemin = endpoint.getRawPath() == null || endpoint.getRawPath().isEmpty() ? "/" : endpoint.getRawPath();
+            if (endpoint.getRawQuery() != null) {
+                chemin += "?" + endpoint.getRawQuery();
+            }
+            StringBuilder requete = new StringBuilder()
+                    .append("POST ").append(chemin).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(endpoint.getRawAuthority()).append("\r\n");
+            entetes.forEach((nom, valeur) -> requete.append(nom).append(": ").append(valeur).append("\r\n"));
+            requete.append("Content-Length: ").append(corps.length).append("\r\n")
+                    .append("Connection: close\r\n\r\n");
+
+            OutputStream sortie = socket.getOutputStream();
+            sortie.write(requete.toString().getBytes(StandardCharsets.US_ASCII));
+            sortie.write(corps);
+            sortie.flush();
+            return lireStatut(new BufferedInputStream(socket.getInputStream()));
+        } finally {
+            socket.close();
+        }
+    }
+
+    // "HTTP/1.1 201 Created" -> 201
+    private static int lireStatut(InputStream entree) throws IOException {
+        ByteArrayOutputStream ligne = new ByteArrayOutputStream();
+        int octet;
+        while ((octet = entree.read()) != -1 && octet != '\n') {
+            if (ligne.size() >= LIGNE_STATUT_MAX) {
+                throw new IOException("Ligne de statut trop longue");
+            }
+            ligne.write(octet);
+        }
+        String[] parties = ligne.toString(StandardCharsets.US_ASCII).trim().split(" ", 3);
+        if (parties.length < 2 || !parties[0].startsWith("HTTP/")) {
+            throw new IOException("Réponse HTTP invalide");
+        }
+        try {
+            return Integer.parseInt(parties[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Code de statut invalide : " + parties[1]);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.PushSubscription;
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import com.Scolab.ScolabBackend.Repository.PushSubscriptionRepository;
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Jwts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.security.interfaces.ECPrivateKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passerelle Web Push (VAPID, RFC 8292 ; contenu chiffré aes128gcm, RFC 8291) intégrée au backend.
+ * Les abonnements sont stockés par utilisateur ; chaque {@link EvenementNotification} est envoyé à tous
+ * les navigateurs abonnés des destinataires, en parallèle sur le pool borné {@code pushExecutor}.
+ * Un endpoint qui répond 404/410 n'existe plus et son abonnement est supprimé.
+ * L'endpoint étant fourni par le client, seules les URL https vers des adresses publiques sont acceptées,
+ * à l'abonnement puis à chaque envoi ; l'envoi se connecte à l'adresse vérifiée elle-même
+ * ({@link WebPushConnexion}), sans nouvelle résolution DNS qui pourrait pointer ailleurs.
+ * {@code app.push.endpoints-locaux} lève cette restriction pour les tests contre un service push local.
+ */
+@Service
+public class WebPushService {
+
+    private static final Logger log = LoggerFactory.getLogger(WebPushService.class);
+    private static final Duration VALIDITE_JWT = Duration.ofHours(12);
+
+    private final PushSubscriptionRepository subscriptionRepository;
+    private final UtilisateurRepository utilisateurRepository;
+    private final TaskExecutor pushExecutor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int timeoutMs;
+
+    private final String clePublique;
+    private final ECPrivateKey clePrivee;
+    private final String sujet;
+    private final int ttlSecondes;
+    private final boolean endpointsLocaux;
+
+    // En-tête Authorization par origine de service push, réutilisé tant que le JWT n'est pas proche d'expirer
+    private final Map<String, EnteteVapid> entetes = new ConcurrentHashMap<>();
+
+    private final AtomicLong envoyes = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    private final AtomicLong supprimes = new AtomicLong();
+
+    public WebPushService(PushSubscriptionRepository subscriptionRepository,
+                          UtilisateurRepository utilisateurRepository,
+                          @Qualifier("pushExecutor") TaskExecutor pushExecutor,
+                          @Value("${app.push.vapid.public-key:}") String clePublique,
+                          @Value("${app.push.vapid.private-key:}") String clePrivee,
+                          @Value("${app.push.vapid.subject:mailto:contact@scolab.ma}") String sujet,
+                          @Value("${app.push.ttl-secondes:86400}") int ttlSecondes,
+                          @Value("${app.push.timeout-ms:10000}") long timeoutMs,
+                          @Value("${app.push.endpoints-locaux:false}") boolean endpointsLocaux) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.utilisateurRepository = utilisateurRepository;
+        this.pushExecutor = pushExecutor;
+        this.clePublique = clePublique.trim();
+        this.sujet = sujet;
+        this.ttlSecondes = ttlSecondes;
+        this.endpointsLocaux = endpointsLocaux;
+        this.timeoutMs = (int) timeoutMs;
+        ECPrivateKey cle = null;
+        if (!this.clePublique.isEmpty() && !clePrivee.isBlank()) {
+            try {
+                cle = WebPushChiffrement.decoderClePrivee(WebPushChiffrement.base64Url(clePrivee));
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                log.error("Clé privée VAPID invalide, Web Push désactivé : {}", e.getMessage());
+            }
+        }
+        this.clePrivee = cle;
+        if (this.clePrivee == null) {
+            log.info("Web Push désactivé (app.push.vapid.public-key / private-key non configurées)");
+        }
+    }
+
+    public boolean estActif() {
+        return clePrivee != null;
+    }
+
+    public String getClePublique() {
+        return clePublique;
+    }
+
+    /**
+     * Enregistre (ou rattache à l'utilisateur) l'abonnement d'un navigateur.
+     */
+    public PushSubscription abonner(String email, String endpoint, String p256dh, String auth) {
+        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        verifierEndpoint(endpoint);
+        try {
+            if (WebPushChiffrement.base64Url(auth).length != 16) {
+                throw new RuntimeException("Secret auth invalide");
+            }
+            WebPushChiffrement.decoderClePublique(WebPushChiffrement.base64Url(p256dh));
+        } catch (GeneralSecurityException | IllegalArgumentException | NullPointerException e) {
+            throw new RuntimeException("Clés d'abonnement push invalides");
+        }
+
+        PushSubscription abonnement = subscriptionRepository.findByEndpoint(endpoint).orElseGet(PushSubscription::new);
+        abonnement.setEndpoint(endpoint);
+        abonnement.setUtilisateurId(utilisateur.getId());
+        abonnement.setP256dh(p256dh);
+        abonnement.setAuth(auth);
+        if (abonnement.getDateCreation() == null) {
+            abonnement.setDateCreation(LocalDateTime.now());
+        }
+        try {
+            return subscriptionRepository.save(abonnement);
+        } catch (DuplicateKeyException e) {
+            // Même navigateur enregistré en parallèle : l'autre requête a gagné
+            return subscriptionRepository.findByEndpoint(endpoint).orElseThrow(() -> e);
+        }
+    }
+
+    // Seul le propriétaire de l'abonnement peut le supprimer
+    public boolean desabonner(String email, String endpoint) {
+        Utilisateur utilisateur = utilisateurRepository.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé: " + email));
+        return subscriptionRepository.deleteByEndpointAndUtilisateurId(endpoint, utilisateur.getId()) > 0;
+    }
+
+    @EventListener
+    public void notifier(EvenementNotification evenement) {
+        if (!estActif() || evenement.destinataires() == null || evenement.destinataires().isEmpty()) {
+            return;
+        }
+        Map<String, Object> contenu = new LinkedHashMap<>();
+        contenu.put("title", evenement.titre());
+        contenu.put("body", evenement.message());
+        contenu.put("type", evenement.type());
+        if (evenement.donnees() != null) {
+            contenu.put("data", evenement.donnees());
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(contenu);
+        } catch (JsonProcessingException e) {
+            log.error("Sérialisation de la notification push impossible : {}", e.getMessage());
+            return;
+        }
+        envoyer(subscriptionRepository.findByUtilisateurIdIn(evenement.destinataires()), json);
+    }
+
+    /**
+     * Fan-out : une tâche par abonnement sur le pool borné. Retourne immédiatement.
+     */
+    public void envoyer(List<PushSubscription> abonnements, byte[] contenu) {
+        for (PushSubscription abonnement : abonnements) {
+            try {
+                pushExecutor.execute(() -> envoyerA(abonnement, contenu));
+            } catch (TaskRejectedException e) {
+                echecs.incrementAndGet();
+                log.warn("File Web Push pleine, notification non envoyée à {}", abonnement.getEndpoint());
+            }
+        }
+    }
+
+    int envoyerA(PushSubscription abonnement, byte[] contenu) {
+        try {
+            byte[] corps = WebPushChiffrement.chiffrer(contenu,
+                    WebPushChiffrement.base64Url(abonnement.getP256dh()),
+                    WebPushChiffrement.base64Url(abonnement.getAuth()));
+            Destination destination = verifierEndpoint(abonnement.getEndpoint());
+            URI endpoint = destination.uri();
+            Map<String, String> entetesRequete = new LinkedHashMap<>();
+            entetesRequete.put("Authorization", enteteVapid(endpoint));
+            entetesRequete.put("TTL", String.valueOf(ttlSecondes));
+            entetesRequete.put("Content-Encoding", "aes128gcm");
+            entetesRequete.put("Content-Type", "application/octet-stream");
+            entetesRequete.put("Urgency", "normal");
+            // Connexion à l'adresse vérifiée, pas de nouvelle résolution ; pas de redirection suivie
+            int statut = WebPushConnexion.post(endpoint, destination.adresse(), entetesRequete, corps,
+                    timeoutMs, 30_000);
+            if (statut == 404 || statut == 410) {
+                // Abonnement expiré ou révoqué par le navigateur
+                subscriptionRepository.deleteByEndpoint(abonnement.getEndpoint());
+                supprimes.incrementAndGet();
+            } else if (statut >= 200 && statut < 300) {
+                envoyes.incrementAndGet();
+            } else {
+                echecs.incrementAndGet();
+                log.warn("Service push {} a répondu {}", endpoint.getHost(), statut);
+            }
+            return statut;
+        } catch (Exception e) {
+            echecs.incrementAndGet();
+            log.warn("Envoi Web Push vers {} échoué : {}", abonnement.getEndpoint(), e.getMessage());
+            return -1;
+        }
+    }
+
+    public Map<String, Object> statistiques() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("actif", estActif());
+        stats.put("envoyes", envoyes.get());
+        stats.put("echecs", echecs.get());
+        stats.put("abonnementsSupprimes", supprimes.get());
+        return stats;
+    }
+
+    /**
+     * Refuse tout endpoint qui n'est pas une URL https vers un hôte dont toutes les adresses résolues
+     * sont publiques (ni loopback, ni lien local, ni réseau privé) : sinon le serveur servirait de relais
+     * vers le réseau interne. Retourne l'adresse vérifiée, à laquelle l'envoi doit se connecter.
+     */
+    Destination verifierEndpoint(String endpoint) {
+        URI uri;
+        try {
+            uri = endpoint == null ? null : new URI(endpoint);
+        } catch (URISyntaxException e) {
+            uri = null;
+        }
+        if (uri == null || uri.getHost() == null || uri.getRawUserInfo() != null
+                || !("https".equals(uri.getScheme()) || endpointsLocaux && "http".equals(uri.getScheme()))) {
+            throw new RuntimeException("Endpoint push invalide");
+        }
+        InetAddress[] adresses;
+        try {
+            adresses = InetAddress.getAllByName(uri.getHost());
+        } catch (UnknownHostException e) {
+            throw new RuntimeException("Endpoint push invalide : hôte inconnu");
+        }
+        if (!endpointsLocaux) {
+            for (InetAddress adresse : adresses) {
+                if (!estPublique(adresse)) {
+                    throw new RuntimeException("Endpoint push invalide : adresse non publique");
+                }
+            }
+        }
+        return new Destination(uri, adresses[0]);
+    }
+
+    static boolean estPublique(InetAddress adresse) {
+        if (adresse.isAnyLocalAddress() || adresse.isLoopbackAddress() || adresse.isLinkLocalAddress()
+                || adresse.isSiteLocalAddress() || adresse.isMulticastAddress()) {
+            return false;
+        }
+        byte[] octets = adresse.getAddress();
+        if (adresse instanceof Inet4Address) {
+            int a = octets[0] & 0xff;
+            int b = octets[1] & 0xff;
+            // 0/8, 100.64/10 (CGNAT), 192.0.0/24, 198.18/15 (bancs de test), 240/4 (réservé)
+            return a != 0 && !(a == 100 && b >= 64 && b < 128) && !(a == 192 && b == 0 && (octets[2] & 0xff) == 0)
+                    && !(a == 198 && (b == 18 || b == 19)) && a < 240;
+        }
+        // IPv6 : adresses uniques locales fc00::/7
+        return (octets[0] & 0xfe) != 0xfc;
+    }
+
+    // JWT VAPID signé ES256 : audience = origine du service push (scheme://host[:port])
+    private String enteteVapid(URI endpoint) {
+        String audience = endpoint.getScheme() + "://" + endpoint.getRawAuthority();
+        Instant maintenant = Instant.now();
+        EnteteVapid entete = entetes.get(audience);
+        if (entete == null || entete.expiration().isBefore(maintenant.plus(Duration.ofHours(1)))) {
+            Instant expiration = maintenant.plus(VALIDITE_JWT);
+            String jwt = Jwts.builder()
+                    .header().add("typ", "JWT").and()
+                    .audience().add(audience).and()
+                    .subject(sujet)
+                    .expiration(Date.from(expiration))
+                    .signWith(clePrivee, Jwts.SIG.ES256)
+                    .compact();
+            entete = new EnteteVapid("vapid t=" + jwt + ", k=" + clePublique, expiration);
+            entetes.put(audience, entete);
+        }
+        return entete.valeur();
+    }
+
+    private record EnteteVapid(String valeur, Instant expiration) {
+    }
+
+    record Destination(URI uri, InetAddress adresse) {
+    }
+}
@@ -0,0 +1,106 @@
+package com.Scolab.ScolabBackend.Config;
+
+import com.Scolab.ScolabBackend.MongoDeTest;
+import com.Scolab.ScolabBackend.Service.BailService;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Migration complète contre un mongod réel (voir {@link MongoDeTest}) : bail, purge de l'arriéré, index TTL.
+ */
+class MigrationTokensExpiresTest {
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    private MongoCollection<Document> tokens;
+
+    @BeforeAll
+    static void connecter() {
+        client = MongoDeTest.client();
+        mongoTemplate = new MongoTemplate(client, "scolab_test_migration");
+    }
+
+    @AfterAll
+    static void nettoyer() {
+        if (client != null) {
+            client.getDatabase("scolab_test_migration").drop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getCollection("baux_jobs").drop();
+        mongoTemplate.getCollection(MigrationTokensExpires.COLLECTION).drop();
+        tokens = mongoTemplate.getCollection(MigrationTokensExpires.COLLECTION);
+        long maintenant = System.currentTimeMillis();
+        for (int i = 0; i < 7; i++) {
+            tokens.insertOne(new Document("token", "expire-" + i).append("expiry_date", new Date(maintenant - 60_000)));
+        }
+        tokens.insertOne(new Document("token", "valide").append("expiry_date", new Date(maintenant + 3_600_000)));
+    }
+
+    @Test
+    void migrer_sousBail_purgeLArriereEtCreeLIndexTtl() {
+        MigrationTokensExpires migration = new MigrationTokensExpires(mongoTemplate,
+                new BailService(mongoTemplate, "noeud-a"), 3, 0, 6);
+
+        assertTrue(migration.migrer());
+
+        assertEquals(1, tokens.countDocuments());
+        assertEquals(0L, indexTtl().getExpireAfter().orElseThrow().toSeconds());
+        // Bail rendu, index en place : un autre nœud n'a plus rien à faire
+        assertTrue(new MigrationTokensExpires(mongoTemplate, new BailService(mongoTemplate, "noeud-b"), 3, 0, 6).migrer());
+    }
+
+    @Test
+    void migrer_bailDetenuAilleurs_attendPuisForceSansBail() {
+        BailService autreNoeud = new BailService(mongoTemplate, "noeud-fige");
+        assertTrue(autreNoeud.acquerir("migration-tokens-ttl", Duration.ofHours(1)).isPresent());
+        MigrationTokensExpires migration = new MigrationTokensExpires(mongoTemplate,
+                new BailService(mongoTemplate, "noeud-a"), 3, 0, 2);
+
+        assertFalse(migration.migrer());
+        assertFalse(migration.migrer());
+        assertEquals(8, tokens.countDocuments());
+
+        assertTrue(migration.migrer());
+        assertEquals(1, tokens.countDocuments());
+        assertNotNull(indexTtl());
+    }
+
+    @Test
+    void migrer_bailEnErreur_forceSansBail() {
+        BailService enPanne = mock(BailService.class);
+        when(enPanne.acquerir(anyString(), any(Duration.class))).thenReturn(Optional.empty());
+        MigrationTokensExpires migration = new MigrationTokensExpires(mongoTemplate, enPanne, 3, 0, 1);
+
+        assertFalse(migration.migrer());
+        assertTrue(migration.migrer());
+        assertNotNull(indexTtl());
+        verify(enPanne, never()).liberer(anyString());
+    }
+
+    private IndexInfo indexTtl() {
+        return mongoTemplate.indexOps(MigrationTokensExpires.COLLECTION).getIndexInfo().stream()
+                .filter(i -> MigrationTokensExpires.INDEX_TTL.equals(i.getName()))
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,66 @@
+package com.Scolab.ScolabBackend.Config;
+
+import com.Scolab.ScolabBackend.Service.JWTUtils;
+import com.Scolab.ScolabBackend.Service.MessagerieService;
+import com.Scolab.ScolabBackend.Service.UserDetailsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class StompAuthInterceptorTest {
+
+    private static final String CONVERSATION = "65a1b2c3d4e5f60718293a4b";
+
+    private final MessagerieService messagerieService = mock(MessagerieService.class);
+    private final StompAuthInterceptor interceptor;
+
+    @SuppressWarnings("unchecked")
+    StompAuthInterceptorTest() {
+        ObjectProvider<MessagerieService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(messagerieService);
+        interceptor = new StompAuthInterceptor(mock(JWTUtils.class), mock(UserDetailsService.class), provider);
+        when(messagerieService.estParticipant(anyString(), anyString())).thenReturn(false);
+        when(messagerieService.estParticipant(CONVERSATION, "etu@scolab.ma")).thenReturn(true);
+    }
+
+    @Test
+    void subscribe_seulesLesDestinationsExactesAutorisees() {
+        assertDoesNotThrow(() -> envoyer(StompCommand.SUBSCRIBE, "/topic/conversations/" + CONVERSATION));
+        assertDoesNotThrow(() -> envoyer(StompCommand.SUBSCRIBE, "/user/queue/erreurs"));
+
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/topic/**"));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/topic/*/" + CONVERSATION));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/topic/conversations/{id}"));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/topic/conversations/65a1b2c3d4e5f60718293a4?"));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/topic/conversations/65a1b2c3d4e5f60718293a4c"));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SUBSCRIBE, "/queue/autre"));
+    }
+
+    @Test
+    void send_uniquementVersApp() {
+        assertDoesNotThrow(() -> envoyer(StompCommand.SEND, "/app/conversations/" + CONVERSATION + "/envoyer"));
+
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SEND, "/user/autre@scolab.ma/queue/erreurs"));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SEND, "/topic/conversations/" + CONVERSATION));
+        assertThrows(MessageDeliveryException.class, () -> envoyer(StompCommand.SEND, "/queue/erreurs"));
+    }
+
+    private void envoyer(StompCommand commande, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(commande);
+        accessor.setDestination(destination);
+        accessor.setUser(new UsernamePasswordAuthenticationToken("etu@scolab.ma", null));
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        interceptor.preSend(message, mock(MessageChannel.class));
+    }
+}
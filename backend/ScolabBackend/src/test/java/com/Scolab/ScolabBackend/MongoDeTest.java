@@ -0,0 +1,52 @@
+package com.Scolab.ScolabBackend;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * mongod réel des tests d'intégration, partagé par toute la JVM de test : celui de {@code -Dtest.mongo.uri}
+ * s'il est fourni, sinon un conteneur mongo:7.0 (Testcontainers) quand Docker est là, sinon un mongod local
+ * sur le port 27017. Sans aucun des trois, les tests qui en dépendent sont ignorés.
+ */
+public final class MongoDeTest {
+
+    private static final String LOCAL = "mongodb://localhost:27017/?serverSelectionTimeoutMS=1000&connectTimeoutMS=1000";
+
+    private static MongoClient client;
+    private static boolean tente;
+
+    private MongoDeTest() {
+    }
+
+    public static synchronized MongoClient client() {
+        if (!tente) {
+            tente = true;
+            client = connecter();
+        }
+        assumeTrue(client != null, "aucun mongod disponible (-Dtest.mongo.uri, Docker ou localhost:27017)");
+        return client;
+    }
+
+    private static MongoClient connecter() {
+        String uri = System.getProperty("test.mongo.uri");
+        if (uri == null && DockerClientFactory.instance().isDockerAvailable()) {
+            // Arrêté par Testcontainers à la fin de la JVM
+            MongoDBContainer conteneur = new MongoDBContainer(DockerImageName.parse("mongo:7.0"));
+            conteneur.start();
+            uri = conteneur.getReplicaSetUrl();
+        }
+        try {
+            MongoClient candidat = MongoClients.create(uri != null ? uri : LOCAL);
+            candidat.getDatabase("admin").runCommand(new Document("ping", 1));
+            return candidat;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Forme des requêtes d'acquisition, vérifiable sans mongod : Mongo refuse $expr dans le filtre d'un upsert,
+ * le comportement réel est couvert par {@link BailServiceTest}.
+ */
+class BailServiceRequetesTest {
+
+    private MongoCollection<Document> collection;
+    private BailService bailService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        collection = mock(MongoCollection.class);
+        when(mongoTemplate.getCollection("baux_jobs")).thenReturn(collection);
+        bailService = new BailService(mongoTemplate, "noeud-a");
+    }
+
+    @Test
+    void acquerir_documentAbsent_creeSansExprDansLUpsert() {
+        when(collection.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(null)
+                .thenReturn(new Document("_id", "job").append("proprietaire", "noeud-a").append("jeton", 1L));
+
+        assertTrue(bailService.acquerir("job", Duration.ofSeconds(30)).orElseThrow().nouveau());
+
+        ArgumentCaptor<Bson> filtres = ArgumentCaptor.forClass(Bson.class);
+        ArgumentCaptor<FindOneAndUpdateOptions> options = ArgumentCaptor.forClass(FindOneAndUpdateOptions.class);
+        verify(collection, times(2)).findOneAndUpdate(filtres.capture(), anyList(), options.capture());
+        for (int i = 0; i < 2; i++) {
+            boolean avecExpr = filtres.getAllValues().get(i).toBsonDocument().toJson().contains("$expr");
+            assertFalse(avecExpr && options.getAllValues().get(i).isUpsert());
+        }
+        assertFalse(options.getAllValues().get(0).isUpsert());
+        assertTrue(options.getAllValues().get(1).isUpsert());
+    }
+
+    @Test
+    void acquerir_cleDupliqueeALaCreation_refusSansErreur() {
+        when(collection.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(null)
+                .thenThrow(new MongoWriteException(new WriteError(11000, "E11000 duplicate key", new BsonDocument()),
+                        new ServerAddress()));
+
+        assertTrue(bailService.acquerir("job", Duration.ofSeconds(30)).isEmpty());
+        Map<?, ?> stats = (Map<?, ?>) ((Map<?, ?>) bailService.statistiques().get("jobs")).get("job");
+        assertEquals(1L, stats.get("refus"));
+        assertEquals(0L, stats.get("erreurs"));
+    }
+
+    @Test
+    void acquerir_bailRenouvele_pasDeCreation() {
+        when(collection.findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(new Document("_id", "job").append("proprietaire", "noeud-a").append("jeton", 3L));
+
+        assertEquals(3L, bailService.acquerir("job", Duration.ofSeconds(30)).orElseThrow().valeur());
+        verify(collection, times(1)).findOneAndUpdate(any(Bson.class), anyList(), any(FindOneAndUpdateOptions.class));
+    }
+}
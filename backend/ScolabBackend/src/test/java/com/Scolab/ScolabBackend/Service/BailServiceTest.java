@@ -0,0 +1,135 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.MongoDeTest;
+import com.mongodb.client.MongoClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Deux nœuds (deux BailService d'identités différentes) contre le même mongod réel (voir {@link MongoDeTest}).
+ */
+class BailServiceTest {
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    private BailService noeudA;
+    private BailService noeudB;
+
+    @BeforeAll
+    static void connecter() {
+        client = MongoDeTest.client();
+        mongoTemplate = new MongoTemplate(client, "scolab_test_baux");
+    }
+
+    @AfterAll
+    static void nettoyer() {
+        if (client != null) {
+            client.getDatabase("scolab_test_baux").drop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.getCollection("baux_jobs").drop();
+        noeudA = new BailService(mongoTemplate, "noeud-a");
+        noeudB = new BailService(mongoTemplate, "noeud-b");
+    }
+
+    @Test
+    void acquerir_unSeulProprietaireEtRenouvellementSansChangerDeJeton() {
+        Optional<BailService.Jeton> a = noeudA.acquerir("job", Duration.ofSeconds(30));
+        assertTrue(a.isPresent());
+        assertTrue(a.get().nouveau());
+        assertEquals(1L, a.get().valeur());
+
+        assertTrue(noeudB.acquerir("job", Duration.ofSeconds(30)).isEmpty());
+
+        Optional<BailService.Jeton> renouvele = noeudA.acquerir("job", Duration.ofSeconds(30));
+        assertTrue(renouvele.isPresent());
+        assertFalse(renouvele.get().nouveau());
+        assertEquals(1L, renouvele.get().valeur());
+        assertTrue(noeudA.estValide(renouvele.get()));
+    }
+
+    @Test
+    void acquerir_premierBailEnConcurrence_unSeulGagnant() throws Exception {
+        List<Callable<Optional<BailService.Jeton>>> appels = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            BailService noeud = new BailService(mongoTemplate, "noeud-" + i);
+            appels.add(() -> noeud.acquerir("job", Duration.ofSeconds(30)));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(appels.size());
+        try {
+            int gagnants = 0;
+            for (Future<Optional<BailService.Jeton>> resultat : pool.invokeAll(appels)) {
+                if (resultat.get().isPresent()) {
+                    gagnants++;
+                    assertEquals(1L, resultat.get().get().valeur());
+                }
+            }
+            assertEquals(1, gagnants);
+        } finally {
+            pool.shutdownNow();
+        }
+        // Refusé par un bail tenu, pas en erreur
+        noeudA.acquerir("job", Duration.ofSeconds(30));
+        assertEquals(0L, ((java.util.Map<?, ?>) ((java.util.Map<?, ?>) noeudA.statistiques().get("jobs")).get("job")).get("erreurs"));
+    }
+
+    @Test
+    void acquerir_repriseApresExpirationAvecJetonSuperieur() throws InterruptedException {
+        BailService.Jeton ancien = noeudA.acquerir("job", Duration.ofMillis(200)).orElseThrow();
+        Thread.sleep(400);
+
+        BailService.Jeton repris = noeudB.acquerir("job", Duration.ofSeconds(30)).orElseThrow();
+        assertTrue(repris.nouveau());
+        assertTrue(repris.valeur() > ancien.valeur());
+
+        // Le nœud figé se réveille : son jeton est périmé et il ne récupère pas le bail
+        assertFalse(noeudA.estValide(ancien));
+        assertTrue(noeudA.acquerir("job", Duration.ofSeconds(30)).isEmpty());
+        assertEquals(1L, ((java.util.Map<?, ?>) ((java.util.Map<?, ?>) noeudA.statistiques().get("jobs")).get("job")).get("pertes"));
+    }
+
+    @Test
+    void liberer_permetUneRepriseImmediate() {
+        noeudA.acquerir("job", Duration.ofMinutes(10)).orElseThrow();
+        noeudA.liberer("job");
+
+        Optional<BailService.Jeton> b = noeudB.acquerir("job", Duration.ofMinutes(10));
+        assertTrue(b.isPresent());
+        assertEquals(2L, b.get().valeur());
+    }
+
+    @Test
+    void avancerFiligrane_reserveAuDetenteurEtJamaisEnArriere() {
+        BailService.Jeton a = noeudA.acquerir("job", Duration.ofMinutes(10)).orElseThrow();
+        assertTrue(noeudA.filigrane("job").isEmpty());
+
+        assertTrue(noeudA.avancerFiligrane(a, 2_000L));
+        assertTrue(noeudA.avancerFiligrane(a, 1_000L));
+        assertEquals(Optional.of(2_000L), noeudB.filigrane("job"));
+
+        // Un ancien détenteur ne peut plus écrire une fois le bail repris
+        noeudA.liberer("job");
+        BailService.Jeton b = noeudB.acquerir("job", Duration.ofMinutes(10)).orElseThrow();
+        assertFalse(noeudA.avancerFiligrane(a, 9_000L));
+        assertTrue(noeudB.avancerFiligrane(b, 3_000L));
+        assertEquals(Optional.of(3_000L), noeudA.filigrane("job"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.Scolab.ScolabBackend.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EcheanceRoueTest {
+
+    @Test
+    void avancer_rendChaqueEntreeDansLeTickDeSonEcheanceQuelQueSoitLeNiveau() {
+        // 4 cases de 10 ms, 3 de 40 ms : au-delà de 120 ms les entrées passent par le débordement
+        EcheanceRoue<Long> roue = new EcheanceRoue<>(10, 0, 4, 3);
+        Random aleatoire = new Random(42);
+        Map<Long, Long> echeances = new HashMap<>();
+        for (long i = 0; i < 500; i++) {
+            long echeance = 1 + aleatoire.nextInt(1000);
+            echeances.put(i, echeance);
+            roue.planifier("e" + i, echeance, i);
+        }
+
+        for (long maintenant = 10; maintenant <= 1010; maintenant += 10) {
+            for (Long id : roue.avancer(maintenant)) {
+                long echeance = echeances.remove(id);
+                assertTrue(echeance <= maintenant && maintenant < echeance + 10,
+                        "échéance " + echeance + " rendue à " + maintenant);
+            }
+        }
+        assertTrue(echeances.isEmpty());
+        assertEquals(0, roue.taille());
+    }
+
+    @Test
+    void annuler_etReplanifierNeRendQueLaDerniereVersion() {
+        EcheanceRoue<String> roue = new EcheanceRoue<>(10, 0, 4, 3);
+        roue.planifier("projet", 50, "ancienne");
+        roue.planifier("projet", 200, "nouvelle");
+        roue.planifier("tache", 30, "tache");
+        assertTrue(roue.annuler("tache"));
+
+        assertEquals(List.of(), roue.avancer(190));
+        assertEquals(List.of("nouvelle"), roue.avancer(200));
+        assertFalse(roue.annuler("projet"));
+    }
+
+    @Test
+    void avancer_apresUnLongSautRendToutCeQuiEstEchu() {
+        EcheanceRoue<String> roue = new EcheanceRoue<>(10, 0, 4, 3);
+        roue.planifier("a", 35, "a");
+        roue.planifier("b", 5000, "b");
+        roue.planifier("c", 9000, "c");
+
+        assertEquals(List.of("a", "b"), roue.avancer(6000));
+        assertEquals(List.of(), roue.avancer(8990));
+        assertEquals(List.of("c"), roue.avancer(9000));
+    }
+}
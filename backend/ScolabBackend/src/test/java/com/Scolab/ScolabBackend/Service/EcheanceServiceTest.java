@@ -0,0 +1,131 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Dto.Echeance;
+import com.Scolab.ScolabBackend.Entity.EcheanceModifiee;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EcheanceServiceTest {
+
+    private static final long TICK_MS = 20;
+
+    private MongoCustomService mongoCustomService;
+    private ApplicationEventPublisher eventPublisher;
+    private BailService bailService;
+    private EcheanceService echeanceService;
+
+    @BeforeEach
+    void setUp() {
+        mongoCustomService = mock(MongoCustomService.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        bailService = mock(BailService.class);
+        when(bailService.estValide(any())).thenReturn(true);
+        when(bailService.getNoeud()).thenReturn("noeud-a");
+        echeanceService = new EcheanceService(mongoCustomService, eventPublisher, bailService, "72h,24h", TICK_MS);
+    }
+
+    @Test
+    void avancer_repriseDuBailRejoueLesRappelsEchusDepuisLeFiligrane() throws InterruptedException {
+        // Rappel 24h échu il y a une heure, pendant la bascule ; rappel 72h parti bien avant le filigrane
+        LocalDateTime fin = LocalDateTime.now().plusHours(23);
+        when(mongoCustomService.echeancesAVenir(any()))
+                .thenReturn(List.of(new Echeance(Echeance.PROJET, "p1", "p1", "Projet", fin)));
+        when(mongoCustomService.destinatairesEcheances(eq("p1"), eq(true), any(), any()))
+                .thenReturn(Map.of("p1", Set.of("e1")));
+        when(bailService.filigrane(EcheanceService.JOB))
+                .thenReturn(Optional.of(System.currentTimeMillis() - Duration.ofHours(2).toMillis()));
+        BailService.Jeton repris = new BailService.Jeton(EcheanceService.JOB, 2, true);
+        BailService.Jeton renouvele = new BailService.Jeton(EcheanceService.JOB, 2, false);
+        when(bailService.acquerir(eq(EcheanceService.JOB), any())).thenReturn(Optional.of(repris), Optional.of(renouvele));
+
+        echeanceService.avancer();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(bailService, never()).avancerFiligrane(any(), anyLong());
+
+        Thread.sleep(TICK_MS * 3);
+        echeanceService.avancer();
+
+        ArgumentCaptor<Object> evenement = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher).publishEvent(evenement.capture());
+        EvenementNotification notification = (EvenementNotification) evenement.getValue();
+        assertEquals(Set.of("e1"), notification.destinataires());
+        assertTrue(notification.message().contains("dans 24 h"));
+        verify(bailService).avancerFiligrane(eq(renouvele), anyLong());
+    }
+
+    @Test
+    void avancer_sansFiligraneAucunRattrapage() throws InterruptedException {
+        when(mongoCustomService.echeancesAVenir(any()))
+                .thenReturn(List.of(new Echeance(Echeance.PROJET, "p1", "p1", "Projet", LocalDateTime.now().plusHours(23))));
+        when(bailService.filigrane(EcheanceService.JOB)).thenReturn(Optional.empty());
+        when(bailService.acquerir(eq(EcheanceService.JOB), any())).thenReturn(
+                Optional.of(new BailService.Jeton(EcheanceService.JOB, 1, true)),
+                Optional.of(new BailService.Jeton(EcheanceService.JOB, 1, false)));
+
+        echeanceService.avancer();
+        Thread.sleep(TICK_MS * 3);
+        echeanceService.avancer();
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void avancer_detenteurAppliqueLeJournalDesAutresNoeudsSansRescan() throws InterruptedException {
+        when(mongoCustomService.echeancesAVenir(any())).thenReturn(List.of());
+        when(bailService.filigrane(EcheanceService.JOB)).thenReturn(Optional.empty());
+        when(bailService.acquerir(eq(EcheanceService.JOB), any())).thenReturn(
+                Optional.of(new BailService.Jeton(EcheanceService.JOB, 1, true)),
+                Optional.of(new BailService.Jeton(EcheanceService.JOB, 1, false)));
+        echeanceService.avancer();
+
+        // Tâche créée sur un autre nœud, rappel 24h imminent ; l'entrée du nœud courant est ignorée
+        LocalDateTime echeance = LocalDateTime.now().plusHours(24).plusNanos(TICK_MS * 5_000_000);
+        when(mongoCustomService.echeancesModifiees(any())).thenReturn(List.of(
+                modification(Echeance.TACHE, "t1", "noeud-b"),
+                modification(Echeance.TACHE, "t2", "noeud-a")));
+        when(mongoCustomService.echeance(eq(Echeance.TACHE), eq("t1"), any()))
+                .thenReturn(Optional.of(new Echeance(Echeance.TACHE, "t1", "p1", "Rapport", echeance)));
+        when(mongoCustomService.destinatairesEcheances(eq("p1"), eq(false), any(), any()))
+                .thenReturn(Map.of("t1", Set.of("e1")));
+        echeanceService.avancer();
+
+        Thread.sleep(TICK_MS * 8);
+        echeanceService.avancer();
+
+        verify(eventPublisher).publishEvent(any(EvenementNotification.class));
+        verify(mongoCustomService, never()).echeance(eq(Echeance.TACHE), eq("t2"), any());
+        // Entrée déjà appliquée, relue dans la marge : pas de seconde lecture
+        verify(mongoCustomService, times(1)).echeance(eq(Echeance.TACHE), eq("t1"), any());
+        verify(mongoCustomService, times(1)).echeancesAVenir(any());
+    }
+
+    @Test
+    void annuler_journaliseLaModificationPourLeDetenteur() {
+        echeanceService.annuler(Echeance.LIVRABLE, "l1");
+
+        verify(mongoCustomService).journaliserEcheance(Echeance.LIVRABLE, "l1", "noeud-a");
+    }
+
+    private static EcheanceModifiee modification(String type, String id, String noeud) {
+        EcheanceModifiee modification = new EcheanceModifiee();
+        modification.setId(new ObjectId());
+        modification.setType(type);
+        modification.setEcheanceId(id);
+        modification.setNoeud(noeud);
+        return modification;
+    }
+}
@@ -0,0 +1,226 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.EmailOutbox;
+import com.Scolab.ScolabBackend.Entity.StatutEmail;
+import com.Scolab.ScolabBackend.Repository.EmailOutboxRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxServiceTest {
+
+    private EmailOutboxRepository emailOutboxRepository;
+    private MongoTemplate mongoTemplate;
+    private JavaMailSenderImpl mailSender;
+    private ServeurSmtpLocal smtp;
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        emailOutboxRepository = mock(EmailOutboxRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        smtp = new ServeurSmtpLocal();
+
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.port());
+
+        emailOutboxService = new EmailOutboxService(emailOutboxRepository, mongoTemplate, mailSender, mock(ThreadPoolTaskExecutor.class));
+        ReflectionTestUtils.setField(emailOutboxService, "fromEmail", "noreply@scolab.tn");
+        ReflectionTestUtils.setField(emailOutboxService, "maxTentatives", 3);
+        ReflectionTestUtils.setField(emailOutboxService, "backoffInitialMs", 1000L);
+        ReflectionTestUtils.setField(emailOutboxService, "backoffMaxMs", 60000L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        smtp.close();
+    }
+
+    @Test
+    void envoyer_livreAuServeurSmtpEtMarqueEnvoye() {
+        emailOutboxService.envoyer(job(1));
+
+        assertEquals(1, smtp.messages().size());
+        assertTrue(smtp.messages().get(0).contains("To: etudiant@scolab.tn"));
+        assertTrue(smtp.messages().get(0).contains("Bienvenue"));
+        assertEquals(StatutEmail.ENVOYE, statutEnregistre());
+    }
+
+    @Test
+    void envoyer_serveurInjoignable_replanifieAvecBackoff() throws IOException {
+        smtp.close();
+
+        emailOutboxService.envoyer(job(1));
+
+        Document set = setEnregistre();
+        assertEquals(StatutEmail.EN_ATTENTE, set.get("statut"));
+        assertNotNull(set.get("prochainEssai"));
+    }
+
+    @Test
+    void envoyer_tentativesEpuisees_passeEnEchec() throws IOException {
+        smtp.close();
+
+        emailOutboxService.envoyer(job(3));
+
+        assertEquals(StatutEmail.ECHEC, statutEnregistre());
+        assertNull(setEnregistre().get("prochainEssai"));
+    }
+
+    @Test
+    void envoyer_serveurSmtpBloque_echoueAvantLExpirationDuVerrou() throws IOException {
+        // Accepte la connexion sans jamais répondre : sans délai, le worker attendrait indéfiniment
+        try (ServerSocket muet = new ServerSocket(0)) {
+            mailSender.setPort(muet.getLocalPort());
+            ReflectionTestUtils.setField(emailOutboxService, "verrouMs", 4000L);
+            emailOutboxService.bornerDelaisSmtp();
+
+            long debut = System.currentTimeMillis();
+            emailOutboxService.envoyer(job(1));
+
+            assertTrue(System.currentTimeMillis() - debut < 4000L);
+            assertEquals(StatutEmail.EN_ATTENTE, statutEnregistre());
+        }
+    }
+
+    @Test
+    void envoyer_resultatEcritSeulementSousLeVerrouDeLaReservation() {
+        EmailOutbox job = job(1);
+        job.setVerrouilleJusqua(LocalDateTime.of(2026, 1, 1, 10, 0));
+
+        emailOutboxService.envoyer(job);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(EmailOutbox.class));
+        assertTrue(query.getValue().getQueryObject().containsKey("verrouilleJusqua"));
+        assertNotNull(setEnregistre().get("dateFin"));
+    }
+
+    @Test
+    void enfiler_cleDejaPresente_ignoree() {
+        when(emailOutboxRepository.insert(any(EmailOutbox.class)))
+                .thenReturn(new EmailOutbox())
+                .thenThrow(new DuplicateKeyException("cle_idempotence"));
+
+        assertTrue(emailOutboxService.enfiler("verification:t1:a@scolab.tn", "a@scolab.tn", "Sujet", "<p>x</p>"));
+        assertFalse(emailOutboxService.enfiler("verification:t1:a@scolab.tn", "a@scolab.tn", "Sujet", "<p>x</p>"));
+    }
+
+    @Test
+    void delaiAvantNouvelEssai_exponentielEtPlafonne() {
+        assertEquals(1000L, EmailOutboxService.delaiAvantNouvelEssai(1, 1000L, 60000L));
+        assertEquals(4000L, EmailOutboxService.delaiAvantNouvelEssai(3, 1000L, 60000L));
+        assertEquals(60000L, EmailOutboxService.delaiAvantNouvelEssai(40, 1000L, 60000L));
+    }
+
+    private EmailOutbox job(int tentatives) {
+        EmailOutbox job = new EmailOutbox();
+        job.setId("job-1");
+        job.setDestinataire("etudiant@scolab.tn");
+        job.setSujet("Bienvenue");
+        job.setContenuHtml("<p>Bonjour</p>");
+        job.setStatut(StatutEmail.EN_COURS);
+        job.setTentatives(tentatives);
+        return job;
+    }
+
+    private Document setEnregistre() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(EmailOutbox.class));
+        return (Document) update.getValue().getUpdateObject().get("$set");
+    }
+
+    private StatutEmail statutEnregistre() {
+        return (StatutEmail) setEnregistre().get("statut");
+    }
+
+    // Serveur SMTP minimal en mémoire : accepte tout et conserve le contenu DATA reçu
+    private static class ServeurSmtpLocal implements AutoCloseable {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        ServeurSmtpLocal() throws IOException {
+            Thread thread = new Thread(this::accepter, "smtp-test");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        List<String> messages() {
+            return messages;
+        }
+
+        private void accepter() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    dialoguer(socket);
+                } catch (IOException e) {
+                    // socket fermée à la fin du test
+                }
+            }
+        }
+
+        private void dialoguer(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            repondre(out, "220 localhost");
+            String ligne;
+            while ((ligne = in.readLine()) != null) {
+                String commande = ligne.toUpperCase();
+                if (commande.startsWith("DATA")) {
+                    repondre(out, "354 fin avec <CRLF>.<CRLF>");
+                    StringBuilder contenu = new StringBuilder();
+                    while ((ligne = in.readLine()) != null && !ligne.equals(".")) {
+                        contenu.append(ligne).append('\n');
+                    }
+                    messages.add(contenu.toString());
+                    repondre(out, "250 OK");
+                } else if (commande.startsWith("QUIT")) {
+                    repondre(out, "221 bye");
+                    return;
+                } else {
+                    repondre(out, "250 OK");
+                }
+            }
+        }
+
+        private void repondre(OutputStream out, String reponse) throws IOException {
+            out.write((reponse + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Config.ThymeleafConfig;
+import com.Scolab.ScolabBackend.Entity.Etudiant;
+import com.Scolab.ScolabBackend.Entity.Projet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class EmailServiceTest {
+
+    private EmailOutboxService emailOutboxService;
+    private EmailService emailService;
+    private Projet projet;
+
+    @BeforeEach
+    void setUp() {
+        emailOutboxService = mock(EmailOutboxService.class);
+        emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "emailOutboxService", emailOutboxService);
+        ReflectionTestUtils.setField(emailService, "templateEngine", new ThymeleafConfig().templateEngine());
+
+        projet = new Projet();
+        projet.setId("p1");
+        projet.setNom("Compilateur");
+        projet.setDateDebut(LocalDateTime.of(2026, 1, 5, 8, 0));
+        projet.setDateFin(LocalDateTime.of(2026, 6, 5, 8, 0));
+    }
+
+    @Test
+    void sendProjectCreatedEmails_memeHtmlQueLEnvoiIndividuel() {
+        Etudiant etu = new Etudiant();
+        etu.setEmail("eleve@scolab.tn");
+        etu.setNom("Ben <Salah> & fils");
+        etu.setPrenom("Hélène \"L'aînée\"");
+
+        emailService.sendProjectCreatedEmail(etu.getEmail(), etu.getNom(), etu.getPrenom(), projet);
+        emailService.sendProjectCreatedEmails(List.of(etu), projet);
+
+        ArgumentCaptor<String> html = ArgumentCaptor.forClass(String.class);
+        verify(emailOutboxService, times(2)).enfiler(eq("projet-cree:p1:eleve@scolab.tn"), eq("eleve@scolab.tn"), anyString(), html.capture());
+        assertEquals(html.getAllValues().get(0), html.getAllValues().get(1));
+        assertTrue(html.getValue().contains("Ben &lt;Salah&gt; &amp; fils"));
+        assertFalse(html.getValue().contains("__SCOLAB_"));
+    }
+
+    @Test
+    void sendProjectDeadlineEmails_cleParEvenementEtNonParJour() {
+        Etudiant etu = new Etudiant();
+        etu.setEmail("eleve@scolab.tn");
+
+        emailService.sendProjectDeadlineEmails("e1", List.of(etu), projet);
+        emailService.sendProjectDeadlineEmails("e2", List.of(etu), projet);
+
+        verify(emailOutboxService).enfiler(eq("projet-echeance:e1:eleve@scolab.tn"), eq("eleve@scolab.tn"), anyString(), anyString());
+        verify(emailOutboxService).enfiler(eq("projet-echeance:e2:eleve@scolab.tn"), eq("eleve@scolab.tn"), anyString(), anyString());
+    }
+}
@@ -0,0 +1,60 @@
+package com.Scolab.ScolabBackend.Service;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JWTUtilsTest {
+    private static final String SECRET = "scolabSecretKey2025ScolabSecretKey2025ScolabSecretKey2025";
+
+    private JWTClaimsCache claimsCache;
+    private JWTUtils jwtUtils;
+    private UserDetails user;
+
+    @BeforeEach
+    void setUp() {
+        claimsCache = new JWTClaimsCache(2);
+        jwtUtils = new JWTUtils(SECRET, claimsCache);
+        ReflectionTestUtils.setField(jwtUtils, "expirationTime", 60_000L);
+        user = new User("etudiant@scolab.tn", "x", List.of());
+    }
+
+    @Test
+    void getVerifiedClaims_parseUneSeuleFoisPuisCache() {
+        String token = jwtUtils.generateToken(user);
+
+        Claims premier = jwtUtils.getVerifiedClaims(token);
+        Claims second = jwtUtils.getVerifiedClaims(token);
+
+        assertSame(premier, second);
+        assertTrue(jwtUtils.isTokenValid(second, user));
+        assertEquals(1L, claimsCache.statistiques().get("misses"));
+        assertEquals(1L, claimsCache.statistiques().get("hits"));
+    }
+
+    @Test
+    void getVerifiedClaims_tokenAltereRejete() {
+        String token = jwtUtils.generateToken(user);
+        String altere = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(Exception.class, () -> jwtUtils.getVerifiedClaims(altere));
+        assertEquals(0, claimsCache.statistiques().get("taille"));
+    }
+
+    @Test
+    void cache_borneParCapacite() {
+        for (String email : List.of("a@scolab.tn", "b@scolab.tn", "c@scolab.tn")) {
+            jwtUtils.getVerifiedClaims(jwtUtils.generateToken(new User(email, "x", List.of())));
+        }
+
+        assertEquals(2, claimsCache.statistiques().get("taille"));
+        assertEquals(1L, claimsCache.statistiques().get("evictions"));
+    }
+}
@@ -1,21 +1,33 @@
 package com.Scolab.ScolabBackend.Service;
 
+import com.Scolab.ScolabBackend.Dto.SoumissionExport;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.LivrableRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.GroupeRepository;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,6 +47,12 @@ class LivrableServiceTest {
     private ProjetRepository projetRepository;
     @Mock
     private GroupeRepository groupeRepository;
+    @Mock
+    private MongoCustomService mongoCustomService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private EcheanceService echeanceService;
 
     @InjectMocks
     private LivrableService livrableService;
@@ -43,7 +61,7 @@ class LivrableServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         // L'injection de converUser se fait par @Autowired, donc on ne le passe pas au constructeur
-        livrableService = new LivrableService(livrableRepository, fichierStorageService, utilisateurRepository, emailService, projetRepository, groupeRepository);
+        livrableService = new LivrableService(livrableRepository, fichierStorageService, utilisateurRepository, emailService, projetRepository, groupeRepository, mongoCustomService, eventPublisher, echeanceService);
     }
 
     @Test
@@ -65,6 +83,19 @@ class LivrableServiceTest {
         assertNotNull(result.getDateSoumission());
     }
 
+    @Test
+    void soumettreLivrableFlux_tailleAnnonceeTropGrande_refuseSansLireLeFlux() throws IOException {
+        when(fichierStorageService.getTailleMaxFlux()).thenReturn(1024L);
+        InputStream contenu = mock(InputStream.class);
+
+        RuntimeException ex = assertThrows(RuntimeException.class,
+                () -> livrableService.soumettreLivrableFlux("l1", contenu, "projet.zip", 4096L, "g1"));
+
+        assertTrue(ex.getMessage().contains("trop volumineux"));
+        verifyNoInteractions(contenu, livrableRepository);
+        verify(fichierStorageService, never()).stockerFlux(any(), any());
+    }
+
     @Test
     void evaluerLivrable_succes() {
         Livrable livrable = new Livrable();
@@ -151,9 +182,21 @@ class LivrableServiceTest {
     @Test
     void getLivrablesByEnseignant_retourneListe() {
         List<Livrable> liste = Arrays.asList(new Livrable(), new Livrable());
-        when(livrableRepository.findByEnseignantId("e1")).thenReturn(liste);
+        Utilisateur enseignant = new Utilisateur(); enseignant.setId("6959924ea2f2178b3ecfd781");
+        Projet projet = new Projet(); projet.setId("695a935a28bb9d78cf23f1bf");
+        when(utilisateurRepository.findByEmail("e1")).thenReturn(Optional.of(enseignant));
+        when(projetRepository.findIdsActifsByEnseignant(new ObjectId("6959924ea2f2178b3ecfd781"))).thenReturn(List.of(projet));
+        when(livrableRepository.findByProjetRefs(List.of(new ObjectId("695a935a28bb9d78cf23f1bf")))).thenReturn(liste);
         List<Livrable> result = livrableService.getLivrablesByEnseignant("e1");
         assertEquals(2, result.size());
+        verify(livrableRepository, never()).findByProjetId(any());
+    }
+
+    @Test
+    void getLivrablesByEnseignant_curseurInvalide_refuse() {
+        assertThrows(IllegalArgumentException.class,
+                () -> livrableService.getLivrablesByEnseignant("e1", "pas-un-id", 20));
+        verifyNoInteractions(livrableRepository);
     }
 
     @Test
@@ -187,4 +230,50 @@ class LivrableServiceTest {
         assertEquals(groupe, livrable.getGroupe());
         assertEquals("l1", id);
     }
+
+    @Test
+    void preparerExportZip_refuseSiPasEnseignantDuProjet() {
+        Utilisateur enseignant = new Utilisateur(); enseignant.setEmail("prof@scolab.ma");
+        Projet projet = new Projet(); projet.setId("695a935a28bb9d78cf23f1bf"); projet.setEnseignant(enseignant);
+        when(projetRepository.findById("695a935a28bb9d78cf23f1bf")).thenReturn(Optional.of(projet));
+
+        assertThrows(SecurityException.class,
+                () -> livrableService.preparerExportZip("695a935a28bb9d78cf23f1bf", "autre@scolab.ma", false));
+        verifyNoInteractions(mongoCustomService);
+
+        livrableService.preparerExportZip("695a935a28bb9d78cf23f1bf", "admin@scolab.ma", true);
+        verify(mongoCustomService).soumissionsDuProjet(new ObjectId("695a935a28bb9d78cf23f1bf"));
+    }
+
+    @Test
+    void ecrireExportZip_unDossierParGroupeEtFichiersManquantsListes(@TempDir Path dossier) throws IOException {
+        Path rapport = Files.writeString(dossier.resolve("a1.pdf"), "rapport");
+        Path code = Files.writeString(dossier.resolve("b2.txt"), "code source");
+        when(fichierStorageService.resoudre("a1.pdf")).thenReturn(Optional.of(rapport));
+        when(fichierStorageService.resoudre("b2.txt")).thenReturn(Optional.of(code));
+        when(fichierStorageService.resoudre("absent.txt")).thenReturn(Optional.of(dossier.resolve("absent.txt")));
+
+        List<SoumissionExport> soumissions = List.of(
+                new SoumissionExport("l1", "Rapport", "g1", "Groupe A", "rapport.pdf", "/uploads/a1.pdf"),
+                new SoumissionExport("l2", "Rapport", "g1", "Groupe A", "rapport.pdf", "/uploads/a1.pdf"),
+                new SoumissionExport("l3", "Code", "g2", "../Groupe B", "main.txt", "/uploads/b2.txt"),
+                new SoumissionExport("l4", "Annexe", "g2", "../Groupe B", "annexe.txt", "/uploads/absent.txt"));
+
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+        livrableService.ecrireExportZip(soumissions, sortie);
+
+        Map<String, String> entrees = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(sortie.toByteArray()), StandardCharsets.UTF_8)) {
+            ZipEntry entree;
+            while ((entree = zip.getNextEntry()) != null) {
+                entrees.put(entree.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        assertEquals(List.of("Groupe A/Rapport - rapport.pdf", "Groupe A/Rapport - rapport (2).pdf",
+                "_Groupe B/Code - main.txt", "MANQUANTS.txt"), new ArrayList<>(entrees.keySet()));
+        assertEquals("rapport", entrees.get("Groupe A/Rapport - rapport.pdf"));
+        assertEquals("code source", entrees.get("_Groupe B/Code - main.txt"));
+        assertEquals("_Groupe B/Annexe - annexe.txt", entrees.get("MANQUANTS.txt"));
+    }
 }
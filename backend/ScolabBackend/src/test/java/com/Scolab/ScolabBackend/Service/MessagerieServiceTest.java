@@ -0,0 +1,200 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Conversation;
+import com.Scolab.ScolabBackend.Entity.Message;
+import com.Scolab.ScolabBackend.Entity.Role;
+import com.Scolab.ScolabBackend.Entity.Utilisateur;
+import com.Scolab.ScolabBackend.Repository.ConversationRepository;
+import com.Scolab.ScolabBackend.Repository.GroupeRepository;
+import com.Scolab.ScolabBackend.Repository.MessageRepository;
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MessagerieServiceTest {
+
+    private static final String ETUDIANT_ID = "6959924ea2f2178b3ecfd781";
+    private static final String ENSEIGNANT_ID = "6959924ea2f2178b3ecfd782";
+
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private MessageRepository messageRepository;
+    @Mock
+    private GroupeRepository groupeRepository;
+    @Mock
+    private UtilisateurRepository utilisateurRepository;
+    @Mock
+    private MongoCustomService mongoCustomService;
+    @Mock
+    private SimpMessageSendingOperations messagingTemplate;
+
+    private MessagerieService messagerieService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        messagerieService = new MessagerieService(conversationRepository, messageRepository, groupeRepository,
+                utilisateurRepository, mongoCustomService, messagingTemplate);
+
+        Conversation conv = new Conversation();
+        conv.setId("c1");
+        conv.setGroupeId("g1");
+        conv.setEnseignantId(ENSEIGNANT_ID);
+        when(conversationRepository.findById("c1")).thenReturn(Optional.of(conv));
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> {
+            Message m = inv.getArgument(0);
+            m.setId("m1");
+            return m;
+        });
+    }
+
+    @Test
+    void envoyerMessage_publieSurLeTopicDeLaConversation() {
+        Message saved = messagerieService.envoyerMessage("c1", ETUDIANT_ID, "Alice", "Bonjour");
+
+        verify(messagingTemplate).convertAndSend("/topic/conversations/c1", saved);
+        verify(mongoCustomService).enregistrerMessageDansConversation("c1", ETUDIANT_ID, "Bonjour", saved.getDateEnvoi());
+        // Deux écritures au plus : le message, puis la mise à jour atomique du résumé
+        verify(conversationRepository, never()).findById(any());
+        verify(conversationRepository, never()).save(any());
+    }
+
+    @Test
+    void estParticipant_enseignantOuMembreDuGroupeSeulement() {
+        when(utilisateurRepository.findByEmail("prof@scolab.ma")).thenReturn(Optional.of(utilisateur(ENSEIGNANT_ID)));
+        when(utilisateurRepository.findByEmail("alice@scolab.ma")).thenReturn(Optional.of(utilisateur(ETUDIANT_ID)));
+        when(utilisateurRepository.findByEmail("intrus@scolab.ma"))
+                .thenReturn(Optional.of(utilisateur("6959924ea2f2178b3ecfd783")));
+        when(mongoCustomService.idsEtudiantsDesGroupes(List.of("g1"))).thenReturn(Set.of(new ObjectId(ETUDIANT_ID)));
+
+        assertTrue(messagerieService.estParticipant("c1", "prof@scolab.ma"));
+        assertTrue(messagerieService.estParticipant("c1", "alice@scolab.ma"));
+        assertFalse(messagerieService.estParticipant("c1", "intrus@scolab.ma"));
+        assertFalse(messagerieService.estParticipant("c1", "inconnu@scolab.ma"));
+        assertFalse(messagerieService.estParticipant("c2", "prof@scolab.ma"));
+    }
+
+    @Test
+    void envoyerMessageDepuis_refuseUnNonParticipant() {
+        when(utilisateurRepository.findByEmail("intrus@scolab.ma"))
+                .thenReturn(Optional.of(utilisateur("6959924ea2f2178b3ecfd783")));
+        when(mongoCustomService.idsEtudiantsDesGroupes(List.of("g1"))).thenReturn(Set.of(new ObjectId(ETUDIANT_ID)));
+
+        assertThrows(RuntimeException.class,
+                () -> messagerieService.envoyerMessageDepuis("c1", "intrus@scolab.ma", "spam"));
+        verify(messageRepository, never()).save(any());
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/conversations/c1"), any(Object.class));
+    }
+
+    @Test
+    void getMessagesByConversation_pageParCurseurEnOrdreChronologique() {
+        Message recent = message("695a935a28bb9d78cf23f1c3", 3000);
+        Message moyen = message("695a935a28bb9d78cf23f1c2", 2000);
+        Message ancien = message("695a935a28bb9d78cf23f1c1", 1000);
+        when(messageRepository.findDerniers("c1", PageRequest.of(0, 2))).thenReturn(List.of(recent, moyen));
+        when(messageRepository.findById(moyen.getId())).thenReturn(Optional.of(moyen));
+        when(messageRepository.findAvant("c1", moyen.getDateEnvoi(), new ObjectId(moyen.getId()), PageRequest.of(0, 2)))
+                .thenReturn(List.of(ancien));
+
+        assertEquals(List.of(moyen, recent), messagerieService.getMessagesByConversation("c1", null, 2));
+        assertEquals(List.of(ancien), messagerieService.getMessagesByConversation("c1", moyen.getId(), 2));
+        verify(messageRepository, never()).findByConversationIdOrderByDateEnvoiAsc(any());
+    }
+
+    @Test
+    void getMessagesByConversation_refuseUnCurseurDUneAutreConversation() {
+        Message autre = message("695a935a28bb9d78cf23f1c9", 1000);
+        autre.setConversationId("c2");
+        when(messageRepository.findById(autre.getId())).thenReturn(Optional.of(autre));
+
+        assertThrows(RuntimeException.class, () -> messagerieService.getMessagesByConversation("c1", autre.getId(), 50));
+    }
+
+    @Test
+    void getBoiteDeReception_etudiantResoutSesGroupesParIndex() {
+        Utilisateur alice = utilisateur(ETUDIANT_ID);
+        alice.setRole(Role.ETUDIANT);
+        when(utilisateurRepository.findByEmail("alice@scolab.ma")).thenReturn(Optional.of(alice));
+        ObjectId groupe = new ObjectId("695a935a28bb9d78cf23f1b1");
+        when(mongoCustomService.idsGroupesDeLEtudiant(new ObjectId(ETUDIANT_ID))).thenReturn(List.of(groupe));
+
+        messagerieService.getBoiteDeReception("alice@scolab.ma");
+
+        verify(mongoCustomService).boiteDeReception(ETUDIANT_ID, List.of(groupe.toHexString()));
+    }
+
+    @Test
+    void getMessagesByConversation_curseurInvalideOuEtranger_refuse() {
+        Message autreConversation = message("695a935a28bb9d78cf23f1c3", 1000);
+        autreConversation.setConversationId("c2");
+        when(messageRepository.findById(autreConversation.getId())).thenReturn(Optional.of(autreConversation));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> messagerieService.getMessagesByConversation("c1", "pas-un-id", 20));
+        assertThrows(IllegalArgumentException.class,
+                () -> messagerieService.getMessagesByConversation("c1", autreConversation.getId(), 20));
+        verify(messageRepository, never()).findById("pas-un-id");
+    }
+
+    @Test
+    void marquerCommeLu_jusquAUnMessageAvanceLeCompteurDeLus() {
+        Utilisateur prof = utilisateur(ENSEIGNANT_ID);
+        when(utilisateurRepository.findByEmail("prof@scolab.ma")).thenReturn(Optional.of(prof));
+        Message curseur = message("695a935a28bb9d78cf23f1c2", 2000);
+        when(messageRepository.findById(curseur.getId())).thenReturn(Optional.of(curseur));
+        ObjectId curseurId = new ObjectId(curseur.getId());
+        when(messageRepository.marquerLusJusqua("c1", ENSEIGNANT_ID, curseur.getDateEnvoi(), curseurId)).thenReturn(4L);
+        // Lus = messages jusqu'au curseur + messages du lecteur postérieurs (déjà comptés lus à l'envoi)
+        when(messageRepository.countLusJusqua("c1", ENSEIGNANT_ID, curseur.getDateEnvoi(), curseurId)).thenReturn(7L);
+
+        assertEquals(4L, messagerieService.marquerCommeLu("c1", "prof@scolab.ma", curseur.getId()));
+        verify(mongoCustomService).avancerLus("c1", ENSEIGNANT_ID, 7L);
+
+        when(messageRepository.marquerTousLus("c1", ENSEIGNANT_ID)).thenReturn(2L);
+        assertEquals(2L, messagerieService.marquerCommeLu("c1", "prof@scolab.ma", null));
+        verify(mongoCustomService).avancerLus("c1", ENSEIGNANT_ID, null);
+    }
+
+    @Test
+    void getConversationsByUser_uneRequeteSurLesGroupesDeLEtudiant() {
+        ObjectId groupe = new ObjectId("695a935a28bb9d78cf23f1b1");
+        when(mongoCustomService.idsGroupesDeLEtudiant(new ObjectId(ETUDIANT_ID))).thenReturn(List.of(groupe));
+
+        messagerieService.getConversationsByUser(ETUDIANT_ID, 50);
+
+        verify(conversationRepository).findByMembre(ETUDIANT_ID, List.of(groupe.toHexString()), PageRequest.of(0, 50));
+        verify(conversationRepository, never()).findByGroupeId(any());
+        verify(conversationRepository, never()).findByEnseignantId(any());
+    }
+
+    private static Message message(String id, long date) {
+        Message m = new Message();
+        m.setId(id);
+        m.setConversationId("c1");
+        m.setDateEnvoi(new Date(date));
+        return m;
+    }
+
+    private static Utilisateur utilisateur(String id) {
+        Utilisateur u = new Utilisateur();
+        u.setId(id);
+        u.setNom("Test");
+        return u;
+    }
+}
@@ -0,0 +1,124 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Notification;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationBatchWriterTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    // Copie de chaque lot envoyé à Mongo
+    private final List<List<Notification>> lots = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Notification.class)).thenReturn(bulk);
+        when(bulk.insert(anyList())).thenAnswer(inv -> {
+            lots.add(List.copyOf((List<Notification>) inv.getArgument(0)));
+            return bulk;
+        });
+        when(bulk.execute()).thenReturn(BulkWriteResult.unacknowledged());
+    }
+
+    @Test
+    void ajouter_regroupeLesInsertionsJusquALaFenetre() {
+        NotificationBatchWriter writer = new NotificationBatchWriter(mongoTemplate, 10, 1000, 8);
+
+        writer.ajouter(notifications(3));
+        writer.ajouter(notifications(4));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Notification.class));
+        assertEquals(7, writer.enAttente());
+
+        writer.vider();
+        assertEquals(1, lots.size());
+        assertEquals(7, lots.get(0).size());
+        assertEquals(0, writer.enAttente());
+    }
+
+    @Test
+    void ajouter_videParLotsDesQueLeSeuilEstAtteint() {
+        NotificationBatchWriter writer = new NotificationBatchWriter(mongoTemplate, 10, 1000, 8);
+
+        writer.ajouter(notifications(25));
+
+        assertEquals(List.of(10, 10, 5), lots.stream().map(List::size).toList());
+        assertEquals(0, writer.enAttente());
+    }
+
+    @Test
+    void vider_uneErreurMongoNeBloquePasLesLotsSuivantsEtLeLotEstRejoue() throws InterruptedException {
+        NotificationBatchWriter writer = new NotificationBatchWriter(mongoTemplate, 2, 1000, 8);
+        when(bulk.execute())
+                .thenThrow(new RuntimeException("mongo indisponible"))
+                .thenReturn(BulkWriteResult.unacknowledged());
+
+        writer.ajouter(notifications(1));
+        writer.ajouter(notifications(2));
+
+        // Premier lot de 2 refusé, le suivant inséré malgré tout
+        assertEquals(List.of(2, 1), lots.stream().map(List::size).toList());
+        assertEquals(0, writer.enAttente());
+        assertEquals(2, writer.enReessai());
+
+        Thread.sleep(300);
+        writer.vider();
+
+        assertEquals(List.of(2, 1, 2), lots.stream().map(List::size).toList());
+        // Même document, même id : pas de doublon si la première tentative avait en fait abouti
+        assertEquals(lots.get(0).get(0).getId(), lots.get(2).get(0).getId());
+        assertEquals(0, writer.enReessai());
+    }
+
+    @Test
+    void vider_seulsLesDocumentsRefusesSontRejouesEtLeNombreDeTentativesEstBorne() throws InterruptedException {
+        NotificationBatchWriter writer = new NotificationBatchWriter(mongoTemplate, 10, 1000, 2);
+        // Index 0 refusé, index 1 déjà inséré (doublon), index 2 inséré
+        when(bulk.execute()).thenThrow(new BulkOperationException("refus", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(), List.of(
+                        new BulkWriteError(91, "arrêt en cours", new BsonDocument(), 0),
+                        new BulkWriteError(11000, "duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())));
+
+        writer.ajouter(notifications(3));
+        writer.vider();
+        assertEquals(1, writer.enReessai());
+
+        Thread.sleep(300);
+        writer.vider();
+
+        assertEquals(List.of(3, 1), lots.stream().map(List::size).toList());
+        assertEquals(lots.get(0).get(0).getId(), lots.get(1).get(0).getId());
+        // Deuxième échec du même document : tentatives épuisées, il est abandonné
+        assertEquals(0, writer.enReessai());
+    }
+
+    private static List<Notification> notifications(int n) {
+        List<Notification> liste = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            liste.add(new Notification(EvenementNotification.PERSONNALISEE, "Titre", "Message", "u" + i, Map.of(), new Date()));
+        }
+        return liste;
+    }
+}
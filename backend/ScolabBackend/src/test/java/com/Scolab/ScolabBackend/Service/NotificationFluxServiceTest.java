@@ -0,0 +1,162 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class NotificationFluxServiceTest {
+
+    private NotificationFluxService fluxService;
+
+    @BeforeEach
+    void setUp() {
+        fluxService = new NotificationFluxService(mock(UtilisateurRepository.class), new SyncTaskExecutor(), 3, 60_000, 3_600_000);
+    }
+
+    @Test
+    void diffuser_envoieAuxSeulsDestinatairesConnectes() {
+        EmetteurEnregistreur alice = new EmetteurEnregistreur();
+        EmetteurEnregistreur bob = new EmetteurEnregistreur();
+        fluxService.abonnerUtilisateur("alice", null, alice);
+        fluxService.abonnerUtilisateur("bob", null, bob);
+
+        fluxService.diffuser(evenement("alice"));
+
+        assertEquals(1, alice.ids().size());
+        assertTrue(bob.ids().isEmpty());
+        assertTrue(alice.contenu().contains("event:" + EvenementNotification.TACHE_ASSIGNEE));
+    }
+
+    @Test
+    void abonner_rejoueDepuisLastEventIdEtBorneLeTampon() {
+        for (int i = 0; i < 5; i++) {
+            fluxService.diffuser(evenement("alice"));
+        }
+        List<Long> enTampon = fluxService.idsEnTampon("alice");
+        assertEquals(3, enTampon.size(), "le tampon circulaire ne garde que les derniers événements");
+
+        // Reconnexion après le 4e événement : seul le 5e est rejoué, sans RESYNC
+        EmetteurEnregistreur reprise = new EmetteurEnregistreur();
+        fluxService.abonnerUtilisateur("alice", enTampon.get(1), reprise);
+        assertEquals(List.of(String.valueOf(enTampon.get(2))), reprise.ids());
+        assertFalse(reprise.contenu().contains(NotificationFluxService.EVENEMENT_RESYNC));
+
+        // Dernier id reçu déjà sorti du tampon : RESYNC puis tout le tampon
+        EmetteurEnregistreur enRetard = new EmetteurEnregistreur();
+        fluxService.abonnerUtilisateur("alice", enTampon.get(0) - 2, enRetard);
+        assertTrue(enRetard.contenu().contains("event:" + NotificationFluxService.EVENEMENT_RESYNC));
+        assertEquals(enTampon.stream().map(String::valueOf).collect(Collectors.toList()), enRetard.ids());
+    }
+
+    @Test
+    void abonner_idAnterieurAuDemarrageDeclencheResync() {
+        EmetteurEnregistreur emetteur = new EmetteurEnregistreur();
+        fluxService.abonnerUtilisateur("alice", 42L, emetteur);
+        assertTrue(emetteur.contenu().contains("event:" + NotificationFluxService.EVENEMENT_RESYNC));
+        assertEquals(1, fluxService.statistiques().get("connexions"));
+    }
+
+    @Test
+    void diffuser_unClientBloqueNeRetientNiLePublieurNiLesAutres() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            NotificationFluxService service = new NotificationFluxService(mock(UtilisateurRepository.class),
+                    pool::execute, 3, 60_000, 3_600_000);
+            CountDownLatch debloquer = new CountDownLatch(1);
+            EmetteurEnregistreur bloque = new EmetteurEnregistreur(debloquer);
+            EmetteurEnregistreur alice = new EmetteurEnregistreur();
+            service.abonnerUtilisateur("bob", null, bloque);
+            service.abonnerUtilisateur("alice", null, alice);
+
+            // Le thread qui publie rend la main tout de suite, même si l'écriture vers bob est bloquée
+            service.diffuser(evenement("bob"));
+            service.diffuser(evenement("bob"));
+            assertTimeoutPreemptively(Duration.ofSeconds(2), () -> service.diffuser(evenement("alice")));
+            attendre(() -> alice.ids().size() == 1);
+            service.heartbeat();
+
+            debloquer.countDown();
+            attendre(() -> bloque.ids().size() == 2);
+            // Ordre conservé pour bob malgré le pool
+            assertEquals(service.idsEnTampon("bob").stream().map(String::valueOf).toList(), bloque.ids());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void attendre(BooleanSupplier condition) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 2_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < limite, "délai dépassé");
+            Thread.sleep(10);
+        }
+    }
+
+    private static EvenementNotification evenement(String destinataire) {
+        return new EvenementNotification(EvenementNotification.TACHE_ASSIGNEE, "Nouvelle tâche", "Tâche assignée",
+                Set.of(destinataire), Map.of("tacheId", "t1"));
+    }
+
+    // Capture les trames SSE au lieu de les écrire sur une réponse HTTP
+    private static class EmetteurEnregistreur extends SseEmitter {
+        private final List<String> trames = new CopyOnWriteArrayList<>();
+        private final CountDownLatch bloqueJusqua;
+
+        EmetteurEnregistreur() {
+            this(new CountDownLatch(0));
+        }
+
+        // Simule un client lent : chaque écriture attend le déblocage
+        EmetteurEnregistreur(CountDownLatch bloqueJusqua) {
+            this.bloqueJusqua = bloqueJusqua;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                bloqueJusqua.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            StringBuilder trame = new StringBuilder();
+            builder.build().forEach(part -> trame.append(part.getData()));
+            trames.add(trame.toString());
+        }
+
+        List<String> ids() {
+            List<String> ids = new ArrayList<>();
+            for (String trame : trames) {
+                for (String ligne : trame.split("\n")) {
+                    if (ligne.startsWith("id:")) {
+                        ids.add(ligne.substring(3));
+                    }
+                }
+            }
+            return ids;
+        }
+
+        String contenu() {
+            return String.join("", trames);
+        }
+    }
+}
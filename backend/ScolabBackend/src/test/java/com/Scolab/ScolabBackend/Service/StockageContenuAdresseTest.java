@@ -0,0 +1,163 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.Blob;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StockageContenuAdresseTest {
+
+    @TempDir
+    Path uploads;
+
+    @TempDir
+    Path staging;
+
+    private MongoTemplate mongoTemplate;
+    private StockageContenuAdresse stockage;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        stockage = new StockageContenuAdresse(mongoTemplate);
+        ReflectionTestUtils.setField(stockage, "uploadDir", uploads.toString());
+        ReflectionTestUtils.setField(stockage, "stagingDir", staging.toString());
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Blob.class))).thenReturn(existant());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Blob.class))).thenReturn(existant());
+    }
+
+    @Test
+    void ecrire_contenuIdentique_unSeulFichierSurDisque() throws IOException {
+        StockageFichiers.BlobStocke premier = stockage.ecrire(flux("rapport final"), "rapport.ZIP");
+        StockageFichiers.BlobStocke second = stockage.ecrire(flux("rapport final"), "copie.zip");
+
+        assertEquals(premier.nom(), second.nom());
+        assertEquals(premier.hash() + ".zip", premier.nom());
+        assertEquals(13L, premier.taille());
+        assertEquals("rapport final", Files.readString(uploads.resolve(premier.nom())));
+        try (var fichiers = Files.list(staging)) {
+            assertEquals(0, fichiers.count());
+        }
+        // Rien d'autre que le contenu final sous le répertoire servi publiquement
+        try (var fichiers = Files.list(uploads)) {
+            assertEquals(1, fichiers.count());
+        }
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(Blob.class));
+    }
+
+    @Test
+    void ecrire_deplacementEchoue_referenceRetiree() throws IOException {
+        // Le fichier temporaire disparaît entre le comptage et le déplacement
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Blob.class))).thenAnswer(i -> {
+            try (var fichiers = Files.list(staging)) {
+                for (Path fichier : fichiers.toList()) {
+                    Files.delete(fichier);
+                }
+            }
+            return nouveau();
+        });
+
+        assertThrows(IOException.class, () -> stockage.ecrire(flux("perdu"), "a.pdf"));
+
+        verify(mongoTemplate).updateFirst(any(Query.class), argThat(u -> u.getUpdateObject().toJson().contains("-1")), eq(Blob.class));
+        verify(mongoTemplate).remove(any(Query.class), eq(Blob.class));
+    }
+
+    @Test
+    void liberer_conserveLeFichierTantQuIlEstReference() throws IOException {
+        String nom = stockage.ecrire(flux("partagé"), "a.pdf").nom();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Blob.class)))
+                .thenReturn(blob(1))
+                .thenReturn(blob(0));
+        when(mongoTemplate.remove(any(Query.class), eq(Blob.class))).thenReturn(DeleteResult.acknowledged(1));
+
+        assertFalse(stockage.liberer(nom));
+        assertTrue(Files.exists(uploads.resolve(nom)));
+
+        assertTrue(stockage.liberer(nom));
+        assertFalse(Files.exists(uploads.resolve(nom)));
+    }
+
+    @Test
+    void liberer_fichierHistoriqueSansBlob_supprimeDirectement() throws IOException {
+        Files.writeString(uploads.resolve("uuid_ancien.pdf"), "x");
+
+        assertTrue(stockage.liberer("uuid_ancien.pdf"));
+        assertFalse(stockage.liberer("../hors-racine.pdf"));
+    }
+
+    @Test
+    void ecrire_blobEnSuppressionSurUnAutreNoeud_attendPuisRecreeLeFichier() throws IOException {
+        // Pierre tombale posée : l'upsert (filtré hors suppression) heurte la clé, puis le blob a disparu
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(Blob.class)))
+                .thenThrow(new DuplicateKeyException("E11000"))
+                .thenReturn(nouveau());
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Blob.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        String nom = StockageContenuAdresse.empreinte(Files.writeString(staging.resolve("ref"), "contenu")) + ".pdf";
+        Files.delete(staging.resolve("ref"));
+        // Fichier que l'autre nœud est encore en train d'effacer : il n'est pas pris pour acquis
+        Files.writeString(uploads.resolve(nom), "contenu");
+
+        assertEquals(nom, stockage.ecrire(flux("contenu"), "a.pdf").nom());
+
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq(Blob.class));
+        assertEquals("contenu", Files.readString(uploads.resolve(nom)));
+        try (var fichiers = Files.list(staging)) {
+            assertEquals(0, fichiers.count());
+        }
+    }
+
+    @Test
+    void liberer_referenceRepriseAvantLaPierreTombale_fichierConserve() throws IOException {
+        String nom = stockage.ecrire(flux("repris"), "a.pdf").nom();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Blob.class)))
+                .thenReturn(blob(0));
+        // Un autre nœud a compté une référence entre le décrément et la pierre tombale
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Blob.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        assertFalse(stockage.liberer(nom));
+
+        assertTrue(Files.exists(uploads.resolve(nom)));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(Blob.class));
+    }
+
+    private static UpdateResult existant() {
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    private static UpdateResult nouveau() {
+        return UpdateResult.acknowledged(0, 0L, new BsonString("blob"));
+    }
+
+    private static ByteArrayInputStream flux(String contenu) {
+        return new ByteArrayInputStream(contenu.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Blob blob(long references) {
+        Blob blob = new Blob();
+        blob.setReferences(references);
+        return blob;
+    }
+}
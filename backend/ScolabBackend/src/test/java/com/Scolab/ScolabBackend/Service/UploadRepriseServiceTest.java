@@ -0,0 +1,131 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.UploadSession;
+import com.Scolab.ScolabBackend.Repository.UploadSessionRepository;
+import com.mongodb.client.result.UpdateResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UploadRepriseServiceTest {
+
+    @TempDir
+    Path staging;
+
+    private UploadSessionRepository uploadSessionRepository;
+    private MongoTemplate mongoTemplate;
+    private LivrableService livrableService;
+    private UploadRepriseService uploadRepriseService;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        mongoTemplate = mock(MongoTemplate.class);
+        livrableService = mock(LivrableService.class);
+        FichierStorageService fichierStorageService = mock(FichierStorageService.class);
+        when(fichierStorageService.getTailleMaxFlux()).thenReturn(1_000L);
+        when(uploadSessionRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UploadSession.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        // Réservation accordée par défaut : la session réservée est relue via le repository
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UploadSession.class)))
+                .thenAnswer(i -> uploadSessionRepository.findById(
+                        i.getArgument(0, Query.class).getQueryObject().getString("_id")).orElse(null));
+
+        uploadRepriseService = new UploadRepriseService(uploadSessionRepository, mongoTemplate, livrableService, fichierStorageService);
+        ReflectionTestUtils.setField(uploadRepriseService, "stagingDir", staging.toString());
+        ReflectionTestUtils.setField(uploadRepriseService, "expirationHeures", 24L);
+    }
+
+    @Test
+    void ajouterMorceau_repriseApresCoupure() throws IOException {
+        UploadSession session = uploadRepriseService.creerSession("l1", "g1", "projet.zip", 10);
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+
+        // La connexion tombe après 4 octets : ils sont conservés et l'offset avance
+        InputStream coupe = new InputStream() {
+            private final InputStream debut = flux("0123");
+
+            @Override
+            public int read() throws IOException {
+                int b = debut.read();
+                if (b < 0) {
+                    throw new IOException("connexion perdue");
+                }
+                return b;
+            }
+        };
+        assertThrows(IOException.class, () -> uploadRepriseService.ajouterMorceau(session.getId(), 0, coupe));
+        verify(mongoTemplate).updateFirst(any(Query.class), any(Update.class), eq(UploadSession.class));
+        session.setOffset(4);
+
+        long offset = uploadRepriseService.ajouterMorceau(session.getId(), 4, flux("456789"));
+
+        assertEquals(10, offset);
+        assertEquals("0123456789", Files.readString(staging.resolve("reprise").resolve(session.getId() + ".part")));
+        verify(livrableService).verifierSoumissionPossible("l1", "g1");
+    }
+
+    @Test
+    void ajouterMorceau_offsetIncorrect_conflit() throws IOException {
+        UploadSession session = uploadRepriseService.creerSession("l1", "g1", "projet.zip", 10);
+        session.setOffset(6);
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UploadSession.class)))
+                .thenReturn(null);
+
+        UploadRepriseService.OffsetIncorrectException ex = assertThrows(UploadRepriseService.OffsetIncorrectException.class,
+                () -> uploadRepriseService.ajouterMorceau(session.getId(), 2, flux("abcd")));
+
+        assertEquals(6, ex.getOffsetAttendu());
+    }
+
+    @Test
+    void ajouterMorceau_depasseLaTailleAnnoncee_refuse() throws IOException {
+        UploadSession session = uploadRepriseService.creerSession("l1", "g1", "projet.zip", 3);
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+
+        assertThrows(RuntimeException.class, () -> uploadRepriseService.ajouterMorceau(session.getId(), 0, flux("abcd")));
+        // La réservation est libérée sans avancer l'offset
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(UploadSession.class));
+        assertFalse(update.getValue().modifies("offset"));
+    }
+
+    @Test
+    void ajouterMorceau_envoiConcurrentAuMemeOffset_verrouille() throws IOException {
+        UploadSession session = uploadRepriseService.creerSession("l1", "g1", "projet.zip", 10);
+        when(uploadSessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+        // Même offset mais session déjà réservée par un autre envoi
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(UploadSession.class)))
+                .thenReturn(null);
+
+        assertThrows(UploadRepriseService.UploadVerrouilleException.class,
+                () -> uploadRepriseService.ajouterMorceau(session.getId(), 0, flux("abcd")));
+        assertEquals(0, Files.size(staging.resolve("reprise").resolve(session.getId() + ".part")));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(UploadSession.class));
+    }
+
+    private static ByteArrayInputStream flux(String contenu) {
+        return new ByteArrayInputStream(contenu.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,214 @@
+package com.Scolab.ScolabBackend.Service;
+
+import com.Scolab.ScolabBackend.Entity.PushSubscription;
+import com.Scolab.ScolabBackend.Repository.PushSubscriptionRepository;
+import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WebPushServiceTest {
+
+    private final PushSubscriptionRepository subscriptionRepository = mock(PushSubscriptionRepository.class);
+    private final UtilisateurRepository utilisateurRepository = mock(UtilisateurRepository.class);
+
+    private HttpServer serveurPush;
+    private final AtomicInteger statutReponse = new AtomicInteger(201);
+    private final AtomicReference<byte[]> corpsRecu = new AtomicReference<>();
+    private final AtomicReference<String> autorisationRecue = new AtomicReference<>();
+    private final AtomicReference<String> encodageRecu = new AtomicReference<>();
+    private final AtomicReference<String> hoteRecu = new AtomicReference<>();
+
+    private KeyPair vapid;
+    private KeyPair navigateur;
+    private byte[] secretAuth;
+    private WebPushService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serveurPush = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serveurPush.createContext("/push/", echange -> {
+            autorisationRecue.set(echange.getRequestHeaders().getFirst("Authorization"));
+            encodageRecu.set(echange.getRequestHeaders().getFirst("Content-Encoding"));
+            hoteRecu.set(echange.getRequestHeaders().getFirst("Host"));
+            corpsRecu.set(echange.getRequestBody().readAllBytes());
+            echange.sendResponseHeaders(statutReponse.get(), -1);
+            echange.close();
+        });
+        serveurPush.start();
+
+        vapid = paireP256();
+        navigateur = paireP256();
+        secretAuth = new byte[16];
+        new SecureRandom().nextBytes(secretAuth);
+
+        service = new WebPushService(subscriptionRepository, utilisateurRepository, new SyncTaskExecutor(),
+                WebPushChiffrement.base64Url(WebPushChiffrement.encoderClePublique((ECPublicKey) vapid.getPublic())),
+                WebPushChiffrement.base64Url(brute32(((ECPrivateKey) vapid.getPrivate()).getS())),
+                "mailto:test@scolab.ma", 60, 2000, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        serveurPush.stop(0);
+    }
+
+    @Test
+    void notifier_envoieUnContenuChiffreEtSigneVapid() throws Exception {
+        PushSubscription abonnement = abonnement("/push/abc");
+        when(subscriptionRepository.findByUtilisateurIdIn(any())).thenReturn(List.of(abonnement));
+
+        service.notifier(new EvenementNotification(EvenementNotification.PERSONNALISEE, "Rappel",
+                "Rendu demain", Set.of("u1"), Map.of("projetId", "p1")));
+
+        assertEquals("aes128gcm", encodageRecu.get());
+        JsonNode contenu = new ObjectMapper().readTree(dechiffrer(corpsRecu.get()));
+        assertEquals("Rappel", contenu.get("title").asText());
+        assertEquals("Rendu demain", contenu.get("body").asText());
+        assertEquals("p1", contenu.get("data").get("projetId").asText());
+
+        String autorisation = autorisationRecue.get();
+        assertTrue(autorisation.startsWith("vapid t="));
+        String jwt = autorisation.substring("vapid t=".length(), autorisation.indexOf(", k="));
+        assertEquals(service.getClePublique(), autorisation.substring(autorisation.indexOf(", k=") + 4));
+        Claims claims = Jwts.parser().verifyWith(vapid.getPublic()).build().parseSignedClaims(jwt).getPayload();
+        assertEquals(Set.of("http://localhost:" + serveurPush.getAddress().getPort()), claims.getAudience());
+        assertEquals("mailto:test@scolab.ma", claims.getSubject());
+        verify(subscriptionRepository, never()).deleteByEndpoint(any());
+    }
+
+    @Test
+    void envoyerA_abonnementExpireEstSupprime() {
+        statutReponse.set(410);
+        PushSubscription abonnement = abonnement("/push/expire");
+
+        assertEquals(410, service.envoyerA(abonnement, "{}".getBytes(StandardCharsets.UTF_8)));
+
+        verify(subscriptionRepository).deleteByEndpoint(abonnement.getEndpoint());
+        assertEquals(1L, service.statistiques().get("abonnementsSupprimes"));
+    }
+
+    @Test
+    void notifier_sansClesVapidNeFaitRien() {
+        WebPushService inactif = new WebPushService(subscriptionRepository, utilisateurRepository,
+                new SyncTaskExecutor(), "", "", "mailto:test@scolab.ma", 60, 2000, false);
+
+        inactif.notifier(new EvenementNotification(EvenementNotification.PERSONNALISEE, "t", "m", Set.of("u1"), Map.of()));
+
+        assertFalse(inactif.estActif());
+        verifyNoInteractions(subscriptionRepository);
+    }
+
+    @Test
+    void verifierEndpoint_refuseHttpEtAdressesInternes() {
+        WebPushService strict = new WebPushService(subscriptionRepository, utilisateurRepository,
+                new SyncTaskExecutor(), "", "", "mailto:test@scolab.ma", 60, 2000, false);
+
+        for (String endpoint : List.of("http://fcm.googleapis.com/fcm/send/x", "https://127.0.0.1/push",
+                "https://localhost:8080/push", "https://169.254.169.254/latest/meta-data", "https://10.0.0.5/push",
+                "https://192.168.1.1/push", "https://[::1]/push", "https://[fd00::1]/push", "file:///etc/passwd")) {
+            assertThrows(RuntimeException.class, () -> strict.verifierEndpoint(endpoint), endpoint);
+        }
+        assertEquals("93.184.216.34", strict.verifierEndpoint("https://93.184.216.34/push/abc").uri().getHost());
+        // Un envoi vers un endpoint interne n'atteint jamais le réseau
+        assertEquals(-1, strict.envoyerA(abonnement("/push/abc"), new byte[0]));
+    }
+
+    @Test
+    void connexion_seConnecteALAdresseVerifieeSansResoudreDeNouveau() throws Exception {
+        // Hôte non résolvable : seule l'adresse fournie peut être jointe, l'en-tête Host garde le nom d'origine
+        int port = serveurPush.getAddress().getPort();
+        URI endpoint = URI.create("http://push.rebinding.invalid:" + port + "/push/abc");
+
+        int statut = WebPushConnexion.post(endpoint, serveurPush.getAddress().getAddress(),
+                Map.of("TTL", "60"), new byte[]{1, 2, 3}, 2000, 2000);
+
+        assertEquals(201, statut);
+        assertEquals("push.rebinding.invalid:" + port, hoteRecu.get());
+        assertArrayEquals(new byte[]{1, 2, 3}, corpsRecu.get());
+    }
+
+    private PushSubscription abonnement(String chemin) {
+        PushSubscription abonnement = new PushSubscription();
+        abonnement.setUtilisateurId("u1");
+        abonnement.setEndpoint("http://localhost:" + serveurPush.getAddress().getPort() + chemin);
+        abonnement.setP256dh(WebPushChiffrement.base64Url(
+                WebPushChiffrement.encoderClePublique((ECPublicKey) navigateur.getPublic())));
+        abonnement.setAuth(WebPushChiffrement.base64Url(secretAuth));
+        return abonnement;
+    }
+
+    // Déchiffrement côté navigateur (RFC 8291) : en-tête sel | rs | idlen | clé serveur, puis l'enregistrement
+    private byte[] dechiffrer(byte[] corps) throws Exception {
+        ByteBuffer tampon = ByteBuffer.wrap(corps);
+        byte[] sel = new byte[16];
+        tampon.get(sel);
+        tampon.getInt();
+        byte[] cleServeur = new byte[tampon.get()];
+        tampon.get(cleServeur);
+        byte[] chiffre = new byte[tampon.remaining()];
+        tampon.get(chiffre);
+
+        KeyAgreement ecdh = KeyAgreement.getInstance("ECDH");
+        ecdh.init(navigateur.getPrivate());
+        ecdh.doPhase(WebPushChiffrement.decoderClePublique(cleServeur), true);
+        byte[] cleNavigateur = WebPushChiffrement.encoderClePublique((ECPublicKey) navigateur.getPublic());
+        ByteBuffer info = ByteBuffer.allocate(14 + 65 + 65);
+        info.put("WebPush: info\0".getBytes(StandardCharsets.US_ASCII)).put(cleNavigateur).put(cleServeur);
+        byte[] ikm = WebPushChiffrement.hkdf(secretAuth, ecdh.generateSecret(), info.array(), 32);
+        byte[] cek = WebPushChiffrement.hkdf(sel, ikm, "Content-Encoding: aes128gcm\0".getBytes(StandardCharsets.US_ASCII), 16);
+        byte[] nonce = WebPushChiffrement.hkdf(sel, ikm, "Content-Encoding: nonce\0".getBytes(StandardCharsets.US_ASCII), 12);
+
+        Cipher aes = Cipher.getInstance("AES/GCM/NoPadding");
+        aes.init(Cipher.DECRYPT_MODE, new SecretKeySpec(cek, "AES"), new GCMParameterSpec(128, nonce));
+        byte[] clair = aes.doFinal(chiffre);
+        assertEquals(2, clair[clair.length - 1]);
+        return Arrays.copyOf(clair, clair.length - 1);
+    }
+
+    private static KeyPair paireP256() throws Exception {
+        KeyPairGenerator generateur = KeyPairGenerator.getInstance("EC");
+        generateur.initialize(new ECGenParameterSpec("secp256r1"));
+        return generateur.generateKeyPair();
+    }
+
+    private static byte[] brute32(BigInteger valeur) {
+        byte[] octets = valeur.toByteArray();
+        byte[] resultat = new byte[32];
+        int longueur = Math.min(octets.length, 32);
+        System.arraycopy(octets, octets.length - longueur, resultat, 32 - longueur, longueur);
+        return resultat;
+    }
+}
@@ -4,13 +4,16 @@ import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.GroupeRepository;
 import com.Scolab.ScolabBackend.Repository.ProjetRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import com.Scolab.ScolabBackend.Service.EcheanceService;
 import com.Scolab.ScolabBackend.Service.ProjetService;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -31,6 +34,12 @@ class ProjetServiceTest {
     @Mock
     private GroupeRepository groupeRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EcheanceService echeanceService;
+
     @InjectMocks
     private ProjetService projetService;
 
@@ -69,9 +78,10 @@ class ProjetServiceTest {
         // Arrange
         String email = "prof@gmail.com";
         List<Projet> projets = Arrays.asList(projet);
+        enseignant.setId("6959924ea2f2178b3ecfd781");
 
         when(utilisateurRepository.findByEmail(email)).thenReturn(Optional.of(enseignant));
-        when(projetRepository.findAll()).thenReturn(projets);
+        when(projetRepository.findActifsByEnseignant(new ObjectId("6959924ea2f2178b3ecfd781"))).thenReturn(projets);
 
         // Act
         List<Projet> result = projetService.getProjetsByEnseignant(email);
@@ -81,7 +91,8 @@ class ProjetServiceTest {
         assertEquals(1, result.size());
         assertEquals(projet.getId(), result.get(0).getId());
         verify(utilisateurRepository).findByEmail(email);
-        verify(projetRepository).findAll();
+        verify(projetRepository).findActifsByEnseignant(any(ObjectId.class));
+        verify(projetRepository, never()).findAll();
     }
 
     @Test
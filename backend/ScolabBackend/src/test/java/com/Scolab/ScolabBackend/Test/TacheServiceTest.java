@@ -3,6 +3,7 @@ package com.Scolab.ScolabBackend.Test;
 import com.Scolab.ScolabBackend.Entity.*;
 import com.Scolab.ScolabBackend.Repository.TacheRepository;
 import com.Scolab.ScolabBackend.Repository.UtilisateurRepository;
+import com.Scolab.ScolabBackend.Service.EcheanceService;
 import com.Scolab.ScolabBackend.Service.TacheService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +11,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -27,6 +29,12 @@ class TacheServiceTest {
     @Mock
     private UtilisateurRepository utilisateurRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private EcheanceService echeanceService;
+
     @InjectMocks
     private TacheService tacheService;
 